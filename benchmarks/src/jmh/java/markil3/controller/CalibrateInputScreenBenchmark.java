@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static markil3.controller.JoystickPreviewScreenBenchmark.CONTROLLERS;
+import static markil3.controller.JoystickPreviewScreenBenchmark.EVENTS_PER_FRAME;
+import static markil3.controller.JoystickPreviewScreenBenchmark.TPF;
+
+/**
+ * Measures the input handling of {@link CalibrateInputScreen} while attached
+ * to a headless application with eight virtual gamepads.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CalibrateInputScreenBenchmark
+{
+    private HeadlessHarness harness;
+    private VirtualInputGenerator generator;
+    private CalibrateInputScreen screen;
+    private File calibrationFile;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        this.calibrationFile = File.createTempFile("calibration", ".properties");
+        this.harness = new HeadlessHarness();
+        this.generator = new VirtualInputGenerator(CONTROLLERS,
+                EVENTS_PER_FRAME / CONTROLLERS / TPF);
+        this.screen = new CalibrateInputScreen(this.calibrationFile);
+        this.generator.addTarget(this.screen);
+        this.harness.call(() -> {
+            this.harness.getApplication().getInputManager()
+                    .setJoysticks(this.generator.getJoysticks());
+            this.harness.getApplication().getStateManager()
+                    .attach(this.screen);
+            return null;
+        });
+        this.harness.call(() -> null);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.harness.stop();
+        this.calibrationFile.delete();
+    }
+
+    /**
+     * Sends a frame's worth of events to the screen and processes them. The
+     * prompts are not advanced, so this measures the focus tracking for the
+     * current prompt.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_FRAME)
+    public void handleEvents()
+    {
+        this.harness.call(() -> {
+            this.generator.generate(TPF);
+            this.screen.update(0);
+            return null;
+        });
+    }
+}
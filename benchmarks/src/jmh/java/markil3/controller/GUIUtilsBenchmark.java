@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.font.BitmapFont;
+import com.jme3.math.Vector2f;
+import com.jme3.scene.Node;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the GUI helpers used by both screens.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GUIUtilsBenchmark
+{
+    /**
+     * The number of labels in the container, besides the buttons.
+     */
+    @Param({"10", "100"})
+    public int labels;
+
+    private Node gui;
+    private Node column;
+    private Vector2f cursor;
+
+    @Setup
+    public void setup()
+    {
+        AssetManager assets = HeadlessHarness.createAssetManager();
+        BitmapFont font = assets.loadFont("Interface/Fonts/Default.fnt");
+        Node button = null;
+        this.gui = new Node();
+        this.column = new Node();
+        for (int i = 0; i < this.labels; i++)
+        {
+            this.column.attachChild(font.createLabel("Label " + i));
+            if (i % 10 == 0)
+            {
+                button = GUIUtils.createButton(assets, font, false,
+                        "button" + i, "Button " + i);
+                this.column.attachChild(button);
+            }
+        }
+        this.gui.attachChild(this.column);
+        this.column.setLocalTranslation(640, 700, 0);
+        GUIUtils.alignContainer(this.column, 1280, 720);
+        this.gui.updateLogicalState(0);
+        this.gui.updateGeometricState();
+
+        /*
+         * Aims for the middle of the last button.
+         */
+        this.cursor = new Vector2f(button.getWorldTranslation().x + 10,
+                button.getWorldTranslation().y - 5);
+    }
+
+    /**
+     * Clicks a button, pressing and releasing it.
+     *
+     * @param blackhole - Consumes the result.
+     */
+    @Benchmark
+    public void handleButtonPress(Blackhole blackhole)
+    {
+        blackhole.consume(
+                GUIUtils.handleButtonPress(this.gui, this.cursor, true));
+        blackhole.consume(
+                GUIUtils.handleButtonPress(this.gui, this.cursor, false));
+    }
+
+    @Benchmark
+    public float alignContainer()
+    {
+        return GUIUtils.alignContainer(this.column, 1280, 720);
+    }
+}
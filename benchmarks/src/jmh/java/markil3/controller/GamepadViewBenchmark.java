@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of displaying a single input event on a
+ * {@link JoystickPreviewScreen.GamepadView}.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GamepadViewBenchmark
+{
+    private JoystickPreviewScreen.GamepadView view;
+    private JoystickAxis stickAxis;
+    private JoystickAxis povAxis;
+    private JoystickButton button;
+
+    private float value;
+    private boolean pressed;
+
+    @Setup
+    public void setup()
+    {
+        VirtualJoystick joy =
+                VirtualJoystick.createGamepad(null, 0, "Benchmark Gamepad");
+        this.view = new JoystickPreviewScreen.GamepadView(null,
+                HeadlessHarness.createAssetManager());
+        this.stickAxis = joy.getXAxis();
+        this.povAxis = joy.getPovXAxis();
+        this.button = joy.getButton(JoystickPreviewScreen.ACTION_BOTTOM);
+    }
+
+    /**
+     * Moves an analog stick, then lets the view reposition it as it would at
+     * the end of a frame.
+     */
+    @Benchmark
+    public void setAxisValue()
+    {
+        this.value = this.value > 1F ? -1F : this.value + 0.01F;
+        this.view.setAxisValue(this.stickAxis, this.value);
+        this.view.updateLogicalState(0.016F);
+    }
+
+    /**
+     * Moves the hat switch, which presses and releases the D-pad highlights.
+     */
+    @Benchmark
+    public void setPovValue()
+    {
+        this.value = this.value >= 1F ? -1F : this.value + 1F;
+        this.view.setAxisValue(this.povAxis, this.value);
+    }
+
+    @Benchmark
+    public void setButtonValue()
+    {
+        this.pressed = !this.pressed;
+        this.view.setButtonValue(this.button, this.pressed);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppState;
+import com.jme3.asset.AssetManager;
+import com.jme3.system.AppSettings;
+import com.jme3.system.JmeContext;
+import com.jme3.system.JmeSystem;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a headless application for the benchmarks that need the screens to be
+ * attached to one. All work on the scene graph is passed to the application
+ * thread, so the benchmarks never race with the update loop.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+final class HeadlessHarness
+{
+    private final SimpleApplication app;
+
+    /**
+     * Starts a headless application and waits for it to initialize.
+     */
+    HeadlessHarness()
+    {
+        AppSettings settings = new AppSettings(true);
+        Logger.getLogger("").setLevel(Level.WARNING);
+        InputTrace.getShared().setEnabled(false);
+        settings.setWidth(1280);
+        settings.setHeight(720);
+        settings.setAudioRenderer(null);
+        this.app = new SimpleApplication(new AppState[0])
+        {
+            @Override
+            public void simpleInitApp()
+            {
+            }
+        };
+        this.app.setSettings(settings);
+        this.app.setShowSettings(false);
+        this.app.start(JmeContext.Type.Headless, true);
+    }
+
+    /**
+     * Creates an asset manager for benchmarks that don't need a running
+     * application.
+     *
+     * @return A desktop asset manager.
+     */
+    static AssetManager createAssetManager()
+    {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        InputTrace.getShared().setEnabled(false);
+        return JmeSystem.newAssetManager(Thread.currentThread()
+                .getContextClassLoader()
+                .getResource("com/jme3/asset/Desktop.cfg"));
+    }
+
+    SimpleApplication getApplication()
+    {
+        return this.app;
+    }
+
+    /**
+     * Runs a task on the application thread and waits for it to finish.
+     *
+     * @param task - The task to run.
+     * @param <T> - The type of the task result.
+     * @return The task result.
+     */
+    <T> T call(Callable<T> task)
+    {
+        try
+        {
+            return this.app.enqueue(task).get();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ie);
+        }
+        catch (ExecutionException ee)
+        {
+            throw new IllegalStateException(ee.getCause());
+        }
+    }
+
+    /**
+     * Stops the application.
+     */
+    void stop()
+    {
+        this.app.stop(true);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.Joystick;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JoystickPreviewScreen} while attached to a headless
+ * application with eight virtual gamepads.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JoystickPreviewScreenBenchmark
+{
+    static final int CONTROLLERS = 8;
+    /**
+     * The number of events each frame, across all of the controllers.
+     */
+    static final int EVENTS_PER_FRAME = 1000;
+    static final float TPF = 1F / 60F;
+
+    private HeadlessHarness harness;
+    private VirtualInputGenerator generator;
+    private JoystickPreviewScreen screen;
+    private Joystick joystick;
+
+    @Setup
+    public void setup()
+    {
+        this.harness = new HeadlessHarness();
+        this.generator = new VirtualInputGenerator(CONTROLLERS,
+                EVENTS_PER_FRAME / CONTROLLERS / TPF);
+        this.joystick = this.generator.getJoysticks()[0];
+        this.screen = new JoystickPreviewScreen();
+        this.screen.setConnectionSettleTime(0);
+        this.generator.addTarget(this.screen);
+        this.harness.call(() -> {
+            this.harness.getApplication().getInputManager()
+                    .setJoysticks(this.generator.getJoysticks());
+            this.harness.getApplication().getStateManager()
+                    .attach(this.screen);
+            return null;
+        });
+        /*
+         * Lets the screen initialize on the next frame.
+         */
+        this.harness.call(() -> null);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.harness.stop();
+    }
+
+    /**
+     * Disconnects and reconnects a controller, applying each change.
+     */
+    @Benchmark
+    public void hotPlug()
+    {
+        this.harness.call(() -> {
+            this.screen.onDisconnected(this.joystick);
+            this.screen.update(TPF);
+            this.screen.onConnected(this.joystick);
+            this.screen.update(TPF);
+            return null;
+        });
+    }
+
+    /**
+     * Sends a frame's worth of events to the screen and processes them.
+     */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_FRAME)
+    public void handleEvents()
+    {
+        this.harness.call(() -> {
+            this.generator.generate(TPF);
+            this.screen.update(TPF);
+            return null;
+        });
+    }
+}
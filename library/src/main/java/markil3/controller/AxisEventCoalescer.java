@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import java.util.Arrays;
+
+/**
+ * Sits between a {@link JoystickEventBuffer} and the code that displays the
+ * events, keeping only the newest value of each joystick axis. Button events
+ * are passed straight through, while axis events are held until
+ * {@link #flush()} is called, at which point every axis that changed is
+ * applied once, in the order it first changed.
+ * <p>This is meant for displays that only care about the latest state, where
+ * a high-polling-rate gamepad would otherwise cause many redundant updates
+ * per frame.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class AxisEventCoalescer implements JoystickEventBuffer.Handler
+{
+    private final JoystickEventBuffer.Handler target;
+
+    private float[][] values = new float[0][];
+    private float[][] rawValues = new float[0][];
+    private long[][] times = new long[0][];
+    private long[][] eventTimes = new long[0][];
+    private boolean[][] dirty = new boolean[0][];
+
+    /**
+     * The axes that changed since the last flush, stored as pairs of joystick
+     * and axis IDs.
+     */
+    private int[] pending = new int[32];
+    private int pendingCount;
+
+    private long collapsed;
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param target - The handler that the coalesced events are passed to.
+     */
+    public AxisEventCoalescer(JoystickEventBuffer.Handler target)
+    {
+        this.target = target;
+    }
+
+    @Override
+    public void onAxis(int joyId, int axisId, float value, float rawValue,
+                       long time, long eventTime)
+    {
+        if (joyId < 0 || axisId < 0)
+        {
+            return;
+        }
+        this.ensureCapacity(joyId, axisId);
+        if (this.dirty[joyId][axisId])
+        {
+            this.collapsed++;
+        }
+        else
+        {
+            this.dirty[joyId][axisId] = true;
+            if (this.pendingCount + 2 > this.pending.length)
+            {
+                this.pending = Arrays.copyOf(this.pending,
+                        this.pending.length * 2);
+            }
+            this.pending[this.pendingCount++] = joyId;
+            this.pending[this.pendingCount++] = axisId;
+        }
+        this.values[joyId][axisId] = value;
+        this.rawValues[joyId][axisId] = rawValue;
+        this.times[joyId][axisId] = time;
+        this.eventTimes[joyId][axisId] = eventTime;
+    }
+
+    @Override
+    public void onButton(int joyId, int buttonId, boolean pressed, long time,
+                         long eventTime)
+    {
+        this.target.onButton(joyId, buttonId, pressed, time, eventTime);
+    }
+
+    /**
+     * Passes the newest value of every axis that changed since the last flush
+     * on to the target handler.
+     *
+     * @return The number of axis events that were passed on.
+     */
+    public int flush()
+    {
+        int joyId, axisId;
+        int count = this.pendingCount / 2;
+        for (int i = 0; i < this.pendingCount; i += 2)
+        {
+            joyId = this.pending[i];
+            axisId = this.pending[i + 1];
+            this.dirty[joyId][axisId] = false;
+            this.target.onAxis(joyId, axisId, this.values[joyId][axisId],
+                    this.rawValues[joyId][axisId], this.times[joyId][axisId],
+                    this.eventTimes[joyId][axisId]);
+        }
+        this.pendingCount = 0;
+        return count;
+    }
+
+    /**
+     * Forgets any axis changes that have not been flushed yet.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < this.pendingCount; i += 2)
+        {
+            this.dirty[this.pending[i]][this.pending[i + 1]] = false;
+        }
+        this.pendingCount = 0;
+    }
+
+    /**
+     * Obtains the number of axis events that were dropped because a newer
+     * value for the same axis arrived before the flush.
+     *
+     * @return The number of collapsed events since this coalescer was
+     * created.
+     */
+    public long getCollapsedCount()
+    {
+        return this.collapsed;
+    }
+
+    private void ensureCapacity(int joyId, int axisId)
+    {
+        int joyCount = this.values.length;
+        int axisCount;
+        if (joyId >= joyCount)
+        {
+            this.values = Arrays.copyOf(this.values, joyId + 1);
+            this.rawValues = Arrays.copyOf(this.rawValues, joyId + 1);
+            this.times = Arrays.copyOf(this.times, joyId + 1);
+            this.eventTimes = Arrays.copyOf(this.eventTimes, joyId + 1);
+            this.dirty = Arrays.copyOf(this.dirty, joyId + 1);
+            for (int i = joyCount; i <= joyId; i++)
+            {
+                this.values[i] = new float[0];
+                this.rawValues[i] = new float[0];
+                this.times[i] = new long[0];
+                this.eventTimes[i] = new long[0];
+                this.dirty[i] = new boolean[0];
+            }
+        }
+        axisCount = this.values[joyId].length;
+        if (axisId >= axisCount)
+        {
+            axisCount = Math.max(axisId + 1, 8);
+            this.values[joyId] = Arrays.copyOf(this.values[joyId], axisCount);
+            this.rawValues[joyId] =
+                    Arrays.copyOf(this.rawValues[joyId], axisCount);
+            this.times[joyId] = Arrays.copyOf(this.times[joyId], axisCount);
+            this.eventTimes[joyId] =
+                    Arrays.copyOf(this.eventTimes[joyId], axisCount);
+            this.dirty[joyId] = Arrays.copyOf(this.dirty[joyId], axisCount);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+/**
+ * Collects running statistics for the values of an axis: how many there were,
+ * their mean, variance, smallest and largest values, and a histogram of where
+ * they fell between -1 and 1.
+ * <p>Values are added one at a time, with the mean and variance kept up to
+ * date using Welford's method, so the statistics never need the values to be
+ * kept around. Adding a value takes constant time and does not allocate
+ * anything, so it can be done for every raw event from the device.
+ * Percentiles and spreads are read from the histogram, and are accurate to
+ * the width of a bin. The {@link #getMode() mode} is a better idea of where
+ * an axis rests than the mean, since a few values from the axis being moved
+ * hardly change it.</p>
+ * <p>Statistics are not thread safe.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class AxisStatistics
+{
+    /**
+     * The number of histogram bins used by default, which makes each bin
+     * less than 0.01 wide.
+     */
+    public static final int DEFAULT_BINS = 256;
+
+    private final int[] histogram;
+    /**
+     * The sum of the values in each bin, so that the values around the mode
+     * can be averaged exactly.
+     */
+    private final double[] binSums;
+    private final float binWidth;
+    private long count;
+    private double mean;
+    /**
+     * The sum of the squared differences from the mean.
+     */
+    private double m2;
+    private float min = Float.NaN;
+    private float max = Float.NaN;
+
+    /**
+     * Creates an empty set of statistics with the default number of bins.
+     */
+    public AxisStatistics()
+    {
+        this(DEFAULT_BINS);
+    }
+
+    /**
+     * Creates an empty set of statistics.
+     *
+     * @param bins - The number of histogram bins to split -1 to 1 into.
+     */
+    public AxisStatistics(int bins)
+    {
+        if (bins < 1)
+        {
+            throw new IllegalArgumentException("At least one bin is needed");
+        }
+        this.histogram = new int[bins];
+        this.binSums = new double[bins];
+        this.binWidth = 2F / bins;
+    }
+
+    /**
+     * Adds a value to the statistics.
+     *
+     * @param value - The axis value. Values outside of -1 to 1 are counted
+     * in the outermost histogram bins.
+     */
+    public void add(float value)
+    {
+        double delta;
+        int bin;
+        if (Float.isNaN(value))
+        {
+            return;
+        }
+        this.count++;
+        delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.m2 += delta * (value - this.mean);
+        if (this.count == 1)
+        {
+            this.min = value;
+            this.max = value;
+        }
+        else if (value < this.min)
+        {
+            this.min = value;
+        }
+        else if (value > this.max)
+        {
+            this.max = value;
+        }
+        bin = this.getBin(value);
+        this.histogram[bin]++;
+        this.binSums[bin] += value;
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public void reset()
+    {
+        this.count = 0;
+        this.mean = 0;
+        this.m2 = 0;
+        this.min = Float.NaN;
+        this.max = Float.NaN;
+        for (int i = 0; i < this.histogram.length; i++)
+        {
+            this.histogram[i] = 0;
+            this.binSums[i] = 0;
+        }
+    }
+
+    /**
+     * Obtains the number of values added.
+     *
+     * @return The value count.
+     */
+    public long getCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Obtains the mean of the values.
+     *
+     * @return The mean, or 0 if there are no values.
+     */
+    public float getMean()
+    {
+        return (float) this.mean;
+    }
+
+    /**
+     * Obtains the sample variance of the values.
+     *
+     * @return The variance, or 0 if there are less than two values.
+     */
+    public float getVariance()
+    {
+        return this.count < 2 ? 0 : (float) (this.m2 / (this.count - 1));
+    }
+
+    /**
+     * Obtains the sample standard deviation of the values.
+     *
+     * @return The standard deviation, or 0 if there are less than two values.
+     */
+    public float getStandardDeviation()
+    {
+        return (float) Math.sqrt(this.getVariance());
+    }
+
+    /**
+     * Obtains the smallest value.
+     *
+     * @return The smallest value, or NaN if there are no values.
+     */
+    public float getMin()
+    {
+        return this.min;
+    }
+
+    /**
+     * Obtains the largest value.
+     *
+     * @return The largest value, or NaN if there are no values.
+     */
+    public float getMax()
+    {
+        return this.max;
+    }
+
+    /**
+     * Obtains the number of histogram bins.
+     *
+     * @return The bin count.
+     */
+    public int getBinCount()
+    {
+        return this.histogram.length;
+    }
+
+    /**
+     * Obtains the number of values that fell in a histogram bin.
+     *
+     * @param bin - The index of the bin, where 0 starts at -1.
+     * @return The number of values in the bin.
+     */
+    public int getHistogram(int bin)
+    {
+        return this.histogram[bin];
+    }
+
+    /**
+     * Finds the most common value. This is the mean of the values in the
+     * fullest histogram bin and the bins on either side of it, so a value
+     * that repeats exactly is returned exactly, and noise spread over
+     * neighbouring bins is averaged out.
+     *
+     * @return The mode, or NaN if there are no values.
+     */
+    public float getMode()
+    {
+        int mode = 0;
+        long count = 0;
+        double sum = 0;
+        if (this.count == 0)
+        {
+            return Float.NaN;
+        }
+        for (int i = 1; i < this.histogram.length; i++)
+        {
+            if (this.histogram[i] > this.histogram[mode])
+            {
+                mode = i;
+            }
+        }
+        for (int i = Math.max(0, mode - 1);
+             i <= Math.min(this.histogram.length - 1, mode + 1); i++)
+        {
+            count += this.histogram[i];
+            sum += this.binSums[i];
+        }
+        return (float) (sum / count);
+    }
+
+    /**
+     * Finds the value that a fraction of the values are below.
+     *
+     * @param fraction - The fraction of values, from 0 to 1.
+     * @return The value, which is the middle of the bin it falls in, kept
+     * between the smallest and largest values. This is NaN if there are no
+     * values.
+     */
+    public float getPercentile(float fraction)
+    {
+        double target;
+        long seen = 0;
+        int bin = this.histogram.length - 1;
+        if (this.count == 0)
+        {
+            return Float.NaN;
+        }
+        target = Math.max(1, Math.ceil(this.count *
+                Math.max(0, Math.min(1, fraction))));
+        for (int i = 0; i < this.histogram.length; i++)
+        {
+            seen += this.histogram[i];
+            if (seen >= target)
+            {
+                bin = i;
+                break;
+            }
+        }
+        return Math.max(this.min, Math.min(this.max, this.getBinCenter(bin)));
+    }
+
+    /**
+     * Finds how far from a center value most of the values lie. This is
+     * useful for finding the noise around a resting position while ignoring
+     * the occasional value from the axis moving.
+     *
+     * @param center - The value to measure from.
+     * @param fraction - The fraction of values that should be within the
+     * spread, from 0 to 1.
+     * @return The distance from the center, or 0 if there are no values.
+     */
+    public float getSpread(float center, float fraction)
+    {
+        return this.getSpread(center, fraction, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds how far from a center value most of the values lie, leaving out
+     * values that are too far from the center to be noise.
+     *
+     * @param center - The value to measure from.
+     * @param fraction - The fraction of the remaining values that should be
+     * within the spread, from 0 to 1.
+     * @param limit - How far from the center a value may be before it is
+     * left out.
+     * @return The distance from the center, which is never more than the
+     * limit, or 0 if there are no values within it.
+     */
+    public float getSpread(float center, float fraction, float limit)
+    {
+        int centerBin = this.getBin(center);
+        int maxRadius = (int) Math.min(this.histogram.length,
+                Math.ceil(limit / this.binWidth));
+        double target;
+        long seen, total = 0;
+        int radius = 0;
+        for (int i = Math.max(0, centerBin - maxRadius);
+             i <= Math.min(this.histogram.length - 1, centerBin + maxRadius);
+             i++)
+        {
+            total += this.histogram[i];
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        target = total * Math.max(0, Math.min(1, fraction));
+        seen = this.histogram[centerBin];
+        while (seen < target && radius < maxRadius &&
+                (centerBin - radius > 0 ||
+                        centerBin + radius < this.histogram.length - 1))
+        {
+            radius++;
+            if (centerBin - radius >= 0)
+            {
+                seen += this.histogram[centerBin - radius];
+            }
+            if (centerBin + radius < this.histogram.length)
+            {
+                seen += this.histogram[centerBin + radius];
+            }
+        }
+        /*
+         * A value in a bin can be anywhere within it, so the spread is only
+         * known to the edge of the outermost bin. The smallest and largest
+         * values are exact, and are used when they are closer.
+         */
+        return Math.min(limit, Math.min((radius + 1) * this.binWidth,
+                Math.max(Math.abs(this.max - center),
+                        Math.abs(center - this.min))));
+    }
+
+    private int getBin(float value)
+    {
+        int bin = (int) ((value + 1F) / this.binWidth);
+        return Math.max(0, Math.min(this.histogram.length - 1, bin));
+    }
+
+    private float getBinCenter(int bin)
+    {
+        return -1F + (bin + 0.5F) * this.binWidth;
+    }
+}
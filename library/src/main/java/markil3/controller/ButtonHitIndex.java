@@ -0,0 +1,226 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Quad;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * Keeps track of the buttons made by
+ * {@link GUIUtils#createButton(GuiResources, boolean, String, String)}, so
+ * that finding the button under a point only has to check the buttons
+ * themselves instead of casting a ray through the whole GUI.
+ * <p>Each button is tested against its on-screen rectangle, worked out from
+ * its current world transform, so buttons can be moved around freely without
+ * telling the index. A lookup does not allocate anything. Buttons are held
+ * weakly, and drop out of the index once they are no longer used.</p>
+ * <p>The index also remembers which button each pointer is pressing, so that
+ * several fingers can press different buttons at once on a touch screen, and
+ * which button the mouse is hovering over.</p>
+ * <p>The index should only be used from the render thread.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+class ButtonHitIndex
+{
+    private static final ButtonHitIndex SHARED = new ButtonHitIndex();
+
+    @SuppressWarnings("unchecked")
+    private WeakReference<Geometry>[] buttons =
+            (WeakReference<Geometry>[]) new WeakReference<?>[16];
+    private int count;
+
+    /*
+     * The button each pointer is pressing, and the GUI it was pressed in.
+     * The mouse uses the first slot, and touch pointers the ones after it.
+     */
+    private Geometry[] pressed = new Geometry[4];
+    private Node[] pressedRoots = new Node[4];
+
+    private Geometry hovered;
+
+    /**
+     * Obtains the index used by {@link GUIUtils}.
+     *
+     * @return The shared index.
+     */
+    static ButtonHitIndex getShared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Adds the background of a button to the index.
+     *
+     * @param background - The button background, which must use a
+     * {@link Quad} mesh.
+     */
+    void register(Geometry background)
+    {
+        if (this.count == this.buttons.length)
+        {
+            this.compact();
+            if (this.count == this.buttons.length)
+            {
+                this.buttons = Arrays.copyOf(this.buttons, this.count * 2);
+            }
+        }
+        this.buttons[this.count++] = new WeakReference<>(background);
+    }
+
+    /**
+     * Finds the button under a point.
+     *
+     * @param root - The GUI to search. Only buttons attached to it count.
+     * @param x - The horizontal screen position.
+     * @param y - The vertical screen position.
+     * @return The background of the topmost button under the point, or null
+     * if there is none.
+     */
+    Geometry pick(Node root, float x, float y)
+    {
+        Geometry button, best = null;
+        float bestZ = Float.NEGATIVE_INFINITY;
+        Vector3f position, scale;
+        Quad quad;
+        boolean cleared = false;
+        for (int i = 0; i < this.count; i++)
+        {
+            button = this.buttons[i].get();
+            if (button == null)
+            {
+                cleared = true;
+                continue;
+            }
+            if (!isAttached(button, root))
+            {
+                continue;
+            }
+            quad = (Quad) button.getMesh();
+            position = button.getWorldTranslation();
+            scale = button.getWorldScale();
+            if (x >= position.x && x <= position.x + quad.getWidth() * scale.x &&
+                    y >= position.y &&
+                    y <= position.y + quad.getHeight() * scale.y &&
+                    position.z >= bestZ)
+            {
+                best = button;
+                bestZ = position.z;
+            }
+        }
+        if (cleared)
+        {
+            this.compact();
+        }
+        return best;
+    }
+
+    /**
+     * Remembers the button a pointer started pressing.
+     *
+     * @param pointer - The pointer slot.
+     * @param root - The GUI the button was pressed in.
+     * @param button - The button background, or null to forget the press.
+     */
+    void setPressed(int pointer, Node root, Geometry button)
+    {
+        if (pointer >= this.pressed.length)
+        {
+            this.pressed = Arrays.copyOf(this.pressed, pointer + 1);
+            this.pressedRoots = Arrays.copyOf(this.pressedRoots, pointer + 1);
+        }
+        this.pressed[pointer] = button;
+        this.pressedRoots[pointer] = button == null ? null : root;
+    }
+
+    /**
+     * Obtains the button a pointer is pressing.
+     *
+     * @param pointer - The pointer slot.
+     * @param root - The GUI the button should have been pressed in.
+     * @return The button background, or null if the pointer isn't pressing a
+     * button in that GUI.
+     */
+    Geometry getPressed(int pointer, Node root)
+    {
+        return pointer < this.pressed.length &&
+                this.pressedRoots[pointer] == root ? this.pressed[pointer] :
+               null;
+    }
+
+    /**
+     * Checks whether any pointer is pressing a button.
+     *
+     * @param button - The button background.
+     * @return True if the button is being pressed.
+     */
+    boolean isPressed(Geometry button)
+    {
+        for (Geometry pressed : this.pressed)
+        {
+            if (pressed == button)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    Geometry getHovered()
+    {
+        return this.hovered;
+    }
+
+    void setHovered(Geometry button)
+    {
+        this.hovered = button;
+    }
+
+    private static boolean isAttached(Spatial spatial, Node root)
+    {
+        for (Spatial parent = spatial.getParent(); parent != null;
+             parent = parent.getParent())
+        {
+            if (parent == root)
+            {
+                return true;
+            }
+            if (parent.getCullHint() == Spatial.CullHint.Always)
+            {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the buttons that are no longer used.
+     */
+    private void compact()
+    {
+        int kept = 0;
+        for (int i = 0; i < this.count; i++)
+        {
+            if (this.buttons[i].get() != null)
+            {
+                this.buttons[kept++] = this.buttons[i];
+            }
+        }
+        Arrays.fill(this.buttons, kept, this.count, null);
+        this.count = kept;
+    }
+}
@@ -2,6 +2,7 @@ package markil3.controller;
 
 import com.jme3.app.Application;
 import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppStateManager;
 import com.jme3.app.state.BaseAppState;
 import com.jme3.font.BitmapFont;
 import com.jme3.font.BitmapText;
@@ -23,32 +24,20 @@ import com.jme3.renderer.Camera;
 import com.jme3.scene.Node;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
-import static markil3.controller.JoystickPreviewScreen.ACTION_BOTTOM;
-import static markil3.controller.JoystickPreviewScreen.ACTION_LEFT;
-import static markil3.controller.JoystickPreviewScreen.ACTION_RIGHT;
-import static markil3.controller.JoystickPreviewScreen.ACTION_TOP;
 import static markil3.controller.JoystickPreviewScreen.DPAD_DOWN;
 import static markil3.controller.JoystickPreviewScreen.DPAD_LEFT;
 import static markil3.controller.JoystickPreviewScreen.DPAD_RIGHT;
 import static markil3.controller.JoystickPreviewScreen.DPAD_UP;
-import static markil3.controller.JoystickPreviewScreen.L1;
 import static markil3.controller.JoystickPreviewScreen.L2;
-import static markil3.controller.JoystickPreviewScreen.L3;
-import static markil3.controller.JoystickPreviewScreen.R1;
 import static markil3.controller.JoystickPreviewScreen.R2;
-import static markil3.controller.JoystickPreviewScreen.R3;
-import static markil3.controller.JoystickPreviewScreen.SELECT;
-import static markil3.controller.JoystickPreviewScreen.START;
 
 /**
  * Provides a series of prompts that will build a controller calibration file.
@@ -62,63 +51,37 @@ public class CalibrateInputScreen extends BaseAppState
     private static final org.slf4j.Logger logger =
             org.slf4j.LoggerFactory.getLogger(CalibrateInputScreen.class);
 
-    private static final LinkedHashMap<String, String> BUTTON_PROMPTS =
-            new LinkedHashMap<>();
-    private static final LinkedHashMap<String, String> AXIS_PROMPTS =
-            new LinkedHashMap<>();
     final String CLICK_MAPPING = "calibrateButtonClick";
-
-    static
-    {
-        BUTTON_PROMPTS.put(ACTION_TOP, "Top Action Button");
-        BUTTON_PROMPTS.put(ACTION_RIGHT, "Right Action Button");
-        BUTTON_PROMPTS.put(ACTION_BOTTOM, "Bottom Action Button");
-        BUTTON_PROMPTS.put(ACTION_LEFT, "Left Action Button");
-        BUTTON_PROMPTS.put(L1, "Left Bumper (L1)");
-        BUTTON_PROMPTS.put(R1, "Right Bumper (R1)");
-        BUTTON_PROMPTS.put(L2, "Left Trigger (L2)");
-        BUTTON_PROMPTS.put(R2, "Right Trigger (R2)");
-        BUTTON_PROMPTS.put(SELECT, "Back/Select");
-        BUTTON_PROMPTS.put(START, "Start");
-        BUTTON_PROMPTS.put(L3, "Left Analog Stick Button (L3)");
-        BUTTON_PROMPTS.put(R3, "Right Analog Stick Button (R3)");
-
-        AXIS_PROMPTS.put(JoystickAxis.X_AXIS, "Left Analog Stick (Horizontal)");
-        AXIS_PROMPTS.put(JoystickAxis.Y_AXIS, "Left Analog Stick (Vertical)");
-        AXIS_PROMPTS
-                .put(JoystickAxis.Z_AXIS, "Right Analog Stick (Horizontal)");
-        AXIS_PROMPTS
-                .put(JoystickAxis.Z_ROTATION, "Right Analog Stick (Vertical)");
-        AXIS_PROMPTS.put(JoystickAxis.POV_X, "D-Pad (Horizontal)");
-        AXIS_PROMPTS.put(JoystickAxis.POV_Y, "D-Pad (Vertical)");
-    }
-
     /**
-     * This enum is used to determine whether we are working with buttons or
-     * axes.
+     * The start of the IDs of the skip buttons of each controller, which are
+     * followed by the joystick ID.
      */
-    private enum PromptStage
-    {
-        BUTTON(BUTTON_PROMPTS), AXIS(AXIS_PROMPTS);
-
-        private final HashMap<String, String> buttonNames;
-
-        PromptStage(HashMap<String, String> buttonNames)
-        {
-            this.buttonNames = buttonNames;
-        }
-    }
+    private static final String SKIP_PREFIX = "skip:";
 
     private final File calibrationFile;
+    private final JoystickStateStore state;
     private Node gui;
     protected BitmapFont guiFont;
+    /**
+     * The shared GUI resources, held while the screen is attached.
+     */
+    protected GuiResources resources;
 
     private Node introCont;
+    private ColumnLayout introLayout;
     private Node startButton;
     private Node mainOptions;
+    private ColumnLayout mainLayout;
     private Node skipButton;
     private Node cancelButton;
+    private Node saveButton;
+    /**
+     * Lists the controllers that haven't started calibrating in parallel
+     * mode.
+     */
+    private BitmapText pendingLabel;
     private Node restartButton;
+    private Node previewButton;
     private Node yesButton;
     private Node noButton;
     private JoystickPreviewScreen.GamepadView gamepad;
@@ -129,28 +92,75 @@ public class CalibrateInputScreen extends BaseAppState
 
     private boolean listeningRaw;
     private Joystick joystick;
-    private Iterator<String> calibrationIter;
-    private String currentButton;
-    private boolean currentBias;
-    private PromptStage currentStage = null;
+    /**
+     * The calibration for each controller, by joystick ID. Each one records
+     * the resting state of its controller until one of them starts.
+     */
+    private CalibrationEngine[] engines = new CalibrationEngine[0];
+    /**
+     * The calibration that started, which the prompts are shown for.
+     */
+    private CalibrationEngine engine;
+    private int shownTimeLeft = -1;
+    /**
+     * Whether every controller is calibrated at once, each with its own
+     * prompts.
+     */
+    private boolean parallel;
+    private boolean finished;
 
-    private Object focusedJoyElement;
-    private float timeHeld = -1;
-    private float focusValue;
+    private boolean clear;
 
     /**
-     * Keeps track of whether the L2 and R2 functionalities are controlled by
-     * buttons or triggers.
+     * Joystick events are queued here as they come in and processed in
+     * {@link #update(float)}.
      */
-    private boolean triggers2;
-    private HashMap<String, Object> maps = new HashMap<>();
-    private HashMap<String, float[]> rangeMaps = new HashMap<>();
-    private HashMap<String, Boolean> mapBias = new HashMap<>();
-
-    private HashMap<Object, float[]> defaultValues = new HashMap<>();
+    private final JoystickEventBuffer events = new JoystickEventBuffer();
+    private final JoystickEventBuffer.Handler eventHandler =
+            new JoystickEventBuffer.Handler()
+            {
+                @Override
+                public void onAxis(int joyId, int axisId, float value,
+                                   float rawValue, long time,
+                                   long eventTime)
+                {
+                    Joystick joy = JoystickEventBuffer.getJoystick(
+                            getApplication().getInputManager().getJoysticks(),
+                            joyId);
+                    JoystickAxis axis;
+                    if (joy != null)
+                    {
+                        axis = JoystickEventBuffer.getAxis(joy, axisId);
+                        if (axis != null)
+                        {
+                            state.setAxisValue(joyId, axisId, value, rawValue,
+                                    Math.max(getApplication().getInputManager()
+                                                    .getAxisDeadZone(),
+                                            axis.getDeadZone()));
+                            handleAxis(joy, axis, rawValue);
+                        }
+                    }
+                }
 
-    private boolean clear;
-    private float greatestVal, smallestVal;
+                @Override
+                public void onButton(int joyId, int buttonId, boolean pressed,
+                                     long time, long eventTime)
+                {
+                    Joystick joy = JoystickEventBuffer.getJoystick(
+                            getApplication().getInputManager().getJoysticks(),
+                            joyId);
+                    JoystickButton button;
+                    if (joy != null)
+                    {
+                        button = JoystickEventBuffer.getButton(joy, buttonId);
+                        if (button != null)
+                        {
+                            state.setButtonValue(joyId, buttonId, pressed);
+                            handleButton(joy, button, pressed);
+                        }
+                    }
+                }
+            };
 
     /**
      * Creates a screen for calibrating and remapping a game controller.
@@ -158,8 +168,81 @@ public class CalibrateInputScreen extends BaseAppState
      * @param calibrationFile - The file to store the results in.
      */
     public CalibrateInputScreen(File calibrationFile)
+    {
+        this(calibrationFile, JoystickStateStore.getShared());
+    }
+
+    /**
+     * Creates a screen for calibrating and remapping a game controller.
+     *
+     * @param calibrationFile - The file to store the results in.
+     * @param state - The store to record the joystick state to.
+     */
+    public CalibrateInputScreen(File calibrationFile, JoystickStateStore state)
     {
         this.calibrationFile = calibrationFile;
+        this.state = state;
+    }
+
+    /**
+     * Sets whether several controllers are calibrated at once. Each
+     * controller starts its own calibration when one of its buttons is
+     * released, and moves through the prompts at its own pace. The prompts
+     * are listed as a line for each controller instead of being shown on a
+     * gamepad, along with the controllers that sent input but haven't
+     * started yet. Once every controller that sent input is done, their
+     * results are saved together into the calibration file. The controllers
+     * that are done can also be saved straight away, leaving out the rest.
+     * <p>This has to be set before the calibration starts.</p>
+     *
+     * @param parallel - True to calibrate several controllers at once, or
+     * false to calibrate only the first controller used. This is false by
+     * default.
+     */
+    public void setParallel(boolean parallel)
+    {
+        if (this.listeningRaw)
+        {
+            throw new IllegalStateException(
+                    "The calibration has already started");
+        }
+        this.parallel = parallel;
+    }
+
+    /**
+     * Checks whether several controllers are calibrated at once.
+     *
+     * @return True if every controller gets its own calibration.
+     * @see #setParallel(boolean)
+     */
+    public boolean isParallel()
+    {
+        return this.parallel;
+    }
+
+    /**
+     * Obtains the store that this screen records the joystick state to.
+     *
+     * @return The joystick state store.
+     */
+    public JoystickStateStore getStateStore()
+    {
+        return this.state;
+    }
+
+    @Override
+    public void stateAttached(AppStateManager stateManager)
+    {
+        super.stateAttached(stateManager);
+        this.resources = GuiResources
+                .acquire(stateManager.getApplication().getAssetManager());
+    }
+
+    @Override
+    public void stateDetached(AppStateManager stateManager)
+    {
+        super.stateDetached(stateManager);
+        this.resources.release();
     }
 
     @Override
@@ -168,10 +251,10 @@ public class CalibrateInputScreen extends BaseAppState
         BitmapText text;
 
         this.gui = new Node();
-        this.guiFont =
-                app.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+        this.guiFont = this.resources.getFont();
 
         this.introCont = new Node();
+        this.introLayout = new ColumnLayout(this.introCont);
 
         text = this.guiFont.createLabel(
                 "This screen will let you properly calibrate your " +
@@ -189,46 +272,56 @@ public class CalibrateInputScreen extends BaseAppState
         this.introCont.attachChild(text);
 
         this.startButton =
-                GUIUtils.createButton(app.getAssetManager(), this.guiFont,
+                GUIUtils.createButton(this.resources,
                         app.getContext().getTouchInput() != null, "start",
                         "Start");
 //        this.startButton.addClickCommands(this);
         this.introCont.attachChild(this.startButton);
 
         this.mainOptions = new Node();
+        this.mainLayout = new ColumnLayout(this.mainOptions);
 
         this.mainOptions.attachChild(this.guiFont.createLabel(
                 "First, press any button or axis\n" +
                         "on the controller you want to calibrate."));
 
         this.skipButton =
-                GUIUtils.createButton(app.getAssetManager(), this.guiFont,
+                GUIUtils.createButton(this.resources,
                         app.getContext().getTouchInput() != null, "skip",
                         "Skip");
 
         this.cancelButton =
-                GUIUtils.createButton(app.getAssetManager(), this.guiFont,
+                GUIUtils.createButton(this.resources,
                         app.getContext().getTouchInput() != null, "cancel",
                         "Cancel");
+        this.saveButton =
+                GUIUtils.createButton(this.resources,
+                        app.getContext().getTouchInput() != null, "save",
+                        "Save Finished Controllers");
+        this.pendingLabel = this.guiFont.createLabel("");
         this.introCont.attachChild(this.cancelButton);
 
         this.restartButton =
-                GUIUtils.createButton(app.getAssetManager(), this.guiFont,
+                GUIUtils.createButton(this.resources,
                         app.getContext().getTouchInput() != null, "close",
                         "Close Application");
+        this.previewButton =
+                GUIUtils.createButton(this.resources,
+                        app.getContext().getTouchInput() != null, "preview",
+                        "Test Controller");
         this.yesButton =
-                GUIUtils.createButton(app.getAssetManager(), this.guiFont,
+                GUIUtils.createButton(this.resources,
                         app.getContext().getTouchInput() != null, "yes",
                         "Yes");
         this.noButton =
-                GUIUtils.createButton(app.getAssetManager(), this.guiFont,
+                GUIUtils.createButton(this.resources,
                         app.getContext().getTouchInput() != null, "no",
                         "No");
 
         this.gui.attachChild(this.introCont);
 
-        this.gamepad = new JoystickPreviewScreen.GamepadView(null,
-                this.getApplication().getAssetManager());
+        this.gamepad =
+                new JoystickPreviewScreen.GamepadView(null, this.resources);
 
         ((SimpleApplication) this.getApplication()).getGuiNode()
                 .attachChild(this.gui);
@@ -240,93 +333,30 @@ public class CalibrateInputScreen extends BaseAppState
     @Override
     public void update(float tpf)
     {
+        int timeLeft;
         super.update(tpf);
-        float MAX_HOLD_TIME = 1F;
-        super.update(tpf);
-        if (this.timeHeld >= 0)
+        this.events.drain(this.eventHandler);
+        if (this.parallel)
         {
-            this.timeHeld += tpf;
-            this.currentTime.setText(
-                    (int) Math.ceil(MAX_HOLD_TIME - this.timeHeld) +
-                            " s left...");
-            if (this.timeHeld >= MAX_HOLD_TIME)
+            for (CalibrationEngine engine : this.engines)
             {
-                switch (this.currentButton)
-                {
-                case L2:
-                    if (this.focusedJoyElement instanceof JoystickAxis)
-                    {
-                        this.maps.put(JoystickAxis.LEFT_TRIGGER,
-                                this.focusedJoyElement);
-                    }
-                    else
-                    {
-                        this.maps.
-                                put(this.currentButton, this.focusedJoyElement);
-                    }
-                    break;
-                case R2:
-                    if (this.focusedJoyElement instanceof JoystickAxis)
-                    {
-                        this.maps.put(JoystickAxis.RIGHT_TRIGGER,
-                                this.focusedJoyElement);
-                    }
-                    else
-                    {
-                        this.maps.
-                                put(this.currentButton, this.focusedJoyElement);
-                    }
-                    break;
-                case JoystickAxis.POV_X:
-                    if (this.focusedJoyElement instanceof JoystickButton)
-                    {
-                        this.maps.put(this.currentBias ? DPAD_RIGHT :
-                                      DPAD_LEFT, this.focusedJoyElement);
-                    }
-                    else
-                    {
-                        this.maps.
-                                put(this.currentButton, this.focusedJoyElement);
-                    }
-                    break;
-                case JoystickAxis.POV_Y:
-                    if (this.focusedJoyElement instanceof JoystickButton)
-                    {
-                        this.maps.put(this.currentBias ? DPAD_UP : DPAD_DOWN,
-                                this.focusedJoyElement);
-                    }
-                    else
-                    {
-                        this.maps.
-                                put(this.currentButton, this.focusedJoyElement);
-                    }
-                    break;
-                default:
-                    this.maps.put(this.currentButton, this.focusedJoyElement);
-                    break;
-                }
-                this.mapBias.put(this.currentButton, this.focusValue > 0);
-                if (this.focusedJoyElement instanceof JoystickAxis)
+                if (engine != null)
                 {
-                    if (!this.rangeMaps.containsKey(this.currentButton))
-                    {
-                        this.rangeMaps.put(this.currentButton, new float[2]);
-                    }
-                    this.rangeMaps.get(this.currentButton)[this.currentBias ?
-                                                           1 :
-                                                           0] =
-                            this.greatestVal;
-                }
-                this.timeHeld = -1;
-                this.focusedJoyElement = null;
-                this.focusValue = 0;
-                if (this.currentStage == PromptStage.BUTTON)
-                {
-                    this.calibrateNextButton();
+                    engine.update(tpf);
+                    ((SessionRow) engine.getListener()).showTimeLeft();
                 }
-                else
+            }
+        }
+        else if (this.engine != null)
+        {
+            this.engine.update(tpf);
+            if (this.engine.isHolding())
+            {
+                timeLeft = (int) Math.ceil(this.engine.getHoldTimeLeft());
+                if (timeLeft != this.shownTimeLeft)
                 {
-                    this.calibrateNextAxis();
+                    this.shownTimeLeft = timeLeft;
+                    this.currentTime.setText(timeLeft + " s left...");
                 }
             }
         }
@@ -357,6 +387,7 @@ public class CalibrateInputScreen extends BaseAppState
                     .removeRawInputListener(this);
         }
         this.getApplication().getInputManager().removeListener(this);
+        this.events.clear();
     }
 
     /**
@@ -377,14 +408,13 @@ public class CalibrateInputScreen extends BaseAppState
      */
     protected void resize(int width, int height)
     {
-        float introHeight =
-                GUIUtils.alignContainer(this.introCont, width, height);
-        float mainHeight =
-                GUIUtils.alignContainer(this.mainOptions, width, height);
+        float introHeight = this.introLayout.layout();
+        float mainHeight = this.mainLayout.layout();
         this.gui.setLocalTranslation(0, height / 2F, 0);
         this.introCont.setLocalTranslation((width) / 2F, (introHeight) / 2F, 0);
         this.mainOptions
-                .setLocalTranslation((width) / 4F, (mainHeight) / 2F, 0);
+                .setLocalTranslation((width) / (this.parallel ? 2F : 4F),
+                        (mainHeight) / 2F, 0);
         this.gamepad.setLocalTranslation(width / 2F, -256, 0);
         if (this.currentJoystick != null)
         {
@@ -422,32 +452,44 @@ public class CalibrateInputScreen extends BaseAppState
                 case "start":
                     this.introCont.removeFromParent();
                     this.gui.attachChild(this.mainOptions);
-                    this.gui.attachChild(this.gamepad);
+                    if (this.parallel)
+                    {
+                        this.mainOptions.detachAllChildren();
+                        this.mainOptions.attachChild(this.guiFont.createLabel(
+                                "Press any button on each controller\n" +
+                                        "you want to calibrate."));
+                        this.mainOptions.attachChild(this.pendingLabel);
+                        this.mainOptions.attachChild(this.cancelButton);
+                        this.showPending();
+                    }
+                    else
+                    {
+                        this.gui.attachChild(this.gamepad);
+                    }
                     this.resize();
 
                     this.listeningRaw = true;
                     this.getApplication().getInputManager()
                             .addRawInputListener(this);
                     break;
+                case "save":
+                    this.finishParallel();
+                    break;
                 case "skip":
-                    if (this.currentStage != null)
+                    if (this.engine != null)
                     {
-                        this.timeHeld = -1;
-                        this.focusedJoyElement = null;
-                        this.focusValue = 0;
-                        if (this.currentStage == PromptStage.BUTTON)
-                        {
-                            this.calibrateNextButton();
-                        }
-                        else
-                        {
-                            this.calibrateNextAxis();
-                        }
+                        this.engine.skip();
                     }
                     break;
                 case "cancel":
+                case "preview":
+                    /*
+                     * Attaching the preview first keeps the shared GUI
+                     * resources from being dropped in between.
+                     */
+                    this.getStateManager()
+                            .attach(new JoystickPreviewScreen(this.state));
                     this.getStateManager().detach(this);
-                    this.getStateManager().attach(new JoystickPreviewScreen());
                     break;
                 case "close":
                     this.getApplication().stop();
@@ -458,6 +500,13 @@ public class CalibrateInputScreen extends BaseAppState
                 case "no":
                     this.recordFile();
                     break;
+                default:
+                    if (buttonId.startsWith(SKIP_PREFIX))
+                    {
+                        this.skip(Integer.parseInt(
+                                buttonId.substring(SKIP_PREFIX.length())));
+                    }
+                    break;
                 }
             }
         }
@@ -469,10 +518,12 @@ public class CalibrateInputScreen extends BaseAppState
      * controller you have if some of them are identical.
      *
      * @param joystick - The joystick to use for calibration.
+     * @param engine - The calibration for the joystick.
      */
-    private void setJoystick(Joystick joystick)
+    private void setJoystick(Joystick joystick, CalibrationEngine engine)
     {
         this.joystick = joystick;
+        this.engine = engine;
         this.currentJoystick =
                 this.guiFont.createLabel(this.joystick.getName());
         this.currentJoystick
@@ -480,198 +531,405 @@ public class CalibrateInputScreen extends BaseAppState
                         this.currentJoystick.getHeight()));
         this.currentJoystick.setAlignment(BitmapFont.Align.Center);
         this.gui.attachChild(this.currentJoystick);
-        this.calibrationIter = BUTTON_PROMPTS.keySet().iterator();
         this.currentElement = this.guiFont.createLabel("");
         this.currentTime = this.guiFont.createLabel("");
-
-        this.currentStage = PromptStage.BUTTON;
-        calibrateNextButton();
     }
 
     /**
-     * Sets up the scene to calibrate the next button on the list. If we have
-     * gone through them all, we start on axis.
+     * Obtains the calibration that events from a joystick go to.
+     *
+     * @param joy - The joystick the event came from.
+     * @return The calibration, or null if the events should be ignored.
      */
-    private void calibrateNextButton()
+    private CalibrationEngine getEngine(Joystick joy)
     {
-        if (this.currentButton != null)
+        int joyId = joy.getJoyId();
+        if (this.engine != null)
         {
-            this.gamepad.setButtonValue(this.currentButton, false);
+            return joy == this.joystick ? this.engine : null;
         }
-        this.currentElement.removeFromParent();
-        this.currentTime.removeFromParent();
-
-        if (this.calibrationIter.hasNext())
+        if (joyId < 0 || this.finished)
+        {
+            return null;
+        }
+        if (joyId >= this.engines.length)
         {
-            this.currentButton = this.calibrationIter.next();
-            if ((this.currentButton.equals(L2) ||
-                    this.currentButton.equals(R2)) && this.triggers2)
+            this.engines = Arrays.copyOf(this.engines, joyId + 1);
+        }
+        if (this.engines[joyId] == null)
+        {
+            this.engines[joyId] = createEngine(joy);
+            this.engines[joyId].setListener(this.parallel ?
+                                            new SessionRow(joy) :
+                                            new EngineListener(joy));
+            if (this.parallel)
             {
-                this.calibrateNextButton();
-                return;
+                this.showPending();
             }
-            this.mainOptions.detachAllChildren();
-            this.mainOptions.attachChild(this.guiFont.createLabel("Press the"));
-            this.mainOptions.attachChild(this.guiFont
-                    .createLabel(BUTTON_PROMPTS.get(this.currentButton)));
-            this.mainOptions.attachChild(this.skipButton);
-            this.mainOptions.attachChild(this.cancelButton);
-            this.gamepad.setButtonValue(this.currentButton, true);
-            this.resize();
         }
-        else
+        return this.engines[joyId];
+    }
+
+    /**
+     * Skips the current prompt of a controller in parallel mode.
+     *
+     * @param joyId - The ID of the joystick.
+     */
+    private void skip(int joyId)
+    {
+        if (joyId >= 0 && joyId < this.engines.length &&
+                this.engines[joyId] != null)
         {
-            this.currentBias = true;
-            this.currentButton = null;
-            this.calibrationIter = AXIS_PROMPTS.keySet().iterator();
-            this.currentStage = PromptStage.AXIS;
-            this.calibrateNextAxis();
+            this.engines[joyId].skip();
         }
     }
 
     /**
-     * Sets up the scene to calibrate the next button on the list. If we have
-     * gone through them all, we record the file.
+     * Moves on to saving in parallel mode once every controller that sent
+     * any input is done. Until then, the controllers that finished can be
+     * saved with the save button, which appears once the first one is done.
      */
-    private void calibrateNextAxis()
+    private void checkFinished()
     {
-        // Clears the display
-        if (this.currentButton != null)
+        boolean any = false, pending = false;
+        for (CalibrationEngine engine : this.engines)
         {
-            switch (this.currentButton)
+            if (engine != null)
             {
-            case JoystickAxis.X_AXIS:
-                this.gamepad.setXAxis(0);
-                break;
-            case JoystickAxis.Y_AXIS:
-                this.gamepad.setYAxis(0);
-                break;
-            case JoystickAxis.Z_AXIS:
-                this.gamepad.setZAxis(0);
-                break;
-            case JoystickAxis.Z_ROTATION:
-                this.gamepad.setZRotation(0);
-                break;
-            case JoystickAxis.POV_X:
-                if (this.currentBias)
+                if (engine.getStage() == CalibrationEngine.Stage.FINISHED)
                 {
-                    this.gamepad.
-                            setButtonValue(DPAD_RIGHT, false);
+                    any = true;
                 }
                 else
                 {
-                    this.gamepad.setButtonValue(DPAD_LEFT, false);
+                    pending = true;
                 }
-                break;
-            case JoystickAxis.POV_Y:
-                if (this.currentBias)
-                {
-                    this.gamepad.setButtonValue(DPAD_UP, false);
-                }
-                else
-                {
-                    this.gamepad.setButtonValue(DPAD_DOWN, false);
-                }
-                break;
-            case JoystickAxis.LEFT_TRIGGER:
-                this.gamepad.setButtonValue(L2, false);
-                break;
-            case JoystickAxis.RIGHT_TRIGGER:
-                this.gamepad.setButtonValue(R2, false);
-                break;
             }
         }
-        this.currentElement.removeFromParent();
-        this.currentTime.removeFromParent();
+        if (!any)
+        {
+            return;
+        }
+        if (!pending)
+        {
+            this.finishParallel();
+            return;
+        }
+        if (this.saveButton.getParent() == null)
+        {
+            this.mainOptions.attachChildAt(this.saveButton,
+                    this.mainOptions.getChildIndex(this.cancelButton));
+        }
+        this.showPending();
+    }
+
+    /**
+     * Lists the controllers that sent input in parallel mode, but haven't
+     * started calibrating yet. Those still calibrating have rows of their
+     * own.
+     */
+    private void showPending()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < this.engines.length; i++)
+        {
+            if (this.engines[i] != null && this.engines[i].getStage() ==
+                    CalibrationEngine.Stage.WAITING)
+            {
+                text.append(text.length() == 0 ? "Not started yet: " : ", ")
+                        .append(this.engines[i].getName()).append(" #")
+                        .append(i);
+            }
+        }
+        this.pendingLabel.setText(text);
+        this.resize();
+    }
+
+    /**
+     * Stops calibrating in parallel mode and moves on to saving the
+     * controllers that are done. Any others are left out.
+     */
+    private void finishParallel()
+    {
+        if (!this.finished)
+        {
+            this.finished = true;
+            this.promptClearUnused();
+        }
+    }
 
-        // Increments the counter
-        if (!this.currentBias)
+    /**
+     * Creates a calibration for a joystick.
+     *
+     * @param joy - The joystick to calibrate.
+     * @return The calibration, which has yet to start.
+     */
+    static CalibrationEngine createEngine(Joystick joy)
+    {
+        List<JoystickAxis> axes = joy.getAxes();
+        List<JoystickButton> buttons = joy.getButtons();
+        String[] axisNames = new String[0];
+        String[] buttonNames = new String[0];
+        for (JoystickAxis axis : axes)
         {
-            this.currentBias = true;
+            if (axis.getAxisId() >= axisNames.length)
+            {
+                axisNames = Arrays.copyOf(axisNames, axis.getAxisId() + 1);
+            }
+            axisNames[axis.getAxisId()] = axis.getName();
         }
-        else if (this.calibrationIter.hasNext())
+        for (JoystickButton button : buttons)
         {
-            this.currentBias = false;
-            this.currentButton = this.calibrationIter.next();
-            if (this.currentButton.equals(JoystickAxis.LEFT_TRIGGER) ||
-                    this.currentButton.equals(JoystickAxis.RIGHT_TRIGGER))
+            if (button.getButtonId() >= buttonNames.length)
             {
-                this.currentBias = true;
-                if (!this.triggers2)
-                {
-                    this.calibrateNextAxis();
-                    return;
-                }
+                buttonNames =
+                        Arrays.copyOf(buttonNames, button.getButtonId() + 1);
             }
+            buttonNames[button.getButtonId()] = button.getName();
         }
-        else
+        return new CalibrationEngine(joy.getName(), axisNames, buttonNames);
+    }
+
+    /**
+     * Shows the prompts of a calibration on the screen.
+     */
+    private class EngineListener implements CalibrationEngine.Listener
+    {
+        private final Joystick joy;
+
+        EngineListener(Joystick joy)
         {
-            this.currentButton = null;
+            this.joy = joy;
         }
 
-        if (this.currentButton != null)
+        @Override
+        public void calibrationStarted(CalibrationEngine engine)
         {
-            this.mainOptions.detachAllChildren();
-            this.mainOptions.attachChild(this.guiFont.createLabel("Press the"));
-            this.mainOptions.attachChild(this.guiFont.createLabel(
-                    (this.currentBias ? "Positive " : "Negative ") +
-                            AXIS_PROMPTS.get(this.currentButton)));
-            this.mainOptions.attachChild(this.skipButton);
-            this.mainOptions.attachChild(this.cancelButton);
+            setJoystick(this.joy, engine);
+        }
 
-            // Updates the display
-            switch (this.currentButton)
+        @Override
+        public void promptStarted(CalibrationEngine engine, String logicalId,
+                                  boolean axis, boolean positive)
+        {
+            mainOptions.detachAllChildren();
+            mainOptions.attachChild(guiFont.createLabel("Press the"));
+            if (axis)
             {
-            case JoystickAxis.X_AXIS:
-                this.gamepad.setXAxis(this.currentBias ? 1 : -1);
-                break;
-            case JoystickAxis.Y_AXIS:
-                this.gamepad.setYAxis(this.currentBias ? 1 : -1);
-                break;
-            case JoystickAxis.Z_AXIS:
-                this.gamepad.setZAxis(this.currentBias ? 1 : -1);
-                break;
-            case JoystickAxis.Z_ROTATION:
-                this.gamepad.setZRotation(this.currentBias ? 1 : -1);
-                break;
-            case JoystickAxis.POV_X:
-                if (this.currentBias)
-                {
-                    this.gamepad.setButtonValue(DPAD_RIGHT, true);
-                }
-                else
-                {
-                    this.gamepad.setButtonValue(DPAD_LEFT, true);
-                }
-                break;
-            case JoystickAxis.POV_Y:
-                if (this.currentBias)
-                {
-                    this.gamepad.setButtonValue(DPAD_UP, true);
-                }
-                else
+                mainOptions.attachChild(guiFont.createLabel(
+                        (positive ? "Positive " : "Negative ") +
+                                CalibrationEngine
+                                        .getPromptText(logicalId, true)));
+            }
+            else
+            {
+                mainOptions.attachChild(guiFont.createLabel(
+                        CalibrationEngine.getPromptText(logicalId, false)));
+            }
+            mainOptions.attachChild(skipButton);
+            mainOptions.attachChild(cancelButton);
+            showPrompt(logicalId, axis, positive, true);
+            resize();
+        }
+
+        @Override
+        public void promptEnded(CalibrationEngine engine, String logicalId,
+                                boolean axis, boolean positive)
+        {
+            showPrompt(logicalId, axis, positive, false);
+            currentElement.removeFromParent();
+            currentTime.removeFromParent();
+        }
+
+        @Override
+        public void elementFocused(CalibrationEngine engine, String name,
+                                   boolean axis, float value)
+        {
+            shownTimeLeft = -1;
+            if (axis)
+            {
+                currentElement.setText((value > 0 ? "+ " : "- ") + name);
+            }
+            else
+            {
+                currentElement.setText(name);
+            }
+            gui.attachChild(currentElement);
+            gui.attachChild(currentTime);
+            resize();
+        }
+
+        @Override
+        public void focusLost(CalibrationEngine engine)
+        {
+            currentElement.removeFromParent();
+            currentTime.removeFromParent();
+        }
+
+        @Override
+        public void calibrationFinished(CalibrationEngine engine)
+        {
+            promptClearUnused();
+        }
+    }
+
+    /**
+     * Shows the progress of one of the calibrations in parallel mode as a
+     * line of text, with its own skip button.
+     */
+    private class SessionRow implements CalibrationEngine.Listener
+    {
+        private final Joystick joy;
+        private BitmapText label;
+        private Node skip;
+        private String prompt = "";
+        private String focus;
+        private int shownTimeLeft = -1;
+        private CalibrationEngine engine;
+
+        SessionRow(Joystick joy)
+        {
+            this.joy = joy;
+        }
+
+        @Override
+        public void calibrationStarted(CalibrationEngine engine)
+        {
+            this.engine = engine;
+            this.label = guiFont.createLabel("");
+            this.skip = GUIUtils.createButton(resources,
+                    getApplication().getContext().getTouchInput() != null,
+                    SKIP_PREFIX + this.joy.getJoyId(), "Skip");
+            /*
+             * Rows are kept above the list of controllers yet to start.
+             */
+            mainOptions.attachChildAt(this.label,
+                    mainOptions.getChildIndex(pendingLabel));
+            mainOptions.attachChildAt(this.skip,
+                    mainOptions.getChildIndex(pendingLabel));
+            showPending();
+        }
+
+        @Override
+        public void promptStarted(CalibrationEngine engine, String logicalId,
+                                  boolean axis, boolean positive)
+        {
+            this.prompt = "Press the " + (axis ? (positive ? "Positive " :
+                                                  "Negative ") : "") +
+                    CalibrationEngine.getPromptText(logicalId, axis);
+            this.refresh();
+        }
+
+        @Override
+        public void promptEnded(CalibrationEngine engine, String logicalId,
+                                boolean axis, boolean positive)
+        {
+            this.focus = null;
+        }
+
+        @Override
+        public void elementFocused(CalibrationEngine engine, String name,
+                                   boolean axis, float value)
+        {
+            this.focus = axis ? (value > 0 ? "+ " : "- ") + name : name;
+            this.shownTimeLeft = -1;
+            this.showTimeLeft();
+        }
+
+        @Override
+        public void focusLost(CalibrationEngine engine)
+        {
+            this.focus = null;
+            this.refresh();
+        }
+
+        @Override
+        public void calibrationFinished(CalibrationEngine engine)
+        {
+            this.prompt = "Done";
+            this.focus = null;
+            this.skip.removeFromParent();
+            this.refresh();
+            checkFinished();
+        }
+
+        /**
+         * Updates the hold time shown, if it changed.
+         */
+        void showTimeLeft()
+        {
+            int timeLeft;
+            if (this.engine != null && this.engine.isHolding())
+            {
+                timeLeft = (int) Math.ceil(this.engine.getHoldTimeLeft());
+                if (timeLeft != this.shownTimeLeft)
                 {
-                    this.gamepad.setButtonValue(DPAD_DOWN, true);
+                    this.shownTimeLeft = timeLeft;
+                    this.refresh();
                 }
-                break;
-            case JoystickAxis.LEFT_TRIGGER:
-                this.gamepad.setButtonValue(L2, true);
-                break;
-            case JoystickAxis.RIGHT_TRIGGER:
-                this.gamepad.setButtonValue(R2, true);
-                break;
             }
-            this.resize();
         }
-        else
+
+        private void refresh()
         {
-            this.promptClearUnused();
+            this.label.setText(this.joy.getName() + " #" +
+                    this.joy.getJoyId() + ": " + this.prompt +
+                    (this.focus != null ? " (" + this.focus + ", " +
+                            this.shownTimeLeft + " s left...)" : ""));
+            resize();
+        }
+    }
+
+    /**
+     * Highlights what is being prompted for on the gamepad.
+     *
+     * @param logicalId - The logical ID being prompted for.
+     * @param axis - True if an axis is being prompted for.
+     * @param positive - For axes, whether the positive direction is being
+     * prompted for.
+     * @param shown - Whether to show or clear the highlight.
+     */
+    private void showPrompt(String logicalId, boolean axis, boolean positive,
+                            boolean shown)
+    {
+        float direction = shown ? (positive ? 1 : -1) : 0;
+        if (!axis)
+        {
+            this.gamepad.setButtonValue(logicalId, shown);
+            return;
+        }
+        switch (logicalId)
+        {
+        case JoystickAxis.X_AXIS:
+            this.gamepad.setXAxis(direction);
+            break;
+        case JoystickAxis.Y_AXIS:
+            this.gamepad.setYAxis(direction);
+            break;
+        case JoystickAxis.Z_AXIS:
+            this.gamepad.setZAxis(direction);
+            break;
+        case JoystickAxis.Z_ROTATION:
+            this.gamepad.setZRotation(direction);
+            break;
+        case JoystickAxis.POV_X:
+            this.gamepad.setButtonValue(positive ? DPAD_RIGHT : DPAD_LEFT,
+                    shown);
+            break;
+        case JoystickAxis.POV_Y:
+            this.gamepad.setButtonValue(positive ? DPAD_UP : DPAD_DOWN, shown);
+            break;
+        case JoystickAxis.LEFT_TRIGGER:
+            this.gamepad.setButtonValue(L2, shown);
+            break;
+        case JoystickAxis.RIGHT_TRIGGER:
+            this.gamepad.setButtonValue(R2, shown);
+            break;
         }
     }
 
     private void promptClearUnused()
     {
-        this.currentStage = null;
         this.mainOptions.removeFromParent();
         this.gamepad.removeFromParent();
 
@@ -694,141 +952,183 @@ public class CalibrateInputScreen extends BaseAppState
     }
 
     /**
-     * Saves the calibration settings to the file and prompts for an application
-     * restart.
+     * Saves the calibration settings to the file and puts them into use. The
+     * file is written in the background by a {@link CalibrationWriter}, and
+     * the result is shown once it is done.
      */
     private void recordFile()
     {
-        /*
-         * Enable this in JME 3.4.
-         */
-        boolean perComponentEnabled = true;
-        JoystickAxis axis;
-        JoystickButton button;
-        float[] range;
-        Properties props = new Properties();
+        Properties calibration = new Properties();
 
-        this.introCont.removeFromParent();
+        this.introCont.detachAllChildren();
+        this.introCont.attachChild(
+                this.guiFont.createLabel("Saving calibration..."));
+        this.resize();
 
-        if (!calibrationFile.exists())
-        {
-            try
-            {
-                if (!calibrationFile.createNewFile())
+        this.writeCalibration(calibration);
+        CalibrationWriter.save(this.getApplication(), this.calibrationFile,
+                calibration, new CalibrationWriter.Callback()
                 {
-                    throw new IOException("Could not create calibration file.");
-                }
-            }
-            catch (IOException ioe)
+                    @Override
+                    public void saved(File file, Properties props)
+                    {
+                        if (isInitialized())
+                        {
+                            showSaved(applyCalibration(props));
+                        }
+                    }
+
+                    @Override
+                    public void failed(File file, IOException error)
+                    {
+                        if (isInitialized())
+                        {
+                            showSaveError(error);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Puts the saved calibration into use without restarting, along with the
+     * dead zones found for each calibrated controller.
+     *
+     * @param props - Everything in the calibration file.
+     * @return True if the calibration is in use, or false if the application
+     * has to be restarted to load it.
+     */
+    private boolean applyCalibration(Properties props)
+    {
+        Joystick[] joysticks;
+        try
+        {
+            joysticks = CalibrationApplier.apply(this.getApplication(), props);
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Could not apply the new calibration", e);
+            return false;
+        }
+        if (joysticks == null)
+        {
+            return false;
+        }
+        if (this.engine != null)
+        {
+            CalibrationApplier.applyDeadZones(joysticks, this.engine);
+        }
+        for (CalibrationEngine engine : this.engines)
+        {
+            if (engine != null && engine != this.engine &&
+                    engine.getStage() == CalibrationEngine.Stage.FINISHED)
             {
-                this.introCont.detachAllChildren();
-                this.introCont.attachChild(this.guiFont
-                        .createLabel("Could not create Calibration File:"));
-                this.introCont.attachChild(this.cancelButton);
-                this.introCont.attachChild(
-                        this.guiFont.createLabel("Error Details:"));
-                this.listStack(this.introCont, ioe);
-                this.gui.attachChild(this.introCont);
-                this.resize();
+                CalibrationApplier.applyDeadZones(joysticks, engine);
             }
         }
+        return true;
+    }
 
-        try (FileInputStream input = new FileInputStream(calibrationFile))
+    /**
+     * Shows that the calibration file was saved.
+     *
+     * @param applied - Whether the calibration was put into use, or needs a
+     * restart.
+     */
+    private void showSaved(boolean applied)
+    {
+        this.introCont.detachAllChildren();
+        this.introCont.attachChild(this.guiFont
+                .createLabel("Calibration completed successfully."));
+        if (applied)
         {
-            props.load(input);
+            this.introCont.attachChild(this.guiFont
+                    .createLabel("The new settings are now in use."));
+            this.introCont.attachChild(this.previewButton);
         }
-        catch (IOException e)
+        else
         {
-            logger.error("Could not load calibration file", e);
+            this.introCont.attachChild(this.guiFont.createLabel(
+                    "Close the application and restart to load"));
+            this.introCont.attachChild(
+                    this.guiFont.createLabel("the new settings."));
         }
-        finally
+        this.introCont.attachChild(this.restartButton);
+        this.gui.attachChild(this.introCont);
+        this.resize();
+    }
+
+    /**
+     * Shows why the calibration file could not be saved.
+     *
+     * @param error - The error that stopped it from being saved.
+     */
+    private void showSaveError(IOException error)
+    {
+        this.introCont.detachAllChildren();
+        this.introCont.attachChild(this.guiFont
+                .createLabel("Could not create Calibration File:"));
+        this.introCont.attachChild(this.cancelButton);
+        this.introCont.attachChild(
+                this.guiFont.createLabel("Error Details:"));
+        this.listStack(this.introCont, error);
+        this.gui.attachChild(this.introCont);
+        this.resize();
+    }
+
+    /**
+     * Adds the results of the calibration to a set of properties. In parallel
+     * mode, the results of every controller that finished are merged with
+     * {@link CalibrationEngine#mergeMappings(java.util.Collection)}, since
+     * identical controllers share the same entries. If they mapped an element
+     * to different logical IDs, a warning is logged and the last controller
+     * to map it wins.
+     *
+     * @param props - The properties to add to.
+     */
+    private void writeCalibration(Properties props)
+    {
+        Map<String, List<String>> mappings;
+        Properties session;
+        String merged;
+        if (!this.parallel)
+        {
+            this.engine.writeProperties(props, this.clear);
+            return;
+        }
+        mappings = new LinkedHashMap<>();
+        session = new Properties();
+        for (CalibrationEngine engine : this.engines)
         {
-            ArrayList<Object> elements = new ArrayList<>();
-            elements.addAll(this.joystick.getAxes());
-            elements.addAll(this.joystick.getButtons());
-            for (Map.Entry<String, Object> calibrationEntry : this.maps
-                    .entrySet())
+            if (engine == null ||
+                    engine.getStage() != CalibrationEngine.Stage.FINISHED)
             {
-                if (calibrationEntry.getValue() instanceof JoystickButton)
-                {
-                    button = (JoystickButton) calibrationEntry.getValue();
-                    if (!button.getName()
-                            .equals(calibrationEntry.getKey()) || clear)
-                    {
-                        props.put((perComponentEnabled ? "button." : "") +
-                                this.joystick.getName() + "." +
-                                button.getName(), calibrationEntry.getKey());
-                    }
-                }
-                else if (calibrationEntry.getValue() instanceof JoystickAxis)
-                {
-                    axis = (JoystickAxis) calibrationEntry.getValue();
-                    if (!axis.getName()
-                            .equals(calibrationEntry.getKey()) || clear)
-                    {
-                        range = this.rangeMaps.get(calibrationEntry.getKey());
-//                        defaultValue = this.defaultValues.get(axis);
-                        props.put((perComponentEnabled ? "axis." : "") +
-                                        this.joystick.getName() + "." + axis.getName(),
-                                calibrationEntry.getKey() + (perComponentEnabled && range != null ?
-                                                             ("[" + (range[0] != 0 ?
-                                                                     (1.0F / range[0]) :
-                                                                     0) + "," + (
-                                                                     range[1] != 0 ?
-                                                                     (1.0F / range[1]) :
-                                                                     0) + "]") :
-                                                             ""));
-                    }
-                }
-                elements.remove(calibrationEntry.getValue());
+                continue;
+            }
+            session.clear();
+            engine.writeProperties(session, this.clear);
+            for (String key : session.stringPropertyNames())
+            {
+                mappings.computeIfAbsent(key, k -> new ArrayList<>())
+                        .add(session.getProperty(key));
             }
-            if (this.clear)
+        }
+        for (Map.Entry<String, List<String>> entry : mappings.entrySet())
+        {
+            merged = CalibrationEngine.mergeMappings(entry.getValue());
+            if (merged == null)
             {
-                for (Object element : elements)
+                logger.warn("Controllers with the same name mapped {} to " +
+                        "different elements: {}", entry.getKey(),
+                        entry.getValue());
+                for (String mapping : entry.getValue())
                 {
-                    if (element instanceof JoystickButton)
+                    if (!mapping.equals("null"))
                     {
-                        button = (JoystickButton) element;
-                        props.put((perComponentEnabled ? "button." : "") +
-                                this.joystick.getName() + "." +
-                                button.getName(), "null");
-                    }
-                    else if (element instanceof JoystickAxis)
-                    {
-                        axis = (JoystickAxis) element;
-                        props.put((perComponentEnabled ? "axis." : "") +
-                                        this.joystick.getName() + "." + axis.getName(),
-                                "null");
+                        merged = mapping;
                     }
                 }
             }
-            try (FileOutputStream output = new FileOutputStream(
-                    calibrationFile))
-            {
-                props.store(output, "Joystick Calibration File");
-                this.introCont.detachAllChildren();
-                this.introCont.attachChild(this.guiFont
-                        .createLabel("Calibration completed successfully."));
-                this.introCont.attachChild(this.guiFont.createLabel(
-                        "Close the application and restart to load"));
-                this.introCont.attachChild(
-                        this.guiFont.createLabel("the new settings."));
-                this.introCont.attachChild(this.restartButton);
-                this.gui.attachChild(this.introCont);
-                this.resize();
-            }
-            catch (IOException ioe)
-            {
-                this.introCont.detachAllChildren();
-                this.introCont.attachChild(this.guiFont
-                        .createLabel("Could not create Calibration File:"));
-                this.introCont.attachChild(this.cancelButton);
-                this.introCont.attachChild(
-                        this.guiFont.createLabel("Error Details:"));
-                this.listStack(this.introCont, ioe);
-                this.gui.attachChild(this.introCont);
-                this.resize();
-            }
+            props.put(entry.getKey(), merged);
         }
     }
 
@@ -862,122 +1162,70 @@ public class CalibrateInputScreen extends BaseAppState
                 .attachChild(this.guiFont.createLabel(errorBuilder.toString()));
     }
 
+    /**
+     * Queues the axis event so that it can be processed on the next update.
+     * Events consumed by an earlier listener, such as a
+     * {@link NoisyAxisFilter}, are ignored.
+     *
+     * @param evt - Input event data.
+     */
     @Override
     public void onJoyAxisEvent(JoyAxisEvent evt)
     {
-        float[] defaultValue = this.defaultValues.get(evt.getAxis());
-//        this.setJoystick(evt.getAxis().getJoystick());
-        if (this.joystick != null)
+        if (!evt.isConsumed())
         {
-            // TODO - Use getRawValue() in 3.4
-            if (evt.getRawValue() != 0 && Math.abs(evt.getRawValue()) > 0.5 &&
-                    (defaultValue == null || Math.abs(
-                            defaultValue[0] -
-                                    evt.getRawValue()) > 0.001F))
-            {
-                if (this.focusedJoyElement != evt.getAxis() ||
-                        this.focusValue != evt.getRawValue())
-                {
-                    this.focusedJoyElement = evt.getAxis();
-                    this.timeHeld = 0;
-                    this.focusValue = evt.getRawValue();
-                    this.greatestVal = 0;
-                    this.smallestVal = evt.getRawValue();
-                    this.currentElement.setText(
-                            (this.focusValue > 0 ? "+ " : "- ") +
-                                    evt.getAxis().getName());
-                    this.gui.attachChild(this.currentElement);
-                    this.gui.attachChild(this.currentTime);
-                    this.resize();
-                }
-                else
-                {
-                    if (Math.abs(evt.getRawValue()) < Math.abs(this.smallestVal))
-                    {
-                        this.smallestVal = evt.getRawValue();
-                    }
-                    else if (Math.abs(evt.getRawValue()) > Math.abs(this.greatestVal))
-                    {
-                        this.greatestVal = evt.getRawValue();
-                    }
-                }
-            }
-            else
-            {
-                if (this.focusedJoyElement == evt.getAxis())
-                {
-                    this.focusedJoyElement = null;
-                    this.timeHeld = -1;
-                    this.focusValue = 0;
-                    this.currentElement.removeFromParent();
-                    this.currentTime.removeFromParent();
-                }
-            }
-        }
-        else
-        {
-            defaultValue = new float[]{evt.getRawValue(), 0, 0};
-            this.defaultValues.put(evt.getAxis(), defaultValue);
+            this.events.offerAxis(evt.getJoyIndex(), evt.getAxisIndex(),
+                    evt.getValue(), evt.getRawValue(), System.nanoTime(),
+                    evt.getTime());
         }
-//        if (defaultValue != null)
-//        {
-//            if (evt.getRawValue() < defaultValue[1])
-//            {
-//                defaultValue[1] = evt.getRawValue();
-//            }
-//            if (evt.getRawValue() > defaultValue[2])
-//            {
-//                defaultValue[2] = evt.getRawValue();
-//            }
-//        }
     }
 
+    /**
+     * Queues the button event so that it can be processed on the next update.
+     *
+     * @param evt - Input event data.
+     */
     @Override
     public void onJoyButtonEvent(JoyButtonEvent evt)
     {
-        if (this.joystick != null)
+        if (!evt.isConsumed())
         {
-            if (evt.isPressed() &&
-                    (this.defaultValues.get(evt.getButton()) == null ||
-                            Math.abs(this.defaultValues.get(evt.getButton())[0] -
-                                    1F) > 0.001F))
-            {
-                if (this.focusedJoyElement != evt.getButton() ||
-                        this.focusValue != 1F)
-                {
-                    this.focusedJoyElement = evt.getButton();
-                    this.timeHeld = 0;
-                    this.focusValue = 1;
-                    this.currentElement.setText(evt.getButton().getName());
-                    this.gui.attachChild(this.currentElement);
-                    this.gui.attachChild(this.currentTime);
-                    this.resize();
-                }
-            }
-            else
-            {
-                if (this.focusedJoyElement == evt.getButton())
-                {
-                    this.focusedJoyElement = null;
-                    this.timeHeld = -1;
-                    this.focusValue = 0;
-                    this.currentElement.removeFromParent();
-                    this.currentTime.removeFromParent();
-                }
-            }
+            this.events.offerButton(evt.getJoyIndex(), evt.getButtonIndex(),
+                    evt.isPressed(), System.nanoTime(), evt.getTime());
         }
-        else
+    }
+
+    /**
+     * Passes an axis value on to the calibration for its joystick.
+     *
+     * @param joy - The joystick the axis belongs to.
+     * @param axis - The axis that changed.
+     * @param rawValue - The value reported by the device.
+     */
+    private void handleAxis(Joystick joy, JoystickAxis axis, float rawValue)
+    {
+        CalibrationEngine engine = this.getEngine(joy);
+        if (engine != null)
         {
-            this.defaultValues
-                    .put(evt.getButton(),
-                            new float[]{evt.isPressed() ? 1.0F : 0.0F, 0, 0});
+            engine.onAxis(axis.getAxisId(), rawValue);
         }
-        if (!evt.isPressed())
+    }
+
+    /**
+     * Passes a button state on to the calibration for its joystick. The first
+     * button released starts the calibration of its joystick.
+     *
+     * @param joy - The joystick the button belongs to.
+     * @param button - The button that changed.
+     * @param pressed - Whether or not the button is pressed.
+     */
+    private void handleButton(Joystick joy, JoystickButton button,
+                              boolean pressed)
+    {
+        CalibrationEngine engine = this.getEngine(joy);
+        if (engine != null)
         {
-            if (this.joystick == null)
-            {
-                this.setJoystick(evt.getButton().getJoystick());
-            }
+            engine.onButton(button.getButtonId(), pressed);
         }
     }
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+import com.jme3.input.DefaultJoystickAxis;
+import com.jme3.input.InputManager;
+import com.jme3.input.JoyInput;
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickCompatibilityMappings;
+
+import java.util.Properties;
+
+/**
+ * Puts a new calibration into use in a running application, so that it
+ * doesn't have to be restarted to load the calibration file.
+ * <p>The mappings are added to {@link JoystickCompatibilityMappings}, and
+ * the joysticks are loaded again from the input backend so that their buttons
+ * and axes are remapped. The old joysticks are reported as disconnected and
+ * the new ones as connected, so that anything listening for joystick
+ * connections, such as {@link JoystickPreviewScreen}, picks them up.</p>
+ * <p>This should only be used from the render thread.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public final class CalibrationApplier
+{
+    private static final org.slf4j.Logger logger =
+            org.slf4j.LoggerFactory.getLogger(CalibrationApplier.class);
+
+    private CalibrationApplier()
+    {
+    }
+
+    /**
+     * Applies a calibration to the running application.
+     *
+     * @param app - The application.
+     * @param calibration - The calibration, in the format of a calibration
+     * file.
+     * @return The reloaded joysticks, or null if the input backend can't
+     * reload them. In that case, the calibration only applies to controllers
+     * connected later on.
+     */
+    public static Joystick[] apply(Application app, Properties calibration)
+    {
+        InputManager inputManager = app.getInputManager();
+        JoyInput joyInput = app.getContext() == null ? null :
+                            app.getContext().getJoyInput();
+        Joystick[] previous = inputManager.getJoysticks();
+        Joystick[] joysticks;
+
+        JoystickCompatibilityMappings.addMappings(calibration);
+        if (joyInput == null)
+        {
+            logger.warn("Joystick input is unavailable, so the calibration " +
+                    "can only apply to controllers connected from now on");
+            return null;
+        }
+
+        joysticks = joyInput.loadJoysticks(inputManager);
+        if (joysticks == null)
+        {
+            joysticks = new Joystick[0];
+        }
+        if (previous != null)
+        {
+            for (Joystick joy : previous)
+            {
+                if (joy != null)
+                {
+                    inputManager.fireJoystickDisconnectedEvent(joy);
+                }
+            }
+        }
+        inputManager.setJoysticks(joysticks);
+        for (Joystick joy : joysticks)
+        {
+            if (joy != null)
+            {
+                inputManager.fireJoystickConnectedEvent(joy);
+            }
+        }
+        return joysticks;
+    }
+
+    /**
+     * Gives the axes of every joystick calibrated by an engine the dead zones
+     * that the engine found. Joysticks are matched by name, so identical
+     * controllers all get the same dead zones.
+     *
+     * @param joysticks - The joysticks, as returned by
+     * {@link #apply(Application, Properties)}.
+     * @param engine - The finished calibration.
+     */
+    public static void applyDeadZones(Joystick[] joysticks,
+                                      CalibrationEngine engine)
+    {
+        float deadZone;
+        if (joysticks == null)
+        {
+            return;
+        }
+        for (Joystick joy : joysticks)
+        {
+            if (joy == null || !joy.getName().equals(engine.getName()))
+            {
+                continue;
+            }
+            for (JoystickAxis axis : joy.getAxes())
+            {
+                deadZone = engine.getAxisDeadZone(axis.getAxisId());
+                /*
+                 * Only the default axes let their dead zone be changed.
+                 */
+                if (deadZone > 0 && axis instanceof DefaultJoystickAxis)
+                {
+                    ((DefaultJoystickAxis) axis).setDeadZone(deadZone);
+                }
+            }
+        }
+    }
+}
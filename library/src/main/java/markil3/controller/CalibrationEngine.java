@@ -0,0 +1,1013 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.JoystickAxis;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static markil3.controller.JoystickPreviewScreen.ACTION_BOTTOM;
+import static markil3.controller.JoystickPreviewScreen.ACTION_LEFT;
+import static markil3.controller.JoystickPreviewScreen.ACTION_RIGHT;
+import static markil3.controller.JoystickPreviewScreen.ACTION_TOP;
+import static markil3.controller.JoystickPreviewScreen.DPAD_DOWN;
+import static markil3.controller.JoystickPreviewScreen.DPAD_LEFT;
+import static markil3.controller.JoystickPreviewScreen.DPAD_RIGHT;
+import static markil3.controller.JoystickPreviewScreen.DPAD_UP;
+import static markil3.controller.JoystickPreviewScreen.L1;
+import static markil3.controller.JoystickPreviewScreen.L2;
+import static markil3.controller.JoystickPreviewScreen.L3;
+import static markil3.controller.JoystickPreviewScreen.R1;
+import static markil3.controller.JoystickPreviewScreen.R2;
+import static markil3.controller.JoystickPreviewScreen.R3;
+import static markil3.controller.JoystickPreviewScreen.SELECT;
+import static markil3.controller.JoystickPreviewScreen.START;
+
+/**
+ * Works out the mappings for a single controller by prompting for each
+ * button and axis in turn, without any user interface of its own. This is
+ * the logic behind {@link CalibrateInputScreen}, which only displays what
+ * the engine tells its {@link Listener}.
+ * <p>The engine is fed plain axis and button events along with the time
+ * that passes, so it can be driven by anything: the screen, a recording, or
+ * a test. Until the first button on the controller is released, events are
+ * taken as the resting state of each element. After that, each prompt waits
+ * for an element other than its resting state to be held for the
+ * {@link #setHoldTime(float) hold time}, and maps it to the prompted logical
+ * ID. When every prompt was answered or skipped, the mappings can be written
+ * to a calibration file with {@link #writeProperties(Properties, boolean)}.
+ * </p>
+ * <p>Axis values are added to {@link AxisStatistics}, both while waiting
+ * for the calibration to start and while an axis is held for a prompt. Values
+ * from an axis on its way back to rest are left out, as they would be taken
+ * for noise. The resting values give the
+ * {@link #getCenter(int) center} and {@link #getDeadZone(String) dead zone}
+ * of each axis, and the held values give the extremes that decide its
+ * {@link #getScale(String) scale}. The center is the most common resting
+ * value rather than the mean, and values further from it than a prompt
+ * would need are left out of the dead zone, so a stick that is touched
+ * before the calibration starts doesn't throw either off. This also holds
+ * for backends that only report changes, where a single resting value may
+ * be all there is.</p>
+ * <p>An engine is not thread safe, and should be fed from one thread.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class CalibrationEngine
+{
+    private static final Map<String, String> BUTTON_PROMPTS;
+    private static final Map<String, String> AXIS_PROMPTS;
+
+    static
+    {
+        LinkedHashMap<String, String> buttons = new LinkedHashMap<>();
+        LinkedHashMap<String, String> axes = new LinkedHashMap<>();
+        buttons.put(ACTION_TOP, "Top Action Button");
+        buttons.put(ACTION_RIGHT, "Right Action Button");
+        buttons.put(ACTION_BOTTOM, "Bottom Action Button");
+        buttons.put(ACTION_LEFT, "Left Action Button");
+        buttons.put(L1, "Left Bumper (L1)");
+        buttons.put(R1, "Right Bumper (R1)");
+        buttons.put(L2, "Left Trigger (L2)");
+        buttons.put(R2, "Right Trigger (R2)");
+        buttons.put(SELECT, "Back/Select");
+        buttons.put(START, "Start");
+        buttons.put(L3, "Left Analog Stick Button (L3)");
+        buttons.put(R3, "Right Analog Stick Button (R3)");
+
+        axes.put(JoystickAxis.X_AXIS, "Left Analog Stick (Horizontal)");
+        axes.put(JoystickAxis.Y_AXIS, "Left Analog Stick (Vertical)");
+        axes.put(JoystickAxis.Z_AXIS, "Right Analog Stick (Horizontal)");
+        axes.put(JoystickAxis.Z_ROTATION, "Right Analog Stick (Vertical)");
+        axes.put(JoystickAxis.POV_X, "D-Pad (Horizontal)");
+        axes.put(JoystickAxis.POV_Y, "D-Pad (Vertical)");
+
+        BUTTON_PROMPTS = Collections.unmodifiableMap(buttons);
+        AXIS_PROMPTS = Collections.unmodifiableMap(axes);
+    }
+
+    /**
+     * How far an axis must be pushed to count as an answer to a prompt.
+     */
+    private static final float AXIS_THRESHOLD = 0.5F;
+    /**
+     * How close a value must be to the resting state to be ignored.
+     */
+    private static final float REST_TOLERANCE = 0.001F;
+    /**
+     * The fraction of resting values that the dead zone should cover.
+     */
+    private static final float DEAD_ZONE_FRACTION = 0.99F;
+    /**
+     * The fraction of held values beyond which the extreme of an axis is
+     * taken, so that a single spike doesn't decide the range.
+     */
+    private static final float EXTREME_FRACTION = 0.99F;
+
+    /**
+     * The stages of a calibration.
+     */
+    public enum Stage
+    {
+        /**
+         * Waiting for a button to be released to start, and recording the
+         * resting state of the controller in the meantime.
+         */
+        WAITING,
+        /**
+         * Prompting for buttons.
+         */
+        BUTTONS,
+        /**
+         * Prompting for both directions of each axis.
+         */
+        AXES,
+        /**
+         * Every prompt was answered or skipped.
+         */
+        FINISHED
+    }
+
+    /**
+     * Receives the changes in a calibration, so that they can be displayed.
+     */
+    public interface Listener
+    {
+        /**
+         * Called when a button is released for the first time, which starts
+         * the calibration.
+         *
+         * @param engine - The engine that started.
+         */
+        void calibrationStarted(CalibrationEngine engine);
+
+        /**
+         * Called when the engine starts waiting for an element.
+         *
+         * @param engine - The engine prompting.
+         * @param logicalId - The logical ID being prompted for.
+         * @param axis - True if an axis is being prompted for.
+         * @param positive - For axes, whether the positive direction is
+         * being prompted for.
+         */
+        void promptStarted(CalibrationEngine engine, String logicalId,
+                           boolean axis, boolean positive);
+
+        /**
+         * Called when a prompt was answered or skipped.
+         *
+         * @param engine - The engine prompting.
+         * @param logicalId - The logical ID that was prompted for.
+         * @param axis - True if an axis was prompted for.
+         * @param positive - For axes, whether the positive direction was
+         * prompted for.
+         */
+        void promptEnded(CalibrationEngine engine, String logicalId,
+                         boolean axis, boolean positive);
+
+        /**
+         * Called when an element starts being held, which starts the hold
+         * timer.
+         *
+         * @param engine - The engine prompting.
+         * @param name - The name of the element.
+         * @param axis - True if the element is an axis.
+         * @param value - The value of the element.
+         */
+        void elementFocused(CalibrationEngine engine, String name,
+                            boolean axis, float value);
+
+        /**
+         * Called when the held element was let go before the hold time was
+         * up.
+         *
+         * @param engine - The engine prompting.
+         */
+        void focusLost(CalibrationEngine engine);
+
+        /**
+         * Called when every prompt was answered or skipped.
+         *
+         * @param engine - The engine that finished.
+         */
+        void calibrationFinished(CalibrationEngine engine);
+    }
+
+    private final String name;
+    private final String[] axisNames;
+    private final String[] buttonNames;
+    private Listener listener;
+    private float holdTime = 1F;
+
+    private Stage stage = Stage.WAITING;
+    private Iterator<String> prompts;
+    private String currentPrompt;
+    private boolean currentBias;
+    private boolean promptActive;
+
+    /**
+     * Keeps track of whether the L2 and R2 functionalities are controlled by
+     * buttons or triggers.
+     */
+    private boolean triggerAxes;
+
+    /*
+     * The element being held. Axes are stored by their ID, and buttons as
+     * -1 - their ID.
+     */
+    private int focusedElement = Integer.MIN_VALUE;
+    private float focusValue;
+    private float timeHeld = -1;
+    /**
+     * The values of the held axis since it started being held.
+     */
+    private final AxisStatistics held = new AxisStatistics();
+
+    /**
+     * The resting values of each axis.
+     */
+    private final AxisStatistics[] axisRest;
+    /**
+     * The center of each axis, worked out once the resting values are in.
+     */
+    private final float[] axisCenters;
+    /**
+     * The resting state of each button, or NaN if it never reported one.
+     */
+    private final float[] buttonDefaults;
+
+    private final HashMap<String, Integer> maps = new HashMap<>();
+    /**
+     * The extremes reached for the negative and positive directions of each
+     * axis prompt, or NaN for directions that were skipped.
+     */
+    private final HashMap<String, float[]> rangeMaps = new HashMap<>();
+    private final HashMap<String, Boolean> mapBias = new HashMap<>();
+
+    /**
+     * Creates an engine for a controller.
+     *
+     * @param name - The name of the controller.
+     * @param axisNames - The names of the axes, by axis ID. Missing IDs may
+     * be null.
+     * @param buttonNames - The names of the buttons, by button ID. Missing IDs
+     * may be null.
+     */
+    public CalibrationEngine(String name, String[] axisNames,
+                             String[] buttonNames)
+    {
+        this.name = name;
+        this.axisNames = axisNames.clone();
+        this.buttonNames = buttonNames.clone();
+        this.axisRest = new AxisStatistics[axisNames.length];
+        this.axisCenters = new float[axisNames.length];
+        this.buttonDefaults = new float[buttonNames.length];
+        for (int i = 0; i < this.axisRest.length; i++)
+        {
+            this.axisRest[i] = new AxisStatistics();
+        }
+        Arrays.fill(this.buttonDefaults, Float.NaN);
+    }
+
+    /**
+     * Obtains the text to prompt the user with for a logical ID.
+     *
+     * @param logicalId - The logical ID.
+     * @param axis - Whether the ID is for an axis.
+     * @return The prompt text, or null if the ID is never prompted for.
+     */
+    public static String getPromptText(String logicalId, boolean axis)
+    {
+        return (axis ? AXIS_PROMPTS : BUTTON_PROMPTS).get(logicalId);
+    }
+
+    /**
+     * Sets the listener that receives the changes in the calibration.
+     *
+     * @param listener - The listener, or null to remove it.
+     */
+    public void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Obtains the listener that receives the changes in the calibration.
+     *
+     * @return The listener, or null if there is none.
+     */
+    public Listener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * Sets how long an element must be held to answer a prompt.
+     *
+     * @param seconds - The hold time. This is a second by default.
+     */
+    public void setHoldTime(float seconds)
+    {
+        this.holdTime = Math.max(0, seconds);
+    }
+
+    /**
+     * Obtains how long an element must be held to answer a prompt.
+     *
+     * @return The hold time, in seconds.
+     */
+    public float getHoldTime()
+    {
+        return this.holdTime;
+    }
+
+    /**
+     * Obtains the name of the controller being calibrated.
+     *
+     * @return The controller name.
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * Obtains the stage the calibration is at.
+     *
+     * @return The current stage.
+     */
+    public Stage getStage()
+    {
+        return this.stage;
+    }
+
+    /**
+     * Checks whether an element is currently being held for a prompt.
+     *
+     * @return True if the hold timer is running.
+     */
+    public boolean isHolding()
+    {
+        return this.timeHeld >= 0;
+    }
+
+    /**
+     * Obtains how much longer the held element must be held.
+     *
+     * @return The remaining time in seconds, or 0 if nothing is held.
+     */
+    public float getHoldTimeLeft()
+    {
+        return this.timeHeld < 0 ? 0 : Math.max(0, this.holdTime -
+                this.timeHeld);
+    }
+
+    /**
+     * Processes a change in an axis.
+     *
+     * @param axisId - The ID of the axis.
+     * @param rawValue - The value reported by the device.
+     */
+    public void onAxis(int axisId, float rawValue)
+    {
+        AxisStatistics rest;
+        if (axisId < 0 || axisId >= this.axisNames.length)
+        {
+            return;
+        }
+        rest = this.axisRest[axisId];
+        if (this.stage == Stage.WAITING)
+        {
+            rest.add(rawValue);
+            return;
+        }
+        if (!this.isPrompting())
+        {
+            return;
+        }
+        if (rawValue != 0 && Math.abs(rawValue) > AXIS_THRESHOLD &&
+                (rest.getCount() == 0 || Math.abs(
+                        this.axisCenters[axisId] - rawValue) > REST_TOLERANCE))
+        {
+            if (this.focusedElement != axisId ||
+                    (this.focusValue > 0) != (rawValue > 0))
+            {
+                this.focusedElement = axisId;
+                this.timeHeld = 0;
+                this.focusValue = rawValue;
+                this.held.reset();
+                this.held.add(rawValue);
+                if (this.listener != null)
+                {
+                    this.listener.elementFocused(this,
+                            this.axisNames[axisId], true, rawValue);
+                }
+            }
+            else
+            {
+                this.held.add(rawValue);
+            }
+        }
+        else if (this.focusedElement == axisId)
+        {
+            this.loseFocus();
+        }
+    }
+
+    /**
+     * Processes a change in a button. Releasing a button while waiting
+     * starts the calibration.
+     *
+     * @param buttonId - The ID of the button.
+     * @param pressed - Whether the button is pressed.
+     */
+    public void onButton(int buttonId, boolean pressed)
+    {
+        float defaultValue;
+        if (buttonId < 0 || buttonId >= this.buttonNames.length)
+        {
+            return;
+        }
+        if (this.stage == Stage.WAITING)
+        {
+            this.buttonDefaults[buttonId] = pressed ? 1F : 0F;
+            if (!pressed)
+            {
+                this.start();
+            }
+            return;
+        }
+        if (!this.isPrompting())
+        {
+            return;
+        }
+        defaultValue = this.buttonDefaults[buttonId];
+        if (pressed && (Float.isNaN(defaultValue) ||
+                Math.abs(defaultValue - 1F) > REST_TOLERANCE))
+        {
+            if (this.focusedElement != -1 - buttonId || this.focusValue != 1F)
+            {
+                this.focusedElement = -1 - buttonId;
+                this.timeHeld = 0;
+                this.focusValue = 1;
+                if (this.listener != null)
+                {
+                    this.listener.elementFocused(this,
+                            this.buttonNames[buttonId], false, 1);
+                }
+            }
+        }
+        else if (this.focusedElement == -1 - buttonId)
+        {
+            this.loseFocus();
+        }
+    }
+
+    /**
+     * Advances the hold timer, and answers the current prompt once an
+     * element was held long enough.
+     *
+     * @param tpf - The time that passed, in seconds.
+     */
+    public void update(float tpf)
+    {
+        if (this.timeHeld < 0 || !this.isPrompting())
+        {
+            return;
+        }
+        this.timeHeld += tpf;
+        if (this.timeHeld >= this.holdTime)
+        {
+            this.answer();
+        }
+    }
+
+    /**
+     * Skips the current prompt, leaving its logical ID unmapped.
+     */
+    public void skip()
+    {
+        if (this.isPrompting())
+        {
+            this.clearFocus();
+            this.advance();
+        }
+    }
+
+    private boolean isPrompting()
+    {
+        return this.stage == Stage.BUTTONS || this.stage == Stage.AXES;
+    }
+
+    private void start()
+    {
+        for (int i = 0; i < this.axisCenters.length; i++)
+        {
+            this.axisCenters[i] = this.getCenter(i);
+        }
+        this.stage = Stage.BUTTONS;
+        this.prompts = BUTTON_PROMPTS.keySet().iterator();
+        if (this.listener != null)
+        {
+            this.listener.calibrationStarted(this);
+        }
+        this.nextButton();
+    }
+
+    /**
+     * Maps the held element to the current prompt.
+     */
+    private void answer()
+    {
+        Integer element = this.focusedElement;
+        boolean axis = this.focusedElement >= 0;
+        float[] range;
+        switch (this.currentPrompt)
+        {
+        case L2:
+            this.maps.put(axis ? JoystickAxis.LEFT_TRIGGER :
+                          this.currentPrompt, element);
+            break;
+        case R2:
+            this.maps.put(axis ? JoystickAxis.RIGHT_TRIGGER :
+                          this.currentPrompt, element);
+            break;
+        case JoystickAxis.POV_X:
+            this.maps.put(!axis ? (this.currentBias ? DPAD_RIGHT : DPAD_LEFT) :
+                          this.currentPrompt, element);
+            break;
+        case JoystickAxis.POV_Y:
+            this.maps.put(!axis ? (this.currentBias ? DPAD_UP : DPAD_DOWN) :
+                          this.currentPrompt, element);
+            break;
+        default:
+            this.maps.put(this.currentPrompt, element);
+            break;
+        }
+        this.mapBias.put(this.currentPrompt, this.focusValue > 0);
+        if (axis)
+        {
+            range = this.rangeMaps.get(this.currentPrompt);
+            if (range == null)
+            {
+                range = new float[]{Float.NaN, Float.NaN};
+                this.rangeMaps.put(this.currentPrompt, range);
+            }
+            range[this.currentBias ? 1 : 0] = this.focusValue > 0 ?
+                                              this.held.getPercentile(
+                                                      EXTREME_FRACTION) :
+                                              this.held.getPercentile(
+                                                      1 - EXTREME_FRACTION);
+        }
+        this.clearFocus();
+        this.advance();
+    }
+
+    private void advance()
+    {
+        if (this.stage == Stage.BUTTONS)
+        {
+            this.nextButton();
+        }
+        else
+        {
+            this.nextAxis();
+        }
+    }
+
+    /**
+     * Prompts for the next button on the list. If we have gone through them
+     * all, we start on axes.
+     */
+    private void nextButton()
+    {
+        this.endPrompt(false);
+        if (this.prompts.hasNext())
+        {
+            this.currentPrompt = this.prompts.next();
+            if ((this.currentPrompt.equals(L2) ||
+                    this.currentPrompt.equals(R2)) && this.triggerAxes)
+            {
+                this.nextButton();
+                return;
+            }
+            this.startPrompt(false);
+        }
+        else
+        {
+            this.currentBias = true;
+            this.currentPrompt = null;
+            this.prompts = AXIS_PROMPTS.keySet().iterator();
+            this.stage = Stage.AXES;
+            this.nextAxis();
+        }
+    }
+
+    /**
+     * Prompts for the next direction of the next axis on the list. If we
+     * have gone through them all, the calibration is finished.
+     */
+    private void nextAxis()
+    {
+        this.endPrompt(true);
+        if (!this.currentBias)
+        {
+            this.currentBias = true;
+        }
+        else if (this.prompts.hasNext())
+        {
+            this.currentBias = false;
+            this.currentPrompt = this.prompts.next();
+            if (this.currentPrompt.equals(JoystickAxis.LEFT_TRIGGER) ||
+                    this.currentPrompt.equals(JoystickAxis.RIGHT_TRIGGER))
+            {
+                this.currentBias = true;
+                if (!this.triggerAxes)
+                {
+                    this.nextAxis();
+                    return;
+                }
+            }
+        }
+        else
+        {
+            this.currentPrompt = null;
+        }
+
+        if (this.currentPrompt != null)
+        {
+            this.startPrompt(true);
+        }
+        else
+        {
+            this.stage = Stage.FINISHED;
+            if (this.listener != null)
+            {
+                this.listener.calibrationFinished(this);
+            }
+        }
+    }
+
+    private void startPrompt(boolean axis)
+    {
+        this.promptActive = true;
+        if (this.listener != null)
+        {
+            this.listener.promptStarted(this, this.currentPrompt, axis,
+                    axis ? this.currentBias : true);
+        }
+    }
+
+    private void endPrompt(boolean axis)
+    {
+        if (this.promptActive)
+        {
+            this.promptActive = false;
+            if (this.listener != null)
+            {
+                this.listener.promptEnded(this, this.currentPrompt, axis,
+                        axis ? this.currentBias : true);
+            }
+        }
+    }
+
+    private void loseFocus()
+    {
+        this.clearFocus();
+        if (this.listener != null)
+        {
+            this.listener.focusLost(this);
+        }
+    }
+
+    private void clearFocus()
+    {
+        this.focusedElement = Integer.MIN_VALUE;
+        this.timeHeld = -1;
+        this.focusValue = 0;
+    }
+
+    /**
+     * Obtains the axis mapped to a logical ID.
+     *
+     * @param logicalId - The logical ID.
+     * @return The ID of the axis, or -1 if no axis was mapped to it.
+     */
+    public int getMappedAxis(String logicalId)
+    {
+        Integer element = this.maps.get(logicalId);
+        return element != null && element >= 0 ? element : -1;
+    }
+
+    /**
+     * Obtains the button mapped to a logical ID.
+     *
+     * @param logicalId - The logical ID.
+     * @return The ID of the button, or -1 if no button was mapped to it.
+     */
+    public int getMappedButton(String logicalId)
+    {
+        Integer element = this.maps.get(logicalId);
+        return element != null && element < 0 ? -1 - element : -1;
+    }
+
+    /**
+     * Obtains the statistics collected for an axis while it was resting.
+     *
+     * @param axisId - The ID of the axis.
+     * @return The resting statistics.
+     */
+    public AxisStatistics getRestStatistics(int axisId)
+    {
+        return this.axisRest[axisId];
+    }
+
+    /**
+     * Obtains the resting position of an axis.
+     *
+     * @param axisId - The ID of the axis.
+     * @return The most common resting value, or 0 if the axis never
+     * reported one.
+     * @see AxisStatistics#getMode()
+     */
+    public float getCenter(int axisId)
+    {
+        return this.axisRest[axisId].getCount() == 0 ? 0 :
+               this.axisRest[axisId].getMode();
+    }
+
+    /**
+     * Obtains how much the axis mapped to a logical ID must be scaled by so
+     * that both of its prompted directions reach 1 from its resting position.
+     * If only one direction was prompted for, that direction is used.
+     *
+     * @param logicalId - The logical ID of the axis.
+     * @return The scale, which is negative if the axis is reversed, or NaN if
+     * no axis was mapped to both the ID and its range.
+     */
+    public float getScale(String logicalId)
+    {
+        float[] range = this.rangeMaps.get(logicalId);
+        int axisId = this.getMappedAxis(logicalId);
+        float center, negative = Float.NaN, positive = Float.NaN;
+        if (range == null || axisId < 0)
+        {
+            return Float.NaN;
+        }
+        center = this.getCenter(axisId);
+        if (!Float.isNaN(range[0]) && range[0] != center)
+        {
+            negative = 1F / (center - range[0]);
+        }
+        if (!Float.isNaN(range[1]) && range[1] != center)
+        {
+            positive = 1F / (range[1] - center);
+        }
+        if (Float.isNaN(negative))
+        {
+            return positive;
+        }
+        if (Float.isNaN(positive))
+        {
+            return negative;
+        }
+        /*
+         * The shorter direction decides, so that both can be pushed all the
+         * way.
+         */
+        return Math.abs(negative) > Math.abs(positive) ?
+               Math.copySign(negative, positive) : positive;
+    }
+
+    /**
+     * Obtains the dead zone of the axis mapped to a logical ID, which is how
+     * far its resting noise reaches once it is centered and scaled. Resting
+     * values too far from the center to be noise are left out.
+     *
+     * @param logicalId - The logical ID of the axis.
+     * @return The dead zone, or NaN if no axis was mapped to the ID.
+     */
+    public float getDeadZone(String logicalId)
+    {
+        int axisId = this.getMappedAxis(logicalId);
+        float scale = this.getScale(logicalId);
+        if (axisId < 0)
+        {
+            return Float.NaN;
+        }
+        return this.axisRest[axisId]
+                .getSpread(this.getCenter(axisId), DEAD_ZONE_FRACTION,
+                        AXIS_THRESHOLD) *
+                (Float.isNaN(scale) ? 1F : Math.abs(scale));
+    }
+
+    /**
+     * Obtains the dead zone of an axis, using the scale of the logical ID it
+     * was mapped to.
+     *
+     * @param axisId - The ID of the axis.
+     * @return The dead zone, or NaN if the axis wasn't mapped to anything.
+     * @see #getDeadZone(String)
+     */
+    public float getAxisDeadZone(int axisId)
+    {
+        for (Map.Entry<String, Integer> entry : this.maps.entrySet())
+        {
+            if (entry.getValue() == axisId)
+            {
+                return this.getDeadZone(entry.getKey());
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Adds the mappings found so far to a set of calibration properties, in
+     * the format read by
+     * {@link com.jme3.input.JoystickCompatibilityMappings}. Elements that
+     * were mapped to their own name are left out.
+     *
+     * @param props - The properties to add to.
+     * @param clearUnused - Whether elements that weren't mapped to anything
+     * should be mapped to "null", so that they never trigger anything.
+     */
+    public void writeProperties(Properties props, boolean clearUnused)
+    {
+        /*
+         * Enable this in JME 3.4.
+         */
+        boolean perComponentEnabled = true;
+        boolean[] usedAxes = new boolean[this.axisNames.length];
+        boolean[] usedButtons = new boolean[this.buttonNames.length];
+        String elementName;
+        float scale;
+        int element;
+        for (Map.Entry<String, Integer> calibrationEntry : this.maps
+                .entrySet())
+        {
+            element = calibrationEntry.getValue();
+            if (element < 0)
+            {
+                elementName = this.buttonNames[-1 - element];
+                if (!elementName.equals(calibrationEntry.getKey()) ||
+                        clearUnused)
+                {
+                    props.put((perComponentEnabled ? "button." : "") +
+                                    this.name + "." + elementName,
+                            calibrationEntry.getKey());
+                }
+                usedButtons[-1 - element] = true;
+            }
+            else
+            {
+                elementName = this.axisNames[element];
+                if (!elementName.equals(calibrationEntry.getKey()) ||
+                        clearUnused)
+                {
+                    scale = this.getScale(calibrationEntry.getKey());
+                    props.put((perComponentEnabled ? "axis." : "") +
+                                    this.name + "." + elementName,
+                            calibrationEntry.getKey() +
+                                    (perComponentEnabled &&
+                                             !Float.isNaN(scale) ?
+                                     formatRange(scale,
+                                             this.getCenter(element)) : ""));
+                }
+                usedAxes[element] = true;
+            }
+        }
+        if (clearUnused)
+        {
+            for (int i = 0; i < this.axisNames.length; i++)
+            {
+                if (!usedAxes[i] && this.axisNames[i] != null)
+                {
+                    props.put((perComponentEnabled ? "axis." : "") +
+                            this.name + "." + this.axisNames[i], "null");
+                }
+            }
+            for (int i = 0; i < this.buttonNames.length; i++)
+            {
+                if (!usedButtons[i] && this.buttonNames[i] != null)
+                {
+                    props.put((perComponentEnabled ? "button." : "") +
+                            this.name + "." + this.buttonNames[i], "null");
+                }
+            }
+        }
+    }
+
+    /**
+     * Combines the mappings that several engines wrote for the same element,
+     * such as when controllers with the same name are calibrated side by
+     * side. Mappings to "null" give way to any actual mapping, and the ranges
+     * of mappings to the same logical ID are averaged.
+     *
+     * @param mappings - The mappings to combine, as written by
+     * {@link #writeProperties(Properties, boolean)}.
+     * @return The combined mapping, or null if the mappings send the element
+     * to different logical IDs.
+     */
+    static String mergeMappings(Collection<String> mappings)
+    {
+        String logicalId = null, merged = "null", id;
+        float min = 0, max = 0;
+        float[] range;
+        int ranges = 0, start;
+        for (String mapping : mappings)
+        {
+            if (mapping == null || mapping.equals("null"))
+            {
+                continue;
+            }
+            start = mapping.indexOf('[');
+            id = start < 0 ? mapping : mapping.substring(0, start);
+            if (logicalId == null)
+            {
+                logicalId = id;
+                merged = id;
+            }
+            else if (!logicalId.equals(id))
+            {
+                return null;
+            }
+            range = parseRange(mapping, start);
+            if (range != null)
+            {
+                min += range[0];
+                max += range[1];
+                ranges++;
+            }
+        }
+        if (ranges > 0)
+        {
+            merged += "[" + min / ranges + "," + max / ranges + "]";
+        }
+        return merged;
+    }
+
+    /**
+     * Reads the range at the end of a mapping.
+     *
+     * @param mapping - The mapping to read.
+     * @param start - Where the opening bracket of the range is, or -1 if
+     * there is none.
+     * @return The minimum and maximum of the range, or null if the mapping
+     * has no valid range.
+     */
+    private static float[] parseRange(String mapping, int start)
+    {
+        int comma, end;
+        if (start < 0)
+        {
+            return null;
+        }
+        comma = mapping.indexOf(',', start);
+        end = mapping.indexOf(']', start);
+        if (comma < 0 || end < comma)
+        {
+            return null;
+        }
+        try
+        {
+            return new float[]{
+                    Float.parseFloat(mapping.substring(start + 1, comma)),
+                    Float.parseFloat(mapping.substring(comma + 1, end))
+            };
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Formats a range for {@link com.jme3.input.JoystickCompatibilityMappings},
+     * which turns a value v into (v + min + max) * (max - min) / 2.
+     *
+     * @param scale - The scale of the axis.
+     * @param center - The resting position of the axis.
+     * @return The range, in brackets.
+     */
+    private static String formatRange(float scale, float center)
+    {
+        float min = -scale - center / 2F;
+        float max = scale - center / 2F;
+        return "[" + min + "," + max + "]";
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Saves calibration files in the background, so that slow storage never
+ * holds up a frame.
+ * <p>The new calibration is merged into whatever the file already holds and
+ * written to a temporary file next to it. If the existing file can't be
+ * read, the save fails rather than replacing it. The temporary file is
+ * synced to the disk, then moved over the original in a single step, so the
+ * file is never left half written. Where the platform can't move files
+ * atomically, such as Android before API 26, the temporary file is renamed
+ * instead.</p>
+ * <p>All saves happen one at a time on a single background thread, in the
+ * order they were asked for.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public final class CalibrationWriter
+{
+    private static final org.slf4j.Logger logger =
+            org.slf4j.LoggerFactory.getLogger(CalibrationWriter.class);
+
+    private static final String COMMENT = "Joystick Calibration File";
+
+    private static ExecutorService executor;
+
+    /**
+     * Receives the result of a save on the render thread.
+     */
+    public interface Callback
+    {
+        /**
+         * Called once the file was saved.
+         *
+         * @param file - The calibration file.
+         * @param props - Everything that was written to the file.
+         */
+        void saved(File file, Properties props);
+
+        /**
+         * Called if the file could not be saved. The original file is left
+         * as it was.
+         *
+         * @param file - The calibration file.
+         * @param error - What went wrong.
+         */
+        void failed(File file, IOException error);
+    }
+
+    private CalibrationWriter()
+    {
+    }
+
+    /**
+     * Saves a calibration in the background.
+     *
+     * @param app - The application to report the result to. The callback is
+     * run through {@link Application#enqueue(Runnable)}.
+     * @param file - The calibration file.
+     * @param calibration - The entries to add to the file. This should not
+     * be changed after being passed in.
+     * @param callback - Receives the result, or null if it isn't needed.
+     * @return A future that completes once the file was saved, or failed to.
+     */
+    public static Future<?> save(final Application app, final File file,
+                                 final Properties calibration,
+                                 final Callback callback)
+    {
+        return getExecutor().submit(() -> {
+            final Properties props;
+            try
+            {
+                props = write(file, calibration);
+            }
+            catch (IOException ioe)
+            {
+                logger.error("Could not save calibration file " + file, ioe);
+                if (callback != null)
+                {
+                    app.enqueue(() -> callback.failed(file, ioe));
+                }
+                return;
+            }
+            if (callback != null)
+            {
+                app.enqueue(() -> callback.saved(file, props));
+            }
+        });
+    }
+
+    /**
+     * Saves a calibration on the current thread.
+     *
+     * @param file - The calibration file.
+     * @param calibration - The entries to add to the file.
+     * @return Everything that was written to the file.
+     * @throws IOException If the existing file could not be read, or the
+     * file could not be written. Either way, the existing file is left as it
+     * was.
+     */
+    public static Properties write(File file, Properties calibration)
+            throws IOException
+    {
+        File target = file.getAbsoluteFile();
+        File temp;
+        Properties props = new Properties();
+        boolean moved = false;
+        if (target.exists())
+        {
+            /*
+             * Saving only the new entries would lose everything else in the
+             * file, so the save stops here instead.
+             */
+            try (FileInputStream input = new FileInputStream(target))
+            {
+                props.load(input);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException(
+                        "Could not read calibration file " + target, e);
+            }
+        }
+        props.putAll(calibration);
+
+        temp = File.createTempFile(target.getName(), ".tmp",
+                target.getParentFile());
+        try
+        {
+            try (FileOutputStream output = new FileOutputStream(temp))
+            {
+                props.store(output, COMMENT);
+                output.flush();
+                output.getFD().sync();
+            }
+            move(temp, target);
+            moved = true;
+        }
+        finally
+        {
+            if (!moved && !temp.delete())
+            {
+                logger.warn("Could not delete " + temp);
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Moves the temporary file over the calibration file.
+     *
+     * @param temp - The synced temporary file.
+     * @param target - The calibration file.
+     * @throws IOException If the file could not be moved.
+     */
+    private static void move(File temp, File target) throws IOException
+    {
+        try
+        {
+            if (AtomicMove.move(temp, target))
+            {
+                return;
+            }
+        }
+        catch (LinkageError e)
+        {
+            /*
+             * java.nio.file isn't there before Android API 26.
+             */
+            logger.debug("Atomic move unavailable, renaming instead", e);
+        }
+        if (!temp.renameTo(target))
+        {
+            /*
+             * Some platforms won't rename over an existing file.
+             */
+            if (!target.delete() || !temp.renameTo(target))
+            {
+                throw new IOException(
+                        "Could not replace " + target + " with " + temp);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Calibration Writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Keeps the java.nio.file classes out of the outer class, so that it
+     * still loads on platforms that don't have them.
+     */
+    private static final class AtomicMove
+    {
+        /**
+         * Moves a file in a single step.
+         *
+         * @param temp - The file to move.
+         * @param target - Where to move it to.
+         * @return False if the file system can't move it in a single step.
+         * @throws IOException If the file could not be moved.
+         */
+        static boolean move(File temp, File target) throws IOException
+        {
+            try
+            {
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.font.BitmapText;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Quad;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines up the contents of a container in a centered column, the same way as
+ * {@link GUIUtils#alignContainer(Node, int, int)}, but remembers the layout
+ * between calls so that only what changed is laid out again.
+ * <p>The size of each {@link BitmapText} and button is measured once and
+ * kept until its text, font size or mesh changes. When a child is added,
+ * removed, replaced or changes size, the children from that point down are
+ * moved, and the ones above it are left alone. If nothing changed, a call to
+ * {@link #layout()} doesn't move anything.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class ColumnLayout
+{
+    private static final int KIND_OTHER = 0;
+    private static final int KIND_TEXT = 1;
+    private static final int KIND_BUTTON = 2;
+
+    private final Node container;
+
+    /*
+     * What the column looked like the last time it was laid out.
+     */
+    private Spatial[] children = new Spatial[0];
+    private int[] kinds = new int[0];
+    /**
+     * What each size was measured from: the text of a label, or the mesh of
+     * a button.
+     */
+    private Object[] measuredFrom = new Object[0];
+    private float[] measuredFontSizes = new float[0];
+    private float[] widths = new float[0];
+    private float[] heights = new float[0];
+    /**
+     * How far down each child starts.
+     */
+    private float[] offsets = new float[0];
+    private int count;
+    private float totalHeight;
+    private boolean invalid = true;
+
+    /**
+     * Creates a layout for a container.
+     *
+     * @param container - The container whose children are lined up.
+     */
+    public ColumnLayout(Node container)
+    {
+        this.container = container;
+    }
+
+    /**
+     * Obtains the container that this layout lines up.
+     *
+     * @return The container.
+     */
+    public Node getContainer()
+    {
+        return this.container;
+    }
+
+    /**
+     * Forces the whole column to be measured and laid out again on the next
+     * call to {@link #layout()}. Changes to text, font sizes and the children
+     * are noticed on their own, so this is only needed for other changes,
+     * such as a label being moved by something else.
+     */
+    public void invalidate()
+    {
+        this.invalid = true;
+    }
+
+    /**
+     * Lines up anything in the column that changed since the last layout.
+     *
+     * @return The total height of the container. This is useful in
+     * positioning the container itself.
+     */
+    public float layout()
+    {
+        List<Spatial> current = this.container.getChildren();
+        int size = current.size();
+        int first = this.invalid ? 0 : Math.min(this.count, size);
+        Spatial child;
+        float y;
+
+        if (size > this.children.length)
+        {
+            this.grow(size);
+        }
+        /*
+         * Finds the first child that is new or changed size.
+         */
+        for (int i = 0; i < size; i++)
+        {
+            child = current.get(i);
+            if (this.invalid || i >= this.count || this.children[i] != child)
+            {
+                this.children[i] = child;
+                this.kinds[i] = getKind(child);
+                this.measuredFrom[i] = null;
+            }
+            if (this.measure(i) && i < first)
+            {
+                first = i;
+            }
+        }
+        if (size < this.count)
+        {
+            Arrays.fill(this.children, size, this.count, null);
+            Arrays.fill(this.measuredFrom, size, this.count, null);
+        }
+        if (size == this.count && first == size && !this.invalid)
+        {
+            return this.totalHeight;
+        }
+
+        y = first > 0 ? this.offsets[first - 1] + this.getAdvance(first - 1) :
+            0;
+        for (int i = first; i < size; i++)
+        {
+            this.offsets[i] = y;
+            switch (this.kinds[i])
+            {
+            case KIND_TEXT:
+                this.children[i]
+                        .setLocalTranslation(-this.widths[i] / 2F, -y, 0);
+                break;
+            case KIND_BUTTON:
+                this.children[i]
+                        .setLocalTranslation(-this.widths[i] / 2F, -y - 10, 0);
+                break;
+            default:
+                break;
+            }
+            y += this.getAdvance(i);
+        }
+        this.count = size;
+        this.totalHeight = y;
+        this.invalid = false;
+        return y;
+    }
+
+    /**
+     * Obtains how much room a child takes up in the column.
+     *
+     * @param index - The index of the child.
+     * @return The height of the child, plus any spacing after it.
+     */
+    private float getAdvance(int index)
+    {
+        switch (this.kinds[index])
+        {
+        case KIND_TEXT:
+            return this.heights[index];
+        case KIND_BUTTON:
+            return this.heights[index] + 10;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Measures a child again if it changed since it was last measured.
+     *
+     * @param index - The index of the child.
+     * @return True if the child was measured.
+     */
+    private boolean measure(int index)
+    {
+        Spatial child = this.children[index];
+        BitmapText text;
+        Mesh mesh;
+        switch (this.kinds[index])
+        {
+        case KIND_TEXT:
+            text = (BitmapText) child;
+            if (this.measuredFrom[index] == text.getText() &&
+                    this.measuredFontSizes[index] == text.getSize())
+            {
+                return false;
+            }
+            this.measuredFrom[index] = text.getText();
+            this.measuredFontSizes[index] = text.getSize();
+            this.widths[index] = text.getLineWidth();
+            this.heights[index] = text.getHeight();
+            return true;
+        case KIND_BUTTON:
+            mesh = ((Geometry) ((Node) child).getChild(0)).getMesh();
+            if (this.measuredFrom[index] == mesh)
+            {
+                return false;
+            }
+            this.measuredFrom[index] = mesh;
+            this.widths[index] = ((Quad) mesh).getWidth();
+            this.heights[index] = ((Quad) mesh).getHeight();
+            return true;
+        default:
+            if (this.measuredFrom[index] == child)
+            {
+                return false;
+            }
+            this.measuredFrom[index] = child;
+            return true;
+        }
+    }
+
+    private static int getKind(Spatial child)
+    {
+        if (child instanceof BitmapText)
+        {
+            return KIND_TEXT;
+        }
+        if (child.getUserData(GUIUtils.BUTTON_ID) != null)
+        {
+            return KIND_BUTTON;
+        }
+        return KIND_OTHER;
+    }
+
+    private void grow(int size)
+    {
+        this.children = Arrays.copyOf(this.children, size);
+        this.kinds = Arrays.copyOf(this.kinds, size);
+        this.measuredFrom = Arrays.copyOf(this.measuredFrom, size);
+        this.measuredFontSizes = Arrays.copyOf(this.measuredFontSizes, size);
+        this.widths = Arrays.copyOf(this.widths, size);
+        this.heights = Arrays.copyOf(this.heights, size);
+        this.offsets = Arrays.copyOf(this.offsets, size);
+    }
+}
@@ -1,16 +1,12 @@
 package markil3.controller;
 
 import com.jme3.asset.AssetManager;
-import com.jme3.collision.CollisionResult;
-import com.jme3.collision.CollisionResults;
 import com.jme3.font.BitmapFont;
 import com.jme3.font.BitmapText;
 import com.jme3.font.Rectangle;
 import com.jme3.material.Material;
 import com.jme3.math.ColorRGBA;
-import com.jme3.math.Ray;
 import com.jme3.math.Vector2f;
-import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
@@ -33,13 +29,69 @@ public class GUIUtils
      * needs.
      */
     static ColorRGBA BUTTON_COLOR_OFF = new ColorRGBA(0F, 0.75F, 0.25F, 1F);
+    /**
+     * The color that a button takes on when the mouse is over it. Feel free
+     * to change it to suit your needs.
+     */
+    static ColorRGBA BUTTON_COLOR_HOVER =
+            new ColorRGBA(0.25F, 0.85F, 0.4F, 1F);
+
+    /**
+     * The pointer ID used for the mouse in
+     * {@link #handleButtonPress(Node, int, float, float, boolean)}.
+     */
+    public static final int MOUSE_POINTER = -1;
+
+    static final String BUTTON_ID = "button";
+
+    /**
+     * The background of a button, which swaps between two materials when
+     * pressed rather than changing the color of its own.
+     */
+    private static class ButtonBackground extends Geometry
+    {
+        private final Material released;
+        private final Material hover;
+        private final Material pressed;
+        private boolean isPressed;
+        private boolean isHovered;
 
-    private static final String BUTTON_ID = "button";
+        ButtonBackground(String name, Quad quad, Material released,
+                         Material hover, Material pressed)
+        {
+            super(name, quad);
+            this.released = released;
+            this.hover = hover;
+            this.pressed = pressed;
+            this.setMaterial(released);
+        }
+
+        void setPressed(boolean pressed)
+        {
+            this.isPressed = pressed;
+            this.resetMaterial();
+        }
+
+        void setHovered(boolean hovered)
+        {
+            this.isHovered = hovered;
+            this.resetMaterial();
+        }
+
+        private void resetMaterial()
+        {
+            this.setMaterial(this.isPressed ? this.pressed :
+                             this.isHovered ? this.hover : this.released);
+        }
+    }
 
     /**
      * Creates a button. This button will have special user data fields that
      * can be detected by {@link #handleButtonPress(Node, Vector2f, boolean)}
      * to trigger events.
+     * <p>If a {@link GuiResources} registry is currently held for the asset
+     * manager, the button shares its materials and mesh. Otherwise, new ones
+     * are created for the button.</p>
      * @param assets - The application asset manager.
      * @param guiFont - The font to use for the button.
      * @param isMobile - Whether or not the mobile size increase should be used.
@@ -50,10 +102,40 @@ public class GUIUtils
      */
     public static Node createButton(AssetManager assets, BitmapFont guiFont,
                                     boolean isMobile, String id, String content)
+    {
+        return createButton(assets, GuiResources.get(assets), guiFont,
+                isMobile, id, content);
+    }
+
+    /**
+     * Creates a button using shared materials and meshes. This button will
+     * have special user data fields that can be detected by
+     * {@link #handleButtonPress(Node, Vector2f, boolean)} to trigger events.
+     * @param resources - The resources to build the button from. The button
+     *                  uses the default font.
+     * @param isMobile - Whether or not the mobile size increase should be used.
+     * @param id - The button ID. This is used to identify which button was
+     *           pressed later on.
+     * @param content - The text that will display in the button.
+     * @return A node containing the button elements.
+     */
+    public static Node createButton(GuiResources resources, boolean isMobile,
+                                    String id, String content)
+    {
+        return createButton(resources.getAssetManager(), resources,
+                resources.getFont(), isMobile, id, content);
+    }
+
+    private static Node createButton(AssetManager assets,
+                                     GuiResources resources,
+                                     BitmapFont guiFont, boolean isMobile,
+                                     String id, String content)
     {
         final float MOBILE_SIZE = 30F;
         BitmapText buttonText;
         Geometry buttonBackground;
+        Material released, hover, pressed;
+        Quad quad;
         Node button = new Node();
         buttonText = guiFont.createLabel(content);
         if (isMobile)
@@ -65,12 +147,30 @@ public class GUIUtils
                 buttonText.getLineHeight()));
         buttonText.setAlignment(BitmapFont.Align.Center);
         buttonText.setVerticalAlignment(BitmapFont.VAlign.Center);
-        buttonBackground = new Geometry("button-" + id,
-                new Quad(buttonText.getLineWidth() + 10,
-                        buttonText.getHeight() + 5));
-        buttonBackground.setMaterial(
-                new Material(assets, "Common/MatDefs/Misc/Unshaded.j3md"));
-        buttonBackground.getMaterial().setColor("Color", BUTTON_COLOR_OFF);
+        if (resources != null)
+        {
+            quad = resources.getQuad(buttonText.getLineWidth() + 10,
+                    buttonText.getHeight() + 5);
+            released = resources.getButtonMaterial(false);
+            hover = resources.getColorMaterial(BUTTON_COLOR_HOVER);
+            pressed = resources.getButtonMaterial(true);
+        }
+        else
+        {
+            quad = new Quad(buttonText.getLineWidth() + 10,
+                    buttonText.getHeight() + 5);
+            released = new Material(assets,
+                    "Common/MatDefs/Misc/Unshaded.j3md");
+            released.setColor("Color", BUTTON_COLOR_OFF);
+            hover = new Material(assets,
+                    "Common/MatDefs/Misc/Unshaded.j3md");
+            hover.setColor("Color", BUTTON_COLOR_HOVER);
+            pressed = new Material(assets,
+                    "Common/MatDefs/Misc/Unshaded.j3md");
+            pressed.setColor("Color", BUTTON_COLOR_ON);
+        }
+        buttonBackground = new ButtonBackground("button-" + id, quad,
+                released, hover, pressed);
         buttonBackground.setUserData(BUTTON_ID, id);
         buttonBackground
                 .setLocalTranslation(-2.5F, -buttonText.getLineHeight() - 2.5F,
@@ -78,6 +178,7 @@ public class GUIUtils
         button.setUserData(BUTTON_ID, id);
         button.attachChild(buttonBackground);
         button.attachChild(buttonText);
+        ButtonHitIndex.getShared().register(buttonBackground);
         return button;
     }
 
@@ -96,81 +197,129 @@ public class GUIUtils
     public static String handleButtonPress(Node gui, Vector2f cursor,
                                            boolean isPressed)
     {
-        final String KEY_CURRENT = "currentButton";
-        CollisionResults results;
-        Ray ray;
-        Geometry button;
+        return handleButtonPress(gui, MOUSE_POINTER, cursor.x, cursor.y,
+                isPressed);
+    }
+
+    /**
+     * Call this method from a touch listener to search the provided node for
+     * any buttons created with
+     * {@link #createButton(AssetManager, BitmapFont, boolean, String, String)} and
+     * returns their ID. Each pointer is tracked separately, so several
+     * fingers can press different buttons at the same time.
+     * @param gui - The GUI to search.
+     * @param pointerId - The ID of the touch pointer, as given by
+     *                  {@link com.jme3.input.event.TouchEvent#getPointerId()},
+     *                  or {@link #MOUSE_POINTER} for the mouse.
+     * @param x - The horizontal position of the pointer.
+     * @param y - The vertical position of the pointer.
+     * @param isPressed - Whether or not the pointer is pressed. This will
+     *                  change how the button is displayed.
+     * @return The ID of the button that was clicked, or null if none were
+     * clicked.
+     */
+    public static String handleButtonPress(Node gui, int pointerId, float x,
+                                           float y, boolean isPressed)
+    {
+        ButtonHitIndex index = ButtonHitIndex.getShared();
+        int slot = pointerId + 1;
+        Geometry button, pressed;
         String buttonId = null;
 
+        if (slot < 0)
+        {
+            return null;
+        }
         /*
          * We generally mark buttons on mouse down, and trigger that same
          * button on release. If we haven't even marked a button by the time
          * we release the mouse, we just won't bother.
          */
-        if (!isPressed)
+        pressed = index.getPressed(slot, gui);
+        if (!isPressed && pressed == null)
         {
-            button = gui.getUserData(KEY_CURRENT);
-            if (button == null)
-            {
-                return null;
-            }
+            return null;
         }
 
-        results = new CollisionResults();
-        ray = new Ray(new Vector3f(cursor.x, cursor.y, 0),
-                new Vector3f(0, 0, 1));
-        gui.collideWith(ray, results);
-        for (CollisionResult result : results)
+        button = index.pick(gui, x, y);
+        if (button != null)
         {
-            button = result.getGeometry();
             buttonId = button.getUserData(BUTTON_ID);
-            if (buttonId != null)
+        }
+        if (isPressed)
+        {
+            if (pressed != null)
             {
-                if (isPressed)
+                /*
+                 * The pointer was never released from the last button.
+                 */
+                index.setPressed(slot, gui, null);
+                if (!index.isPressed(pressed))
                 {
-                    /*
-                     * Trigger the press graphic
-                     */
-                    button.getMaterial().setColor("Color", BUTTON_COLOR_ON);
-                    gui.setUserData(KEY_CURRENT, button);
-                    break;
-                }
-                else
-                {
-                    /*
-                     * If the button we released isn't the same as the button
-                     *  we originally pressed, don't trigger either.
-                     */
-                    button = gui.getUserData(KEY_CURRENT);
-                    if (button != null)
-                    {
-                        if (button.getUserData(BUTTON_ID).equals(buttonId))
-                        {
-                            break;
-                        }
-                        else
-                        {
-                            buttonId = null;
-                        }
-                    }
+                    ((ButtonBackground) pressed).setPressed(false);
                 }
             }
+            if (buttonId != null)
+            {
+                /*
+                 * Trigger the press graphic
+                 */
+                index.setPressed(slot, gui, button);
+                ((ButtonBackground) button).setPressed(true);
+            }
         }
-        if (!isPressed)
+        else
         {
+            /*
+             * If the button we released isn't the same as the button we
+             * originally pressed, don't trigger either.
+             */
+            if (buttonId != null &&
+                    !buttonId.equals(pressed.getUserData(BUTTON_ID)))
+            {
+                buttonId = null;
+            }
             /*
              * Make sure the originally-clicked button was reset.
              */
-            button = gui.getUserData(KEY_CURRENT);
-            if (button != null)
+            index.setPressed(slot, gui, null);
+            if (!index.isPressed(pressed))
             {
-                button.getMaterial().setColor("Color", BUTTON_COLOR_OFF);
-                gui.setUserData(KEY_CURRENT, null);
+                ((ButtonBackground) pressed).setPressed(false);
             }
         }
         return buttonId;
     }
 
+    /**
+     * Call this method from a mouse listener as the mouse moves to highlight
+     * the button under the cursor.
+     * @param gui - The GUI to search.
+     * @param x - The horizontal position of the cursor.
+     * @param y - The vertical position of the cursor.
+     * @return The ID of the button under the cursor, or null if there isn't
+     * one.
+     */
+    public static String handleHover(Node gui, float x, float y)
+    {
+        ButtonHitIndex index = ButtonHitIndex.getShared();
+        Geometry button = index.pick(gui, x, y);
+        Geometry previous = index.getHovered();
+        if (button != previous)
+        {
+            if (previous != null)
+            {
+                ((ButtonBackground) previous).setHovered(false);
+            }
+            if (button != null)
+            {
+                ((ButtonBackground) button).setHovered(true);
+            }
+            index.setHovered(button);
+        }
+        return button == null ? null : button.getUserData(BUTTON_ID);
+    }
+
     /**
      * Aligns the contents in a container so that all {@link BitmapText} and
      * button elements will align in a column.
@@ -179,6 +328,7 @@ public class GUIUtils
      * @param height - The height of the screen.
      * @return The total height of the container. This is useful in
      * positioning the container itself.
+     * @see ColumnLayout
      */
     public static float alignContainer(Node cont, int width, int height)
     {
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState.BlendMode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Quad;
+import com.jme3.texture.Texture;
+
+import java.nio.FloatBuffer;
+
+import jme3tools.optimize.TextureAtlas;
+
+/**
+ * Packs the artwork used to draw a gamepad into a single texture, so that
+ * every static part of a {@link JoystickPreviewScreen.GamepadView} renders
+ * with the same material. This saves texture binds and material changes,
+ * which adds up on mobile devices.
+ * <p>The atlas is built when it is first loaded. By default it uses the
+ * gamepad art from jme3-testdata, but custom art can be used by creating an
+ * atlas with different image paths and passing it to
+ * {@link JoystickPreviewScreen#setGamepadAtlas(GamepadAtlas)}. Custom images
+ * should use the same layout as the default ones.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class GamepadAtlas
+{
+    public static final String DEFAULT_FRAME =
+            "Interface/Joystick/gamepad-frame.png";
+    public static final String DEFAULT_BUTTONS =
+            "Interface/Joystick/gamepad-buttons.png";
+    public static final String DEFAULT_STICK =
+            "Interface/Joystick/gamepad-stick.png";
+
+    /**
+     * The largest atlas that will be tried before giving up.
+     */
+    private static final int MAX_SIZE = 4096;
+
+    /**
+     * The parts of a gamepad drawn from the atlas.
+     */
+    public enum Part
+    {
+        /**
+         * The outline of the gamepad.
+         */
+        FRAME,
+        /**
+         * The buttons, drawn beneath the frame and the highlights.
+         */
+        BUTTONS,
+        /**
+         * An analog stick.
+         */
+        STICK
+    }
+
+    private final TextureAtlas.TextureAtlasTile[] tiles =
+            new TextureAtlas.TextureAtlasTile[Part.values().length];
+    private final Material material;
+
+    /**
+     * Builds an atlas of the default gamepad art. Screens share a single one
+     * through {@link GuiResources#getGamepadAtlas()}, which should be used
+     * instead where possible.
+     *
+     * @param assetManager - The asset manager to load the art from.
+     * @return The new atlas.
+     */
+    public static GamepadAtlas createDefault(AssetManager assetManager)
+    {
+        return new GamepadAtlas(assetManager, DEFAULT_FRAME, DEFAULT_BUTTONS,
+                DEFAULT_STICK);
+    }
+
+    /**
+     * Builds an atlas from a set of gamepad art.
+     *
+     * @param assetManager - The asset manager to load the art from.
+     * @param frame - The path of the frame image.
+     * @param buttons - The path of the buttons image.
+     * @param stick - The path of the analog stick image.
+     */
+    public GamepadAtlas(AssetManager assetManager, String frame,
+                        String buttons, String stick)
+    {
+        Texture[] textures = new Texture[Part.values().length];
+        TextureAtlas atlas = null;
+        int area = 0;
+        int size = 1;
+        textures[Part.FRAME.ordinal()] = assetManager.loadTexture(frame);
+        textures[Part.BUTTONS.ordinal()] = assetManager.loadTexture(buttons);
+        textures[Part.STICK.ordinal()] = assetManager.loadTexture(stick);
+
+        /*
+         * Starts with an atlas just big enough to hold the art, and doubles
+         * it until everything fits.
+         */
+        for (Texture texture : textures)
+        {
+            area += texture.getImage().getWidth() *
+                    texture.getImage().getHeight();
+            size = Math.max(size, texture.getImage().getWidth());
+            size = Math.max(size, texture.getImage().getHeight());
+        }
+        size = Math.max(1, Integer.highestOneBit(size - 1) << 1);
+        while (size * size < area)
+        {
+            size <<= 1;
+        }
+        for (; size <= MAX_SIZE && atlas == null; size <<= 1)
+        {
+            atlas = new TextureAtlas(size, size);
+            for (Texture texture : textures)
+            {
+                if (!atlas.addTexture(texture, "ColorMap"))
+                {
+                    atlas = null;
+                    break;
+                }
+            }
+        }
+        if (atlas == null)
+        {
+            throw new IllegalArgumentException(
+                    "The gamepad art does not fit in a " + MAX_SIZE + "x" +
+                            MAX_SIZE + " texture");
+        }
+        for (Part part : Part.values())
+        {
+            this.tiles[part.ordinal()] =
+                    atlas.getAtlasTile(textures[part.ordinal()]);
+        }
+
+        this.material = new Material(assetManager,
+                "Common/MatDefs/Misc/Unshaded.j3md");
+        this.material.setTexture("ColorMap", atlas.getAtlasTexture("ColorMap"));
+        this.material.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
+    }
+
+    /**
+     * Obtains the material shared by every part drawn from this atlas.
+     *
+     * @return The atlas material.
+     */
+    public Material getMaterial()
+    {
+        return this.material;
+    }
+
+    /**
+     * Creates a quad that displays a part of the gamepad.
+     *
+     * @param name - The name of the geometry.
+     * @param part - The part to display.
+     * @param width - The width of the quad.
+     * @param height - The height of the quad.
+     * @return The new geometry, using the atlas material.
+     */
+    public Geometry createPart(String name, Part part, float width,
+                               float height)
+    {
+        Mesh mesh = new Quad(width, height);
+        FloatBuffer coords = (FloatBuffer) mesh
+                .getBuffer(VertexBuffer.Type.TexCoord).getData();
+        Geometry geometry = new Geometry(name, mesh);
+        this.tiles[part.ordinal()].transformTextureCoords(coords, 0, coords);
+        mesh.getBuffer(VertexBuffer.Type.TexCoord).setUpdateNeeded();
+        geometry.setMaterial(this.material);
+        return geometry;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.font.BitmapFont;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.shape.Quad;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares the fonts, materials and meshes used by the screens in this library,
+ * so that a screen being created does not have to load or build them again.
+ * <p>A registry is kept for each asset manager, and is shared by everything
+ * that {@link #acquire(AssetManager) acquires} it. Once everything that
+ * acquired it has {@link #release() released} it, its caches are dropped.
+ * When switching from one screen to another, the new screen should be
+ * attached before the old one is detached, so that the registry stays alive
+ * in between.</p>
+ * <p>Apart from acquiring and releasing, a registry should only be used from
+ * the render thread. The materials and meshes it hands out are shared, and
+ * should not be modified.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class GuiResources
+{
+    public static final String DEFAULT_FONT = "Interface/Fonts/Default.fnt";
+
+    private static final Map<AssetManager, GuiResources> registries =
+            new WeakHashMap<>();
+
+    private final AssetManager assetManager;
+    private int references;
+
+    private final Map<String, BitmapFont> fonts = new HashMap<>();
+    private final Map<ColorRGBA, Material> colorMaterials = new HashMap<>();
+    private final Map<Long, Quad> quads = new HashMap<>();
+    private Material highlightMaterial;
+    private GamepadAtlas gamepadAtlas;
+
+    private GuiResources(AssetManager assetManager)
+    {
+        this.assetManager = assetManager;
+    }
+
+    /**
+     * Obtains the registry for an asset manager, creating it if needed. Each
+     * call should be matched with a call to {@link #release()}.
+     *
+     * @param assetManager - The asset manager to load resources with.
+     * @return The shared registry.
+     */
+    public static GuiResources acquire(AssetManager assetManager)
+    {
+        GuiResources resources;
+        synchronized (registries)
+        {
+            resources = registries.get(assetManager);
+            if (resources == null)
+            {
+                resources = new GuiResources(assetManager);
+                registries.put(assetManager, resources);
+            }
+            resources.references++;
+        }
+        return resources;
+    }
+
+    /**
+     * Obtains the registry for an asset manager if something is currently
+     * holding on to it. This does not count as acquiring it.
+     *
+     * @param assetManager - The asset manager the registry belongs to.
+     * @return The registry, or null if there is none.
+     */
+    static GuiResources get(AssetManager assetManager)
+    {
+        synchronized (registries)
+        {
+            return registries.get(assetManager);
+        }
+    }
+
+    /**
+     * Gives up a reference obtained from {@link #acquire(AssetManager)}. When
+     * the last reference is given up, the cached resources are dropped.
+     */
+    public void release()
+    {
+        synchronized (registries)
+        {
+            if (this.references <= 0)
+            {
+                throw new IllegalStateException(
+                        "GUI resources released more often than acquired");
+            }
+            if (--this.references == 0)
+            {
+                registries.remove(this.assetManager);
+                this.fonts.clear();
+                this.colorMaterials.clear();
+                this.quads.clear();
+                this.highlightMaterial = null;
+                this.gamepadAtlas = null;
+            }
+        }
+    }
+
+    /**
+     * Obtains the asset manager that this registry loads resources with.
+     *
+     * @return The asset manager.
+     */
+    public AssetManager getAssetManager()
+    {
+        return this.assetManager;
+    }
+
+    /**
+     * Obtains the default GUI font.
+     *
+     * @return The font.
+     */
+    public BitmapFont getFont()
+    {
+        return this.getFont(DEFAULT_FONT);
+    }
+
+    /**
+     * Obtains a font.
+     *
+     * @param path - The asset path of the font.
+     * @return The font.
+     */
+    public BitmapFont getFont(String path)
+    {
+        BitmapFont font = this.fonts.get(path);
+        if (font == null)
+        {
+            font = this.assetManager.loadFont(path);
+            this.fonts.put(path, font);
+        }
+        return font;
+    }
+
+    /**
+     * Obtains a plain unshaded material of a single color.
+     *
+     * @param color - The color of the material.
+     * @return The shared material.
+     */
+    public Material getColorMaterial(ColorRGBA color)
+    {
+        Material material = this.colorMaterials.get(color);
+        if (material == null)
+        {
+            material = new Material(this.assetManager,
+                    "Common/MatDefs/Misc/Unshaded.j3md");
+            material.setColor("Color", color.clone());
+            this.colorMaterials.put(color.clone(), material);
+        }
+        return material;
+    }
+
+    /**
+     * Obtains the material for the background of a button.
+     *
+     * @param pressed - Whether the button is being pressed.
+     * @return The shared material, using {@link GUIUtils#BUTTON_COLOR_ON} or
+     * {@link GUIUtils#BUTTON_COLOR_OFF}.
+     */
+    public Material getButtonMaterial(boolean pressed)
+    {
+        return this.getColorMaterial(pressed ? GUIUtils.BUTTON_COLOR_ON :
+                                     GUIUtils.BUTTON_COLOR_OFF);
+    }
+
+    /**
+     * Obtains a quad mesh.
+     *
+     * @param width - The width of the quad.
+     * @param height - The height of the quad.
+     * @return The shared mesh.
+     */
+    public Quad getQuad(float width, float height)
+    {
+        Long key = ((long) Float.floatToIntBits(width) << 32) |
+                (Float.floatToIntBits(height) & 0xFFFFFFFFL);
+        Quad quad = this.quads.get(key);
+        if (quad == null)
+        {
+            quad = new Quad(width, height);
+            this.quads.put(key, quad);
+        }
+        return quad;
+    }
+
+    /**
+     * Obtains the material used to draw the button highlights of a gamepad.
+     *
+     * @return The shared material.
+     */
+    Material getHighlightMaterial()
+    {
+        if (this.highlightMaterial == null)
+        {
+            this.highlightMaterial = JoystickPreviewScreen.HighlightBatch
+                    .createMaterial(this.assetManager);
+        }
+        return this.highlightMaterial;
+    }
+
+    /**
+     * Obtains the atlas of the default gamepad art. It is built the first
+     * time it is needed, and dropped along with the other resources.
+     *
+     * @return The shared atlas.
+     */
+    public GamepadAtlas getGamepadAtlas()
+    {
+        if (this.gamepadAtlas == null)
+        {
+            this.gamepadAtlas = GamepadAtlas.createDefault(this.assetManager);
+        }
+        return this.gamepadAtlas;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.input.RawInputListener;
+import com.jme3.input.event.JoyAxisEvent;
+import com.jme3.input.event.JoyButtonEvent;
+import com.jme3.input.event.KeyInputEvent;
+import com.jme3.input.event.MouseButtonEvent;
+import com.jme3.input.event.MouseMotionEvent;
+import com.jme3.input.event.TouchEvent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records every raw joystick event to a compact binary file while attached,
+ * so that a session can be played back later with {@link InputReplayer}. This
+ * is useful for reproducing controller problems on another machine.
+ * <p>A frame's events are all delivered at once, so events are stamped with
+ * the time the input backend gave them where it did. The backend's clock is
+ * lined up with {@link System#nanoTime()} at the first such event, and events
+ * without a time are stamped as they arrive instead. They are written with
+ * the format described in {@link InputRecording}. The file is
+ * completed when the recorder is disabled or detached.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class InputRecorder extends BaseAppState implements RawInputListener
+{
+    private static final org.slf4j.Logger logger =
+            org.slf4j.LoggerFactory.getLogger(InputRecorder.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private OutputStream output;
+    private InputRecording.Writer writer;
+    private long recorded;
+    private boolean clockSet;
+    private long clockOffset;
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param file - The file to record to. Any existing file will be
+     * replaced.
+     */
+    public InputRecorder(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Obtains the number of events recorded so far.
+     *
+     * @return The number of events.
+     */
+    public long getRecordedCount()
+    {
+        return this.recorded;
+    }
+
+    @Override
+    protected void initialize(Application app)
+    {
+    }
+
+    @Override
+    protected void cleanup(Application app)
+    {
+    }
+
+    @Override
+    protected void onEnable()
+    {
+        this.clockSet = false;
+        this.lastTime = Long.MIN_VALUE;
+        try
+        {
+            this.output = new FileOutputStream(this.file);
+            this.writer = new InputRecording.Writer(this.output, BUFFER_SIZE);
+            this.getApplication().getInputManager().addRawInputListener(this);
+        }
+        catch (IOException ioe)
+        {
+            logger.error("Could not start recording to " + this.file, ioe);
+            this.close();
+        }
+    }
+
+    @Override
+    protected void onDisable()
+    {
+        this.getApplication().getInputManager().removeRawInputListener(this);
+        this.close();
+    }
+
+    /**
+     * Finishes the file and stops recording.
+     */
+    private void close()
+    {
+        try
+        {
+            if (this.writer != null)
+            {
+                this.writer.flush();
+            }
+            if (this.output != null)
+            {
+                this.output.close();
+            }
+        }
+        catch (IOException ioe)
+        {
+            logger.error("Could not finish recording to " + this.file, ioe);
+        }
+        this.writer = null;
+        this.output = null;
+    }
+
+    @Override
+    public void onJoyAxisEvent(JoyAxisEvent evt)
+    {
+        long time = this.stamp(evt.getTime(), System.nanoTime());
+        if (this.writer != null)
+        {
+            try
+            {
+                this.writer.describe(evt.getAxis().getJoystick(), time);
+                this.writer.axis(evt.getJoyIndex(), evt.getAxisIndex(),
+                        evt.getValue(), evt.getRawValue(), time);
+                this.recorded++;
+            }
+            catch (IOException ioe)
+            {
+                logger.error("Could not record to " + this.file, ioe);
+                this.close();
+            }
+        }
+    }
+
+    @Override
+    public void onJoyButtonEvent(JoyButtonEvent evt)
+    {
+        long time = this.stamp(evt.getTime(), System.nanoTime());
+        if (this.writer != null)
+        {
+            try
+            {
+                this.writer.describe(evt.getButton().getJoystick(), time);
+                this.writer.button(evt.getJoyIndex(), evt.getButtonIndex(),
+                        evt.isPressed(), time);
+                this.recorded++;
+            }
+            catch (IOException ioe)
+            {
+                logger.error("Could not record to " + this.file, ioe);
+                this.close();
+            }
+        }
+    }
+
+    /**
+     * Works out when an event happened.
+     *
+     * @param eventTime - The time the input backend gave the event, or 0 if
+     * it gave none.
+     * @param now - The time the event arrived.
+     * @return The time to record, which is never before that of the last
+     * event.
+     */
+    long stamp(long eventTime, long now)
+    {
+        long time;
+        if (eventTime == 0)
+        {
+            time = now;
+        }
+        else
+        {
+            if (!this.clockSet)
+            {
+                this.clockOffset = now - eventTime;
+                this.clockSet = true;
+            }
+            time = eventTime + this.clockOffset;
+        }
+        time = Math.max(time, this.lastTime);
+        this.lastTime = time;
+        return time;
+    }
+
+    @Override
+    public void beginInput()
+    {
+    }
+
+    @Override
+    public void endInput()
+    {
+    }
+
+    @Override
+    public void onMouseMotionEvent(MouseMotionEvent evt)
+    {
+    }
+
+    @Override
+    public void onMouseButtonEvent(MouseButtonEvent evt)
+    {
+    }
+
+    @Override
+    public void onKeyEvent(KeyInputEvent evt)
+    {
+    }
+
+    @Override
+    public void onTouchEvent(TouchEvent evt)
+    {
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.InputManager;
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The binary format used by {@link InputRecorder} and {@link InputReplayer}.
+ * <p>A recording starts with the magic number "JMCR" and a version byte,
+ * followed by a stream of records. Each record starts with a tag byte and a
+ * varint holding the nanoseconds since the previous record. Joystick records
+ * describe a joystick (its index, name, and the names of its axes and
+ * buttons) and are written the first time a joystick sends an event. Axis
+ * records hold varints for the joystick index and axis ID followed by the
+ * value as a float, plus the raw value if it differs. Button records hold
+ * the joystick index and button ID, with the state stored in the tag.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+final class InputRecording
+{
+    static final byte[] MAGIC = {'J', 'M', 'C', 'R'};
+    static final int VERSION = 1;
+
+    static final int TAG_JOYSTICK = 0;
+    static final int TAG_AXIS = 1;
+    static final int TAG_BUTTON_DOWN = 2;
+    static final int TAG_BUTTON_UP = 3;
+    /**
+     * Set on axis records that carry a separate raw value.
+     */
+    static final int FLAG_RAW = 0x10;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private InputRecording()
+    {
+    }
+
+    /**
+     * Encodes records into a reusable byte array, and passes them on to a
+     * stream when it fills up.
+     */
+    static class Writer
+    {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int position;
+        private long lastTime = -1;
+        private Joystick[] known = new Joystick[0];
+
+        Writer(OutputStream out, int bufferSize) throws IOException
+        {
+            this.out = out;
+            this.buffer = new byte[Math.max(bufferSize, 1024)];
+            out.write(MAGIC);
+            out.write(VERSION);
+        }
+
+        /**
+         * Writes a joystick record if this joystick was not seen at this index
+         * before.
+         *
+         * @param joy - The joystick about to send an event.
+         * @param time - The time of the event.
+         */
+        void describe(Joystick joy, long time) throws IOException
+        {
+            int joyId = joy.getJoyId();
+            List<JoystickAxis> axes;
+            List<JoystickButton> buttons;
+            if (joyId < this.known.length && this.known[joyId] == joy)
+            {
+                return;
+            }
+            if (joyId >= this.known.length)
+            {
+                this.known = Arrays.copyOf(this.known, joyId + 1);
+            }
+            this.known[joyId] = joy;
+            axes = joy.getAxes();
+            buttons = joy.getButtons();
+            this.header(TAG_JOYSTICK, time);
+            this.writeVarint(joyId);
+            this.writeString(joy.getName());
+            this.writeVarint(axes.size());
+            for (JoystickAxis axis : axes)
+            {
+                this.writeVarint(axis.getAxisId());
+                this.writeString(axis.getName());
+                this.ensure(1);
+                this.buffer[this.position++] = (byte) (axis.isAnalog() ? 1 : 0);
+            }
+            this.writeVarint(buttons.size());
+            for (JoystickButton button : buttons)
+            {
+                this.writeVarint(button.getButtonId());
+                this.writeString(button.getName());
+            }
+        }
+
+        void axis(int joyId, int axisId, float value, float rawValue,
+                  long time) throws IOException
+        {
+            boolean hasRaw = Float.floatToIntBits(value) !=
+                    Float.floatToIntBits(rawValue);
+            this.header(TAG_AXIS | (hasRaw ? FLAG_RAW : 0), time);
+            this.writeVarint(joyId);
+            this.writeVarint(axisId);
+            this.writeFloat(value);
+            if (hasRaw)
+            {
+                this.writeFloat(rawValue);
+            }
+        }
+
+        void button(int joyId, int buttonId, boolean pressed, long time)
+                throws IOException
+        {
+            this.header(pressed ? TAG_BUTTON_DOWN : TAG_BUTTON_UP, time);
+            this.writeVarint(joyId);
+            this.writeVarint(buttonId);
+        }
+
+        /**
+         * Obtains the number of bytes waiting to be passed to the stream.
+         *
+         * @return The number of buffered bytes.
+         */
+        int buffered()
+        {
+            return this.position;
+        }
+
+        /**
+         * Passes everything encoded so far on to the stream.
+         */
+        void flush() throws IOException
+        {
+            if (this.position > 0)
+            {
+                this.out.write(this.buffer, 0, this.position);
+                this.position = 0;
+            }
+            this.out.flush();
+        }
+
+        private void header(int tag, long time) throws IOException
+        {
+            long delta = this.lastTime < 0 ? 0 :
+                         Math.max(0, time - this.lastTime);
+            this.lastTime = time;
+            this.ensure(1);
+            this.buffer[this.position++] = (byte) tag;
+            this.writeVarint(delta);
+        }
+
+        private void writeVarint(long value) throws IOException
+        {
+            this.ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeFloat(float value) throws IOException
+        {
+            int bits = Float.floatToIntBits(value);
+            this.ensure(4);
+            this.buffer[this.position++] = (byte) (bits >>> 24);
+            this.buffer[this.position++] = (byte) (bits >>> 16);
+            this.buffer[this.position++] = (byte) (bits >>> 8);
+            this.buffer[this.position++] = (byte) bits;
+        }
+
+        private void writeString(String value) throws IOException
+        {
+            byte[] bytes = (value == null ? "" : value).getBytes(UTF_8);
+            this.writeVarint(bytes.length);
+            if (bytes.length > this.buffer.length)
+            {
+                this.flush();
+                this.out.write(bytes);
+                return;
+            }
+            this.ensure(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position,
+                    bytes.length);
+            this.position += bytes.length;
+        }
+
+        private void ensure(int bytes) throws IOException
+        {
+            if (this.position + bytes > this.buffer.length)
+            {
+                this.out.write(this.buffer, 0, this.position);
+                this.position = 0;
+            }
+        }
+    }
+
+    /**
+     * Decodes records one at a time from a buffer, such as a memory-mapped
+     * file. Joystick records are turned into {@link VirtualJoystick virtual
+     * joysticks}.
+     */
+    static class Reader
+    {
+        private final ByteBuffer buffer;
+        private final InputManager inputManager;
+
+        int tag;
+        /**
+         * The time of the current record, in nanoseconds since the first one.
+         */
+        long time = 0;
+        int joyId;
+        int id;
+        float value;
+        float rawValue;
+        VirtualJoystick joystick;
+
+        Reader(ByteBuffer buffer, InputManager inputManager) throws IOException
+        {
+            byte[] magic = new byte[MAGIC.length];
+            int version;
+            this.buffer = buffer;
+            this.inputManager = inputManager;
+            if (buffer.remaining() < magic.length + 1)
+            {
+                throw new IOException("Not an input recording");
+            }
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+            {
+                throw new IOException("Not an input recording");
+            }
+            version = buffer.get() & 0xFF;
+            if (version != VERSION)
+            {
+                throw new IOException(
+                        "Unsupported input recording version " + version);
+            }
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return False if the end of the recording was reached.
+         * @throws IOException If the record is corrupt or was cut short.
+         */
+        boolean next() throws IOException
+        {
+            if (!this.buffer.hasRemaining())
+            {
+                return false;
+            }
+            try
+            {
+                this.read();
+            }
+            catch (BufferUnderflowException e)
+            {
+                throw new IOException("Input recording ended unexpectedly", e);
+            }
+            return true;
+        }
+
+        private void read() throws IOException
+        {
+            int axisCount, buttonCount, elementId;
+            this.tag = this.buffer.get() & 0xFF;
+            this.time += this.readVarint();
+            switch (this.tag & 0x0F)
+            {
+            case TAG_JOYSTICK:
+                this.joyId = (int) this.readVarint();
+                this.joystick = new VirtualJoystick(this.inputManager,
+                        this.joyId, this.readString());
+                axisCount = (int) this.readVarint();
+                for (int i = 0; i < axisCount; i++)
+                {
+                    elementId = (int) this.readVarint();
+                    String name = this.readString();
+                    this.joystick.addAxis(elementId, name,
+                            this.buffer.get() != 0);
+                }
+                buttonCount = (int) this.readVarint();
+                for (int i = 0; i < buttonCount; i++)
+                {
+                    elementId = (int) this.readVarint();
+                    this.joystick.addButton(elementId, this.readString());
+                }
+                break;
+            case TAG_AXIS:
+                this.joyId = (int) this.readVarint();
+                this.id = (int) this.readVarint();
+                this.value = this.buffer.getFloat();
+                this.rawValue = (this.tag & FLAG_RAW) != 0 ?
+                                this.buffer.getFloat() : this.value;
+                break;
+            case TAG_BUTTON_DOWN:
+            case TAG_BUTTON_UP:
+                this.joyId = (int) this.readVarint();
+                this.id = (int) this.readVarint();
+                break;
+            default:
+                throw new IOException("Corrupt input recording (tag " +
+                        this.tag + " at " + (this.buffer.position() - 1) +
+                        ")");
+            }
+        }
+
+        private long readVarint() throws IOException
+        {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                if (shift > 63)
+                {
+                    throw new IOException("Corrupt input recording (varint)");
+                }
+                b = this.buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private String readString() throws IOException
+        {
+            long length = this.readVarint();
+            byte[] bytes;
+            if (length > this.buffer.remaining())
+            {
+                throw new BufferUnderflowException();
+            }
+            bytes = new byte[(int) length];
+            this.buffer.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
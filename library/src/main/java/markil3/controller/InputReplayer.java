@@ -0,0 +1,340 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.input.InputManager;
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+import com.jme3.input.RawInputListener;
+import com.jme3.input.event.JoyAxisEvent;
+import com.jme3.input.event.JoyButtonEvent;
+import com.jme3.util.SafeArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Plays back a file made by {@link InputRecorder}. The file is memory-mapped
+ * and decoded as it plays, and the recorded joysticks are recreated as
+ * {@link VirtualJoystick virtual joysticks} that replace the ones known to
+ * the input manager until the replayer is detached.
+ * <p>Events are sent to the {@link #addTarget(RawInputListener) targets},
+ * such as the screens in this library. Playback can run at the original
+ * speed, scaled up or down, or as fast as possible.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class InputReplayer extends BaseAppState
+{
+    private static final org.slf4j.Logger logger =
+            org.slf4j.LoggerFactory.getLogger(InputReplayer.class);
+
+    /**
+     * The most events sent in a single frame when playing as fast as
+     * possible, so the application still gets to render.
+     */
+    private static final int MAX_BATCH = 65536;
+
+    private final File file;
+    private final SafeArrayList<RawInputListener> targets =
+            new SafeArrayList<>(RawInputListener.class);
+
+    private float speed = 1F;
+    private InputRecording.Reader reader;
+    private boolean pending;
+    private boolean finished;
+    private double clock;
+    private long replayed;
+
+    /*
+     * Indexed by the recorded joystick IDs, which may have gaps.
+     */
+    private Joystick[] joysticks = new Joystick[0];
+    private Joystick[] previousJoysticks;
+
+    /**
+     * Creates a replayer.
+     *
+     * @param file - The recording to play back.
+     */
+    public InputReplayer(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Sets how fast the recording plays back.
+     *
+     * @param speed - The playback speed, where 1 is the original speed and 2
+     * is twice as fast. Set this to 0 to play back as fast as possible.
+     */
+    public void setSpeed(float speed)
+    {
+        this.speed = Math.max(0, speed);
+    }
+
+    /**
+     * Obtains how fast the recording plays back.
+     *
+     * @return The playback speed, or 0 if it plays back as fast as possible.
+     */
+    public float getSpeed()
+    {
+        return this.speed;
+    }
+
+    /**
+     * Adds a listener to send the events to.
+     *
+     * @param target - The listener to add.
+     */
+    public void addTarget(RawInputListener target)
+    {
+        this.targets.add(target);
+    }
+
+    /**
+     * Stops sending events to a listener.
+     *
+     * @param target - The listener to remove.
+     */
+    public void removeTarget(RawInputListener target)
+    {
+        this.targets.remove(target);
+    }
+
+    /**
+     * Checks whether the whole recording has been played.
+     *
+     * @return True if there are no events left.
+     */
+    public boolean isFinished()
+    {
+        return this.finished;
+    }
+
+    /**
+     * Obtains the number of events played back so far.
+     *
+     * @return The number of events.
+     */
+    public long getReplayedCount()
+    {
+        return this.replayed;
+    }
+
+    @Override
+    protected void initialize(Application app)
+    {
+        MappedByteBuffer buffer;
+        this.previousJoysticks = app.getInputManager().getJoysticks();
+        try (RandomAccessFile input = new RandomAccessFile(this.file, "r");
+             FileChannel channel = input.getChannel())
+        {
+            /*
+             * The mapping stays valid after the channel is closed.
+             */
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            this.reader = new InputRecording.Reader(buffer,
+                    app.getInputManager());
+        }
+        catch (IOException ioe)
+        {
+            logger.error("Could not open recording " + this.file, ioe);
+            this.finished = true;
+        }
+    }
+
+    @Override
+    protected void cleanup(Application app)
+    {
+        InputManager inputManager = app.getInputManager();
+        for (Joystick joy : this.joysticks)
+        {
+            if (joy != null)
+            {
+                inputManager.fireJoystickDisconnectedEvent(joy);
+            }
+        }
+        inputManager.setJoysticks(this.previousJoysticks);
+        this.previousJoysticks = null;
+        this.reader = null;
+    }
+
+    @Override
+    protected void onEnable()
+    {
+    }
+
+    @Override
+    protected void onDisable()
+    {
+    }
+
+    @Override
+    public void update(float tpf)
+    {
+        RawInputListener[] listeners = this.targets.getArray();
+        int sent = 0;
+        super.update(tpf);
+        if (this.finished)
+        {
+            return;
+        }
+        this.clock += tpf * this.speed * 1_000_000_000D;
+        for (RawInputListener listener : listeners)
+        {
+            listener.beginInput();
+        }
+        try
+        {
+            while (sent < MAX_BATCH)
+            {
+                if (!this.pending)
+                {
+                    if (!this.reader.next())
+                    {
+                        this.finished = true;
+                        break;
+                    }
+                    this.pending = true;
+                }
+                if (this.speed > 0 && this.reader.time > this.clock)
+                {
+                    break;
+                }
+                this.pending = false;
+                this.play(listeners);
+                sent++;
+            }
+        }
+        catch (IOException e)
+        {
+            logger.error("Recording " + this.file + " ended unexpectedly", e);
+            this.finished = true;
+        }
+        for (RawInputListener listener : listeners)
+        {
+            listener.endInput();
+        }
+        this.replayed += sent;
+    }
+
+    /**
+     * Sends the record the reader is on to the targets.
+     *
+     * @param listeners - The targets.
+     */
+    private void play(RawInputListener[] listeners)
+    {
+        InputRecording.Reader record = this.reader;
+        Joystick joy;
+        JoystickAxis axis;
+        JoystickButton button;
+        switch (record.tag & 0x0F)
+        {
+        case InputRecording.TAG_JOYSTICK:
+            this.connect(record.joystick);
+            break;
+        case InputRecording.TAG_AXIS:
+            joy = JoystickEventBuffer.getJoystick(this.joysticks,
+                    record.joyId);
+            axis = joy == null ? null :
+                   JoystickEventBuffer.getAxis(joy, record.id);
+            if (axis != null)
+            {
+                JoyAxisEvent evt = new JoyAxisEvent(axis, record.value,
+                        record.rawValue);
+                evt.setTime(System.nanoTime());
+                for (RawInputListener listener : listeners)
+                {
+                    listener.onJoyAxisEvent(evt);
+                }
+            }
+            break;
+        default:
+            joy = JoystickEventBuffer.getJoystick(this.joysticks,
+                    record.joyId);
+            button = joy == null ? null :
+                     JoystickEventBuffer.getButton(joy, record.id);
+            if (button != null)
+            {
+                JoyButtonEvent evt = new JoyButtonEvent(button,
+                        record.tag == InputRecording.TAG_BUTTON_DOWN);
+                evt.setTime(System.nanoTime());
+                for (RawInputListener listener : listeners)
+                {
+                    listener.onJoyButtonEvent(evt);
+                }
+            }
+            break;
+        }
+    }
+
+    /**
+     * Registers a recorded joystick with the input manager.
+     *
+     * @param joy - The recreated joystick.
+     */
+    private void connect(Joystick joy)
+    {
+        InputManager inputManager = this.getApplication().getInputManager();
+        int joyId = joy.getJoyId();
+        if (joyId >= this.joysticks.length)
+        {
+            this.joysticks = Arrays.copyOf(this.joysticks, joyId + 1);
+        }
+        else if (this.joysticks[joyId] != null)
+        {
+            inputManager.fireJoystickDisconnectedEvent(this.joysticks[joyId]);
+        }
+        this.joysticks[joyId] = joy;
+        inputManager.setJoysticks(this.getConnected());
+        inputManager.fireJoystickConnectedEvent(joy);
+    }
+
+    /**
+     * Obtains the recreated joysticks without any gaps between them, the way
+     * the input backends report them.
+     *
+     * @return The joysticks, in order of their IDs.
+     */
+    private Joystick[] getConnected()
+    {
+        Joystick[] connected;
+        int count = 0;
+        for (Joystick joy : this.joysticks)
+        {
+            if (joy != null)
+            {
+                count++;
+            }
+        }
+        connected = new Joystick[count];
+        count = 0;
+        for (Joystick joy : this.joysticks)
+        {
+            if (joy != null)
+            {
+                connected[count++] = joy;
+            }
+        }
+        return connected;
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs joystick input without slowing down the thread the input arrives on.
+ * Each traced event is copied into a {@link JoystickEventBuffer}, and a
+ * background thread formats and logs the queued events every few
+ * milliseconds, using a logger named after the joystick.
+ * <p>Tracing can be switched on and off at any time, and each joystick can be
+ * sampled so that only every nth event is logged. Events should only be
+ * traced from a single thread (normally the render thread). If they come in
+ * faster than the background thread can log them, the extra events are
+ * dropped.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class InputTrace
+{
+    private static final InputTrace SHARED = new InputTrace();
+
+    /**
+     * How long the background thread waits between flushes.
+     */
+    private static final long FLUSH_INTERVAL = 50_000_000L;
+
+    /**
+     * The names of a joystick and its components, captured so that the
+     * background thread never has to touch the joystick itself.
+     */
+    private static class Descriptor
+    {
+        final Joystick joystick;
+        final String name;
+        final String[] axisNames;
+        final String[] buttonNames;
+        /**
+         * Only used by the background thread.
+         */
+        Logger logger;
+
+        Descriptor(Joystick joystick)
+        {
+            List<JoystickAxis> axes = joystick.getAxes();
+            List<JoystickButton> buttons = joystick.getButtons();
+            int count = 0;
+            this.joystick = joystick;
+            this.name = joystick.getName();
+            for (JoystickAxis axis : axes)
+            {
+                count = Math.max(count, axis.getAxisId() + 1);
+            }
+            this.axisNames = new String[count];
+            for (JoystickAxis axis : axes)
+            {
+                if (axis.getAxisId() >= 0)
+                {
+                    this.axisNames[axis.getAxisId()] = axis.getName();
+                }
+            }
+            count = 0;
+            for (JoystickButton button : buttons)
+            {
+                count = Math.max(count, button.getButtonId() + 1);
+            }
+            this.buttonNames = new String[count];
+            for (JoystickButton button : buttons)
+            {
+                if (button.getButtonId() >= 0)
+                {
+                    this.buttonNames[button.getButtonId()] = button.getName();
+                }
+            }
+        }
+    }
+
+    private final JoystickEventBuffer buffer;
+    private volatile boolean enabled = true;
+    private volatile Descriptor[] descriptors = new Descriptor[0];
+
+    private int defaultSampleRate = 1;
+    private int[] sampleRates = new int[0];
+    private int[] sampleCounters = new int[0];
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    /**
+     * Obtains the trace used by the screens in this library.
+     *
+     * @return The shared trace.
+     */
+    public static InputTrace getShared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Creates a trace with a buffer of the
+     * {@link JoystickEventBuffer#DEFAULT_CAPACITY default capacity}.
+     */
+    public InputTrace()
+    {
+        this(JoystickEventBuffer.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a trace.
+     *
+     * @param capacity - The number of events that can be waiting to be logged
+     * at once.
+     */
+    public InputTrace(int capacity)
+    {
+        this.buffer = new JoystickEventBuffer(capacity);
+    }
+
+    /**
+     * Turns tracing on or off. Tracing is on by default.
+     *
+     * @param enabled - Whether or not events should be logged.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks whether tracing is turned on.
+     *
+     * @return True if events are being logged.
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * Sets how often events are logged for joysticks that don't have their own
+     * sample rate.
+     *
+     * @param everyNth - Only one out of this many events will be logged. Set
+     * this to 1 to log every event.
+     */
+    public void setDefaultSampleRate(int everyNth)
+    {
+        this.defaultSampleRate = Math.max(1, everyNth);
+    }
+
+    /**
+     * Sets how often events are logged for a single joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @param everyNth - Only one out of this many events will be logged. Set
+     * this to 1 to log every event, or 0 to go back to the default rate.
+     */
+    public void setSampleRate(int joyId, int everyNth)
+    {
+        this.ensureJoystick(joyId);
+        this.sampleRates[joyId] = Math.max(0, everyNth);
+    }
+
+    /**
+     * Traces an axis event.
+     *
+     * @param axis - The axis that changed.
+     * @param value - The value of the axis.
+     */
+    public void traceAxis(JoystickAxis axis, float value)
+    {
+        int joyId;
+        if (this.enabled)
+        {
+            joyId = axis.getJoystick().getJoyId();
+            if (this.sample(axis.getJoystick()))
+            {
+                this.buffer.offerAxis(joyId, axis.getAxisId(), value, value,
+                        System.nanoTime(), 0);
+            }
+        }
+    }
+
+    /**
+     * Traces a button event.
+     *
+     * @param button - The button that changed.
+     * @param isPressed - Whether or not the button is pressed.
+     */
+    public void traceButton(JoystickButton button, boolean isPressed)
+    {
+        int joyId;
+        if (this.enabled)
+        {
+            joyId = button.getJoystick().getJoyId();
+            if (this.sample(button.getJoystick()))
+            {
+                this.buffer.offerButton(joyId, button.getButtonId(), isPressed,
+                        System.nanoTime(), 0);
+            }
+        }
+    }
+
+    /**
+     * Obtains the number of events that were not logged because the
+     * background thread fell behind.
+     *
+     * @return The number of dropped events.
+     */
+    public long getDroppedCount()
+    {
+        return this.buffer.getDroppedCount();
+    }
+
+    /**
+     * Logs any remaining events and stops the background thread. Tracing more
+     * events afterwards will start it again.
+     */
+    public synchronized void shutdown()
+    {
+        Thread thread = this.flusher;
+        this.running = false;
+        this.flusher = null;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Decides whether the next event for a joystick should be logged, and
+     * makes sure everything needed to log it is in place.
+     *
+     * @param joy - The joystick the event belongs to.
+     * @return True if the event should be logged.
+     */
+    private boolean sample(Joystick joy)
+    {
+        int joyId = joy.getJoyId();
+        int rate;
+        Descriptor[] known;
+        if (joyId < 0)
+        {
+            return false;
+        }
+        this.ensureJoystick(joyId);
+        rate = this.sampleRates[joyId];
+        if (rate == 0)
+        {
+            rate = this.defaultSampleRate;
+        }
+        if (++this.sampleCounters[joyId] < rate)
+        {
+            return false;
+        }
+        this.sampleCounters[joyId] = 0;
+
+        known = this.descriptors;
+        if (joyId >= known.length || known[joyId] == null ||
+                known[joyId].joystick != joy)
+        {
+            /*
+             * A new or replaced joystick. We copy the array so the background
+             * thread always sees a complete one.
+             */
+            known = Arrays.copyOf(known, Math.max(known.length, joyId + 1));
+            known[joyId] = new Descriptor(joy);
+            this.descriptors = known;
+        }
+        if (!this.running)
+        {
+            this.start();
+        }
+        return true;
+    }
+
+    private void ensureJoystick(int joyId)
+    {
+        if (joyId >= this.sampleRates.length)
+        {
+            this.sampleRates = Arrays.copyOf(this.sampleRates, joyId + 1);
+            this.sampleCounters = Arrays.copyOf(this.sampleCounters, joyId + 1);
+        }
+    }
+
+    private synchronized void start()
+    {
+        if (this.running)
+        {
+            return;
+        }
+        this.running = true;
+        this.flusher = new Thread(this::flushLoop, "Joystick Input Trace");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * The background thread. This is the only consumer of the buffer.
+     */
+    private void flushLoop()
+    {
+        final StringBuilder message = new StringBuilder();
+        JoystickEventBuffer.Handler handler = new JoystickEventBuffer.Handler()
+        {
+            @Override
+            public void onAxis(int joyId, int axisId, float value,
+                               float rawValue, long time, long eventTime)
+            {
+                Descriptor joy = getDescriptor(joyId);
+                if (joy != null)
+                {
+                    message.setLength(0);
+                    message.append(joy.name).append("\n\tAxis:")
+                            .append(axisId < joy.axisNames.length ?
+                                    joy.axisNames[axisId] : null)
+                            .append(" (").append(axisId).append(")=")
+                            .append(value);
+                    joy.logger.info(message.toString());
+                }
+            }
+
+            @Override
+            public void onButton(int joyId, int buttonId, boolean pressed,
+                                 long time, long eventTime)
+            {
+                Descriptor joy = getDescriptor(joyId);
+                if (joy != null)
+                {
+                    message.setLength(0);
+                    message.append(joy.name).append("\n\tButton:")
+                            .append(buttonId < joy.buttonNames.length ?
+                                    joy.buttonNames[buttonId] : null)
+                            .append(" (").append(buttonId).append(")=")
+                            .append(pressed ? "Down" : "Up");
+                    joy.logger.info(message.toString());
+                }
+            }
+        };
+        while (this.running)
+        {
+            this.buffer.drain(handler);
+            LockSupport.parkNanos(FLUSH_INTERVAL);
+        }
+        this.buffer.drain(handler);
+    }
+
+    private Descriptor getDescriptor(int joyId)
+    {
+        Descriptor[] known = this.descriptors;
+        Descriptor joy;
+        if (joyId >= known.length || known[joyId] == null)
+        {
+            return null;
+        }
+        joy = known[joyId];
+        if (joy.logger == null)
+        {
+            joy.logger = LoggerFactory.getLogger(joy.name);
+        }
+        return joy;
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated ring buffer that carries joystick events from the raw input
+ * callbacks over to {@link com.jme3.app.state.AppState#update(float)}. Every
+ * slot is made of primitives, so queueing an event never allocates anything.
+ * <p>The buffer is lock-free, but it only supports a single producer (the
+ * thread delivering input events) and a single consumer (the thread calling
+ * {@link #drain(Handler)}). If the producer gets more than a full buffer
+ * ahead of the consumer, new events are dropped and counted instead of
+ * blocking the input thread.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class JoystickEventBuffer
+{
+    /**
+     * The default number of events that can be queued between drains. This is
+     * enough for several high-polling-rate gamepads at a low frame rate.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final byte TYPE_AXIS = 0;
+    private static final byte TYPE_BUTTON = 1;
+
+    /**
+     * Receives the events from the buffer as it is drained.
+     */
+    public interface Handler
+    {
+        /**
+         * Called for every queued axis event.
+         *
+         * @param joyId - The index of the joystick that sent the event.
+         * @param axisId - The ID of the axis that changed.
+         * @param value - The value of the axis after remapping.
+         * @param rawValue - The value of the axis as reported by the device.
+         * @param time - The {@link System#nanoTime()} that the event was
+         * received at.
+         * @param eventTime - The time the input backend gave the event, on
+         * its own clock, or 0 if it gave none.
+         */
+        void onAxis(int joyId, int axisId, float value, float rawValue,
+                    long time, long eventTime);
+
+        /**
+         * Called for every queued button event.
+         *
+         * @param joyId - The index of the joystick that sent the event.
+         * @param buttonId - The ID of the button that changed.
+         * @param pressed - Whether or not the button is now pressed.
+         * @param time - The {@link System#nanoTime()} that the event was
+         * received at.
+         * @param eventTime - The time the input backend gave the event, on
+         * its own clock, or 0 if it gave none.
+         */
+        void onButton(int joyId, int buttonId, boolean pressed, long time,
+                      long eventTime);
+    }
+
+    private final int mask;
+    private final byte[] types;
+    private final int[] joyIds;
+    private final int[] ids;
+    private final float[] values;
+    private final float[] rawValues;
+    private final long[] times;
+    private final long[] eventTimes;
+
+    /**
+     * The index of the next slot to read. Only the consumer writes to this.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * The index of the next slot to write. Only the producer writes to this.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a buffer with the {@link #DEFAULT_CAPACITY default capacity}.
+     */
+    public JoystickEventBuffer()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a buffer.
+     *
+     * @param capacity - The minimum number of events that can be queued at
+     * once. This will be rounded up to the next power of two.
+     */
+    public JoystickEventBuffer(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+        {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.types = new byte[size];
+        this.joyIds = new int[size];
+        this.ids = new int[size];
+        this.values = new float[size];
+        this.rawValues = new float[size];
+        this.times = new long[size];
+        this.eventTimes = new long[size];
+    }
+
+    /**
+     * Queues an axis event. This should only be called from the producer
+     * thread.
+     *
+     * @param joyId - The index of the joystick that sent the event.
+     * @param axisId - The ID of the axis that changed.
+     * @param value - The value of the axis after remapping.
+     * @param rawValue - The value of the axis as reported by the device.
+     * @param time - The {@link System#nanoTime()} that the event was
+     * received at.
+     * @param eventTime - The time the input backend gave the event, from
+     * {@link com.jme3.input.event.InputEvent#getTime()}, or 0 if there is
+     * none.
+     * @return True if the event was queued, false if the buffer was full and
+     * the event was dropped.
+     */
+    public boolean offerAxis(int joyId, int axisId, float value,
+                             float rawValue, long time, long eventTime)
+    {
+        long t = this.tail.get();
+        int slot;
+        if (t - this.head.get() > this.mask)
+        {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+        slot = (int) (t & this.mask);
+        this.types[slot] = TYPE_AXIS;
+        this.joyIds[slot] = joyId;
+        this.ids[slot] = axisId;
+        this.values[slot] = value;
+        this.rawValues[slot] = rawValue;
+        this.times[slot] = time;
+        this.eventTimes[slot] = eventTime;
+        /*
+         * The ordered write publishes the slot contents to the consumer.
+         */
+        this.tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Queues a button event. This should only be called from the producer
+     * thread.
+     *
+     * @param joyId - The index of the joystick that sent the event.
+     * @param buttonId - The ID of the button that changed.
+     * @param pressed - Whether or not the button is now pressed.
+     * @param time - The {@link System#nanoTime()} that the event was
+     * received at.
+     * @param eventTime - The time the input backend gave the event, from
+     * {@link com.jme3.input.event.InputEvent#getTime()}, or 0 if there is
+     * none.
+     * @return True if the event was queued, false if the buffer was full and
+     * the event was dropped.
+     */
+    public boolean offerButton(int joyId, int buttonId, boolean pressed,
+                               long time, long eventTime)
+    {
+        long t = this.tail.get();
+        int slot;
+        if (t - this.head.get() > this.mask)
+        {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+        slot = (int) (t & this.mask);
+        this.types[slot] = TYPE_BUTTON;
+        this.joyIds[slot] = joyId;
+        this.ids[slot] = buttonId;
+        this.values[slot] = pressed ? 1F : 0F;
+        this.rawValues[slot] = this.values[slot];
+        this.times[slot] = time;
+        this.eventTimes[slot] = eventTime;
+        this.tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Passes every queued event to the handler, in the order they were
+     * received. This should only be called from the consumer thread.
+     *
+     * @param handler - The handler to receive the events.
+     * @return The number of events handled.
+     */
+    public int drain(Handler handler)
+    {
+        return this.drain(handler, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Passes queued events to the handler, in the order they were received.
+     * This should only be called from the consumer thread.
+     *
+     * @param handler - The handler to receive the events.
+     * @param max - The maximum number of events to handle. Any others will
+     * remain in the buffer for the next drain.
+     * @return The number of events handled.
+     */
+    public int drain(Handler handler, int max)
+    {
+        long h = this.head.get();
+        long t = this.tail.get();
+        int count = 0;
+        int slot;
+        while (h < t && count < max)
+        {
+            slot = (int) (h & this.mask);
+            if (this.types[slot] == TYPE_AXIS)
+            {
+                handler.onAxis(this.joyIds[slot], this.ids[slot],
+                        this.values[slot], this.rawValues[slot],
+                        this.times[slot], this.eventTimes[slot]);
+            }
+            else
+            {
+                handler.onButton(this.joyIds[slot], this.ids[slot],
+                        this.values[slot] != 0, this.times[slot],
+                        this.eventTimes[slot]);
+            }
+            h++;
+            count++;
+            /*
+             * Frees the slot for the producer as soon as we are done with it.
+             */
+            this.head.lazySet(h);
+        }
+        return count;
+    }
+
+    /**
+     * Discards every queued event. This should only be called from the
+     * consumer thread.
+     */
+    public void clear()
+    {
+        this.head.lazySet(this.tail.get());
+    }
+
+    /**
+     * Obtains the number of events waiting to be drained.
+     *
+     * @return The number of queued events.
+     */
+    public int size()
+    {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    /**
+     * Obtains the maximum number of events the buffer can hold.
+     *
+     * @return The buffer capacity.
+     */
+    public int capacity()
+    {
+        return this.mask + 1;
+    }
+
+    /**
+     * Obtains the number of events that had to be dropped because the buffer
+     * was full.
+     *
+     * @return The number of dropped events since this buffer was created.
+     */
+    public long getDroppedCount()
+    {
+        return this.dropped.get();
+    }
+
+    /**
+     * Looks up a joystick by the ID used in the input events.
+     *
+     * @param joysticks - The joysticks currently known to the input manager.
+     * This may be null.
+     * @param joyId - The joystick ID.
+     * @return The joystick, or null if it is no longer connected.
+     */
+    public static Joystick getJoystick(Joystick[] joysticks, int joyId)
+    {
+        Joystick joy;
+        if (joysticks == null || joyId < 0)
+        {
+            return null;
+        }
+        /*
+         * Some backends, such as LWJGL 3, leave out empty slots, so a
+         * joystick's ID isn't always its index in the array.
+         */
+        if (joyId < joysticks.length)
+        {
+            joy = joysticks[joyId];
+            if (joy != null && joy.getJoyId() == joyId)
+            {
+                return joy;
+            }
+        }
+        for (int i = 0; i < joysticks.length; i++)
+        {
+            joy = joysticks[i];
+            if (joy != null && joy.getJoyId() == joyId)
+            {
+                return joy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up an axis by the ID used in the input events.
+     *
+     * @param joy - The joystick the axis belongs to.
+     * @param axisId - The axis ID.
+     * @return The axis, or null if the joystick has no such axis.
+     */
+    public static JoystickAxis getAxis(Joystick joy, int axisId)
+    {
+        List<JoystickAxis> axes = joy.getAxes();
+        JoystickAxis axis;
+        /*
+         * Axis IDs are almost always the index in the list, but we don't
+         * rely on it.
+         */
+        if (axisId >= 0 && axisId < axes.size())
+        {
+            axis = axes.get(axisId);
+            if (axis.getAxisId() == axisId)
+            {
+                return axis;
+            }
+        }
+        for (int i = 0, l = axes.size(); i < l; i++)
+        {
+            axis = axes.get(i);
+            if (axis.getAxisId() == axisId)
+            {
+                return axis;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a button by the ID used in the input events.
+     *
+     * @param joy - The joystick the button belongs to.
+     * @param buttonId - The button ID.
+     * @return The button, or null if the joystick has no such button.
+     */
+    public static JoystickButton getButton(Joystick joy, int buttonId)
+    {
+        List<JoystickButton> buttons = joy.getButtons();
+        JoystickButton button;
+        if (buttonId >= 0 && buttonId < buttons.size())
+        {
+            button = buttons.get(buttonId);
+            if (button.getButtonId() == buttonId)
+            {
+                return button;
+            }
+        }
+        for (int i = 0, l = buttons.size(); i < l; i++)
+        {
+            button = buttons.get(i);
+            if (button.getButtonId() == buttonId)
+            {
+                return button;
+            }
+        }
+        return null;
+    }
+}
@@ -12,6 +12,7 @@ package markil3.controller;
 
 import com.jme3.app.Application;
 import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.AppStateManager;
 import com.jme3.app.state.BaseAppState;
 import com.jme3.asset.AssetManager;
 import com.jme3.font.BitmapFont;
@@ -37,18 +38,31 @@ import com.jme3.math.FastMath;
 import com.jme3.math.Vector2f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
 import com.jme3.scene.shape.Quad;
+import com.jme3.util.BufferUtils;
 
-import org.slf4j.LoggerFactory;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Adding this app state will display a GUI screen showing the controllers
  * connected and information on what buttons are pressed. It is primarily useful
  * for debugging controllers.
+ * <p>Only the controller selected in the tab bar has a gamepad view and
+ * labels. The state of the others is kept in a {@link JoystickStateStore},
+ * so the cost of the screen stays about the same no matter how many
+ * controllers are connected.</p>
  * <p>Note that this class relies on three textures not found in the default
  * JME core: "Interface/Joystick/gamepad-buttons.png",
  * "Interface/Joystick/gamepad-frame.png,"
@@ -125,6 +139,25 @@ public class JoystickPreviewScreen extends BaseAppState
     public static final String DPAD_DOWN = "15";
     final String CLICK_MAPPING = "previewButtonClick";
 
+    /**
+     * The number of characters in the axis value readouts, enough for
+     * "-0.1234".
+     */
+    private static final int AXIS_READOUT_WIDTH = 7;
+    /**
+     * The number of characters in the button value readouts, enough for
+     * "false".
+     */
+    private static final int BUTTON_READOUT_WIDTH = 5;
+    /**
+     * How often the value labels are refreshed by default, in hertz.
+     */
+    private static final float DEFAULT_LABEL_RATE = 15F;
+    /**
+     * How many sets of gamepad labels are kept around for reuse.
+     */
+    private static final int LABEL_CACHE_SIZE = 8;
+
     /**
      * This node serves as the center of logic for each gamepad connected to the
      * computer.
@@ -149,13 +182,50 @@ public class JoystickPreviewScreen extends BaseAppState
         Geometry leftStick;
         Geometry rightStick;
 
+        /**
+         * Whether the stick sprites need to be moved on the next update.
+         */
+        private boolean leftDirty = true;
+        private boolean rightDirty = true;
+        /**
+         * How often the stick sprites are moved, in seconds, or 0 to move
+         * them every frame.
+         */
+        float stickInterval;
+        private float stickTimer;
+
         Map<String, ButtonView> buttons = new HashMap<>();
+        /**
+         * Draws every button highlight at once.
+         */
+        HighlightBatch highlights;
 
         private boolean l2;
 
         private boolean r2;
 
         GamepadView(JoystickPreviewScreen prevScreen, AssetManager assetManager)
+        {
+            this(prevScreen, assetManager,
+                    GamepadAtlas.createDefault(assetManager));
+        }
+
+        GamepadView(JoystickPreviewScreen prevScreen, GuiResources resources)
+        {
+            this(prevScreen, resources.getAssetManager(),
+                    resources.getGamepadAtlas(),
+                    resources.getHighlightMaterial());
+        }
+
+        GamepadView(JoystickPreviewScreen prevScreen, AssetManager assetManager,
+                    GamepadAtlas atlas)
+        {
+            this(prevScreen, assetManager, atlas,
+                    HighlightBatch.createMaterial(assetManager));
+        }
+
+        GamepadView(JoystickPreviewScreen prevScreen, AssetManager assetManager,
+                    GamepadAtlas atlas, Material highlightMaterial)
         {
             super("gamepad");
 
@@ -166,36 +236,27 @@ public class JoystickPreviewScreen extends BaseAppState
             // be in that space because it's easier.
             int size = 512;
 
-            Material m = new Material(assetManager,
-                    "Common/MatDefs/Misc/Unshaded.j3md");
-            m.setTexture("ColorMap", assetManager
-                    .loadTexture("Interface/Joystick/gamepad-buttons.png"));
-            m.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
-            Geometry buttonPanel =
-                    new Geometry("buttons", new Quad(size, size));
+            // Every part comes from the same atlas, and so shares a material.
+            Geometry buttonPanel = atlas.createPart("buttons",
+                    GamepadAtlas.Part.BUTTONS, size, size);
             buttonPanel.setLocalTranslation(0, 0, -1);
-            buttonPanel.setMaterial(m);
             attachChild(buttonPanel);
 
-            m = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
-            m.setTexture("ColorMap", assetManager
-                    .loadTexture("Interface/Joystick/gamepad-frame.png"));
-            m.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
-            Geometry frame = new Geometry("frame", new Quad(size, size));
-            frame.setMaterial(m);
+            Geometry frame = atlas.createPart("frame", GamepadAtlas.Part.FRAME,
+                    size, size);
             attachChild(frame);
 
-            m = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
-            m.setTexture("ColorMap", assetManager
-                    .loadTexture("Interface/Joystick/gamepad-stick.png"));
-            m.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
-            leftStick = new Geometry("leftStick", new Quad(64, 64));
-            leftStick.setMaterial(m);
+            leftStick = atlas.createPart("leftStick", GamepadAtlas.Part.STICK,
+                    64, 64);
             attachChild(leftStick);
-            rightStick = new Geometry("rightStick", new Quad(64, 64));
-            rightStick.setMaterial(m);
+            rightStick = atlas.createPart("rightStick",
+                    GamepadAtlas.Part.STICK, 64, 64);
             attachChild(rightStick);
 
+            highlights = new HighlightBatch(highlightMaterial, 16);
+            highlights.setLocalTranslation(0, 0, -0.5f);
+            attachChild(highlights);
+
             // A "standard" mapping... fits a majority of my game pads
             addButton(ACTION_TOP, 371, 512 - 176, 42, 42);
             addButton(ACTION_RIGHT, 407, 512 - 212, 42, 42);
@@ -232,26 +293,17 @@ public class JoystickPreviewScreen extends BaseAppState
         private void addButton(String name, float x, float y, float width,
                                float height)
         {
-            ButtonView b = new ButtonView(this.assetManager, name, x, y, width,
+            ButtonView b = new ButtonView(this.highlights, name, x, y, width,
                     height);
-            attachChild(b);
             buttons.put(name, b);
         }
 
         void setAxisValue(JoystickAxis axis, float value)
         {
-            LoggerFactory.getLogger(axis.getJoystick().getName())
-                    .info(axis.getJoystick().getName() + "\n\tAxis:" +
-                            axis.getName() + " (" + axis.getAxisId() + ")=" +
-                            value);
             if (this.prevScreen != null)
             {
                 if (this.prevScreen.labels == null ||
-                        this.prevScreen.labels[axis.getJoystick()
-                                .getJoyId()][0] == null ||
-                        !this.prevScreen.labels[axis.getJoystick()
-                                .getJoyId()][0].getText()
-                                .equals(axis.getJoystick().getName()))
+                        this.prevScreen.labelJoystick != axis.getJoystick())
                 {
                     this.prevScreen.setLabels(axis.getJoystick());
                 }
@@ -351,27 +403,21 @@ public class JoystickPreviewScreen extends BaseAppState
                 }
                 lastPovY = value;
             }
-            if (this.prevScreen != null)
+            if (this.prevScreen != null &&
+                    !this.prevScreen.markLabel(axis.getAxisId() * 2 + 2))
             {
-                this.prevScreen.labels[axis.getJoystick().getJoyId()][axis.
-                        getAxisId() * 2 + 2].setText(Float.toString(value));
+                logger.error("Couldn't find index for axis (" +
+                        axis.getName() + ", " + axis.getLogicalId() + ", " +
+                        axis.getAxisId() + ")");
             }
         }
 
         void setButtonValue(JoystickButton button, boolean isPressed)
         {
-            LoggerFactory.getLogger(button.getJoystick().getName())
-                    .info(button.getJoystick().getName() + "\n\tButton:" +
-                            button.getName() + " (" + button.getButtonId() +
-                            ")=" + (isPressed ? "Down" : "Up"));
             if (this.prevScreen != null)
             {
                 if (this.prevScreen.labels == null ||
-                        this.prevScreen.labels[button.getJoystick()
-                                .getJoyId()][0] == null ||
-                        !this.prevScreen.labels[button.getJoystick()
-                                .getJoyId()][0].getText()
-                                .equals(button.getJoystick().getName()))
+                        this.prevScreen.labelJoystick != button.getJoystick())
                 {
                     this.prevScreen.setLabels(button.getJoystick());
                 }
@@ -392,26 +438,13 @@ public class JoystickPreviewScreen extends BaseAppState
             {
                 setButtonValue(button.getLogicalId(), isPressed);
             }
-            if (this.prevScreen != null)
+            if (this.prevScreen != null && !this.prevScreen.markLabel(
+                    2 * (button.getButtonId() +
+                            button.getJoystick().getAxisCount()) + 3))
             {
-                try
-                {
-                    this.prevScreen.labels[button.getJoystick().getJoyId()][2 *
-                            (button.getButtonId() +
-                                    button.getJoystick().getAxisCount()) + 3]
-                            .setText(Boolean.toString(isPressed));
-                }
-                catch (ArrayIndexOutOfBoundsException aie)
-                {
-                    logger.error("Couldn't find index for button (" +
-                            button.getName() + ", " + button.getLogicalId() +
-                            ", " + button.getButtonId() + ")", aie);
-//                    throw new RuntimeException(
-//                            "Couldn't find index for button (" +
-//                            button.getName() + ", " +
-//                            button.getLogicalId() + ", " +
-//                            button.getButtonId() + ")", aie);
-                }
+                logger.error("Couldn't find index for button (" +
+                        button.getName() + ", " + button.getLogicalId() +
+                        ", " + button.getButtonId() + ")");
             }
             //			lastButton = button;
         }
@@ -432,83 +465,125 @@ public class JoystickPreviewScreen extends BaseAppState
             }
         }
 
+        /**
+         * Puts every button and stick back in its resting position, so that
+         * the view can be reused for another joystick.
+         */
+        void reset()
+        {
+            for (ButtonView view : this.buttons.values())
+            {
+                view.reset();
+            }
+            this.xAxis = 0;
+            this.yAxis = 0;
+            this.zAxis = 0;
+            this.zRotation = 0;
+            this.lastPovX = 0;
+            this.lastPovY = 0;
+            this.l2 = false;
+            this.r2 = false;
+            this.leftDirty = true;
+            this.rightDirty = true;
+        }
+
         void setXAxis(float f)
         {
             xAxis = f;
-            resetPositions();
+            leftDirty = true;
         }
 
         void setYAxis(float f)
         {
             yAxis = f;
-            resetPositions();
+            leftDirty = true;
         }
 
         void setZAxis(float f)
         {
             zAxis = f;
-            resetPositions();
+            rightDirty = true;
         }
 
         void setZRotation(float f)
         {
             zRotation = f;
-            resetPositions();
+            rightDirty = true;
         }
 
-        private void resetPositions()
+        /**
+         * Moves any stick sprites whose axes changed since the last frame.
+         *
+         * @param tpf - Time per frame.
+         */
+        @Override
+        public void updateLogicalState(float tpf)
         {
+            super.updateLogicalState(tpf);
+            stickTimer += tpf;
+            if (stickTimer >= stickInterval)
+            {
+                stickTimer = 0;
+                resetPositions();
+            }
+        }
 
-            float xBase = 155;
-            float yBase = 212;
-
-            Vector2f dir = new Vector2f(xAxis, yAxis);
-            float length = Math.min(1, dir.length());
-            dir.normalizeLocal();
-
-            float angle = dir.getAngle();
-            float x = FastMath.cos(angle) * length * 10;
-            float y = FastMath.sin(-angle) * length * 10;
-            leftStick.setLocalTranslation(xBase + x, yBase - y, 0);
-
-            xBase = 291;
-            dir = new Vector2f(zAxis, zRotation);
-            length = Math.min(1, dir.length());
-            dir.normalizeLocal();
+        private void resetPositions()
+        {
+            if (leftDirty)
+            {
+                placeStick(leftStick, 155, xAxis, yAxis);
+                leftDirty = false;
+            }
+            if (rightDirty)
+            {
+                placeStick(rightStick, 291, zAxis, zRotation);
+                rightDirty = false;
+            }
+        }
 
-            angle = dir.getAngle();
-            x = FastMath.cos(angle) * length * 10;
-            y = FastMath.sin(-angle) * length * 10;
-            rightStick.setLocalTranslation(xBase + x, yBase - y, 0);
+        /**
+         * Offsets a stick sprite in the direction it is being pushed. The
+         * offset is clamped to a circle, so this works out the same as
+         * rotating a vector by the stick angle without the trigonometry.
+         *
+         * @param stick - The stick sprite.
+         * @param xBase - The horizontal resting position of the sprite.
+         * @param x - The horizontal axis value.
+         * @param y - The vertical axis value.
+         */
+        private void placeStick(Geometry stick, float xBase, float x, float y)
+        {
+            final float yBase = 212;
+            final float RADIUS = 10;
+            float length = FastMath.sqrt(x * x + y * y);
+            float scale = 0;
+            if (length > 0)
+            {
+                scale = Math.min(1, length) / length * RADIUS;
+            }
+            stick.setLocalTranslation(xBase + x * scale, yBase + y * scale, 0);
         }
     }
 
     /**
-     * Applied to the buttons to highlight which ones are being pressed.
+     * Applied to the buttons to highlight which ones are being pressed. Each
+     * button is a quad in a {@link HighlightBatch}, so this only keeps track
+     * of which quad is its own.
      */
-    static class ButtonView extends Node
+    static class ButtonView
     {
-        private static final ColorRGBA hilite =
-                new ColorRGBA(0.0f, 0.75f, 0.75f, 0.5f);
+        private final HighlightBatch batch;
+        private final int index;
+        private final String name;
         private int state = 0;
-        private Material material;
 
-        ButtonView(AssetManager assetManager, String name, float x, float y,
+        ButtonView(HighlightBatch batch, String name, float x, float y,
                    float width, float height)
         {
-            super("Button:" + name);
-            setLocalTranslation(x, y, -0.5f);
-
-            this.material = new Material(assetManager,
-                    "Common/MatDefs/Misc/Unshaded.j3md");
-            this.material.setColor("Color", hilite);
-            this.material.getAdditionalRenderState()
-                    .setBlendMode(BlendMode.Alpha);
-
-            Geometry g = new Geometry("highlight", new Quad(width, height));
-            g.setMaterial(this.material);
-            g.setUserData("view", this);
-            attachChild(g);
+            this.batch = batch;
+            this.name = name;
+            this.index = batch.add(x, y, width, height);
 
             resetState();
         }
@@ -518,18 +593,21 @@ public class JoystickPreviewScreen extends BaseAppState
          */
         private void resetState()
         {
-            if (state <= 0)
-            {
-                setCullHint(CullHint.Always);
-            }
-            else
-            {
-                setCullHint(CullHint.Dynamic);
-            }
+            this.batch.setHighlighted(this.index, this.state > 0);
 
             //			System.out.println(getName() + " state:" + state);
         }
 
+        /**
+         * Obtains the name of the button.
+         *
+         * @return The logical ID of the button this highlights.
+         */
+        public String getName()
+        {
+            return this.name;
+        }
+
         /**
          * Checks to see if the visual displays if the button is pressed.
          *
@@ -562,28 +640,324 @@ public class JoystickPreviewScreen extends BaseAppState
             this.state--;
             this.resetState();
         }
+
+        /**
+         * Clears any presses the button was displaying.
+         */
+        void reset()
+        {
+            this.state = 0;
+            this.resetState();
+        }
+    }
+
+    /**
+     * Draws the highlights for all the buttons of a gamepad as a single mesh,
+     * using vertex colors to show or hide each one. Pressing or releasing a
+     * button only rewrites the colors of its four vertices, and the whole
+     * batch is culled while no buttons are pressed.
+     */
+    static class HighlightBatch extends Geometry
+    {
+        private static final ColorRGBA hilite =
+                new ColorRGBA(0.0f, 0.75f, 0.75f, 0.5f);
+
+        private final FloatBuffer positions;
+        private final FloatBuffer colors;
+        private final int capacity;
+        private int count;
+        private int highlighted;
+
+        /**
+         * Creates a batch.
+         *
+         * @param material - The material to draw the highlights with, as
+         * created by {@link #createMaterial(AssetManager)}.
+         * @param capacity - The most buttons the batch can hold.
+         */
+        HighlightBatch(Material material, int capacity)
+        {
+            super("highlights", new Mesh());
+            ShortBuffer indices = BufferUtils.createShortBuffer(capacity * 6);
+            this.setMaterial(material);
+
+            this.capacity = capacity;
+            this.positions = BufferUtils.createFloatBuffer(capacity * 4 * 3);
+            this.colors = BufferUtils.createFloatBuffer(capacity * 4 * 4);
+            for (int i = 0; i < capacity; i++)
+            {
+                indices.put((short) (i * 4)).put((short) (i * 4 + 1))
+                        .put((short) (i * 4 + 2)).put((short) (i * 4))
+                        .put((short) (i * 4 + 2)).put((short) (i * 4 + 3));
+            }
+            indices.flip();
+            this.mesh.setBuffer(VertexBuffer.Type.Position, 3, this.positions);
+            this.mesh.setBuffer(VertexBuffer.Type.Color, 4, this.colors);
+            this.mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+            this.mesh.updateBound();
+            this.setCullHint(CullHint.Always);
+        }
+
+        /**
+         * Creates a material that draws a batch. It does not depend on the
+         * contents of the batch, so it can be shared between batches.
+         *
+         * @param assetManager - The asset manager to load the material with.
+         * @return The new material.
+         */
+        static Material createMaterial(AssetManager assetManager)
+        {
+            Material material = new Material(assetManager,
+                    "Common/MatDefs/Misc/Unshaded.j3md");
+            material.setBoolean("VertexColor", true);
+            material.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
+            return material;
+        }
+
+        /**
+         * Adds a button highlight to the batch. It starts out hidden.
+         *
+         * @param x - The left edge of the highlight.
+         * @param y - The bottom edge of the highlight.
+         * @param width - The width of the highlight.
+         * @param height - The height of the highlight.
+         * @return The index of the highlight in the batch.
+         */
+        int add(float x, float y, float width, float height)
+        {
+            int index = this.count;
+            if (index >= this.capacity)
+            {
+                throw new IllegalStateException(
+                        "Highlight batch is full (" + this.capacity + ")");
+            }
+            this.count++;
+            this.positions.position(index * 12);
+            this.positions.put(x).put(y).put(0)
+                    .put(x + width).put(y).put(0)
+                    .put(x + width).put(y + height).put(0)
+                    .put(x).put(y + height).put(0);
+            this.positions.clear();
+            this.mesh.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+            this.mesh.updateBound();
+            this.updateModelBound();
+            this.setHighlighted(index, false);
+            return index;
+        }
+
+        /**
+         * Shows or hides a button highlight.
+         *
+         * @param index - The index of the highlight.
+         * @param highlighted - Whether the highlight should be shown.
+         */
+        void setHighlighted(int index, boolean highlighted)
+        {
+            int offset = index * 16;
+            float alpha = highlighted ? hilite.a : 0;
+            if (this.colors.get(offset + 3) == alpha)
+            {
+                return;
+            }
+            for (int i = 0; i < 4; i++)
+            {
+                this.colors.put(offset + i * 4, hilite.r);
+                this.colors.put(offset + i * 4 + 1, hilite.g);
+                this.colors.put(offset + i * 4 + 2, hilite.b);
+                this.colors.put(offset + i * 4 + 3, alpha);
+            }
+            this.mesh.getBuffer(VertexBuffer.Type.Color).setUpdateNeeded();
+            this.highlighted += highlighted ? 1 : -1;
+            this.setCullHint(this.highlighted > 0 ? CullHint.Dynamic :
+                             CullHint.Always);
+        }
     }
 
     protected Node gui;
     protected BitmapFont guiFont;
+    /**
+     * The shared GUI resources, held while the screen is attached.
+     */
+    protected GuiResources resources;
 
-    private Node[] gamepadCont;
-
-    private GamepadView[] gamepadView;
-    private Node[] gamepadHeaders;
+    /**
+     * Only the joystick currently being viewed has a view and labels. Every
+     * other joystick is tracked in the {@link #state state store} alone, and
+     * the view is refilled from there when switching tabs.
+     */
+    private Node gamepadCont;
+    private GamepadView gamepadView;
+    private Joystick viewedJoystick;
+    /**
+     * The gamepads in the tab bar, sorted by their index, and their tab
+     * buttons.
+     */
+    private final List<Joystick> tabs = new ArrayList<>();
+    private final List<Node> gamepadHeaders = new ArrayList<>();
+    /**
+     * Tab buttons of disconnected gamepads, by index, so that they can be
+     * reused when a gamepad connects at the same index.
+     */
+    private Node[] headerPool = new Node[0];
 
-    private BitmapText[][] labels;
+    /**
+     * The labels of the gamepad being viewed. Axis and button values are
+     * shown with {@link NumericReadout readouts}, and the rest with
+     * {@link BitmapText}.
+     */
+    private Spatial[] labels;
+    /**
+     * The joystick that the labels were created for.
+     */
+    private Joystick labelJoystick;
+    /**
+     * The labels of recently viewed gamepads, by
+     * {@link #getLayoutKey(Joystick) name and layout}, so that switching
+     * back to a gamepad or reconnecting it doesn't create them again.
+     */
+    private final Map<String, Spatial[]> labelCache =
+            new LinkedHashMap<String, Spatial[]>(16, 0.75F, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Spatial[]> eldest)
+                {
+                    return this.size() > LABEL_CACHE_SIZE;
+                }
+            };
+    /**
+     * The screen width the cached labels were laid out for.
+     */
+    private int labelWidth;
+    /**
+     * Which labels have a value waiting to be displayed. Labels are not
+     * changed as events come in, but refreshed on a schedule by
+     * {@link #refreshLabels(float)}.
+     */
+    private boolean[] labelDirty = new boolean[0];
+    private int dirtyLabelCount;
+    /**
+     * The label that the next refresh starts looking from, so that every
+     * label gets its turn when the budget runs out.
+     */
+    private int labelCursor;
+    private float labelInterval = 1F / DEFAULT_LABEL_RATE;
+    private float labelTimer;
+    private int labelBudget = 16;
+    private float stickInterval;
 
     private BitmapText refLabel;
 
-    private Map<JoystickAxis, Float> lastValues = new HashMap<>();
+    /**
+     * The latest state of every joystick. This also tracks which axes are
+     * resting within their dead zone.
+     */
+    private final JoystickStateStore state;
+
+    /**
+     * Joystick events are queued here as they come in and applied to the
+     * scene in {@link #update(float)}.
+     */
+    private final JoystickEventBuffer events = new JoystickEventBuffer();
+    private final JoystickEventBuffer.Handler eventHandler =
+            new JoystickEventBuffer.Handler()
+            {
+                @Override
+                public void onAxis(int joyId, int axisId, float value,
+                                   float rawValue, long time,
+                                   long eventTime)
+                {
+                    Joystick joy = JoystickEventBuffer.getJoystick(
+                            getApplication().getInputManager().getJoysticks(),
+                            joyId);
+                    JoystickAxis axis;
+                    if (joy != null)
+                    {
+                        axis = JoystickEventBuffer.getAxis(joy, axisId);
+                        if (axis != null)
+                        {
+                            applyAxisValue(axis, value, rawValue, time,
+                                    eventTime);
+                        }
+                    }
+                }
+
+                @Override
+                public void onButton(int joyId, int buttonId, boolean pressed,
+                                     long time, long eventTime)
+                {
+                    Joystick joy = JoystickEventBuffer.getJoystick(
+                            getApplication().getInputManager().getJoysticks(),
+                            joyId);
+                    JoystickButton button;
+                    if (joy != null)
+                    {
+                        button = JoystickEventBuffer.getButton(joy, buttonId);
+                        if (button != null)
+                        {
+                            applyButtonValue(button, pressed, time,
+                                    eventTime);
+                        }
+                    }
+                }
+            };
+    /**
+     * Collapses multiple events from the same axis into one per frame.
+     */
+    private final AxisEventCoalescer coalescer =
+            new AxisEventCoalescer(this.eventHandler);
+    private boolean coalesceAxes = true;
+    private LatencyMonitor latencyMonitor;
+    private GamepadAtlas gamepadAtlas;
+
+    /**
+     * Connection changes waiting to be applied, with the latest change for
+     * each joystick (true for connected).
+     */
+    private final Map<Joystick, Boolean> pendingConnections =
+            new LinkedHashMap<>();
+    private float connectionSettleTime = 0.25F;
+    private float connectionSettleTimer;
+
+    /**
+     * Creates a preview screen that records the joystick state to the
+     * {@link JoystickStateStore#getShared() shared store}.
+     */
+    public JoystickPreviewScreen()
+    {
+        this(JoystickStateStore.getShared());
+    }
+
+    /**
+     * Creates a preview screen.
+     *
+     * @param state - The store to record the joystick state to.
+     */
+    public JoystickPreviewScreen(JoystickStateStore state)
+    {
+        this.state = state;
+    }
+
+    @Override
+    public void stateAttached(AppStateManager stateManager)
+    {
+        super.stateAttached(stateManager);
+        this.resources = GuiResources
+                .acquire(stateManager.getApplication().getAssetManager());
+    }
+
+    @Override
+    public void stateDetached(AppStateManager stateManager)
+    {
+        super.stateDetached(stateManager);
+        this.resources.release();
+    }
 
     @Override
     public void initialize(Application app)
     {
         this.gui = new Node();
-        this.guiFont =
-                app.getAssetManager().loadFont("Interface/Fonts/Default.fnt");
+        this.guiFont = this.resources.getFont();
         this.refLabel = this.guiFont.createLabel("Axis X/Axis Y");
         this.gui.attachChild(this.refLabel);
 
@@ -597,107 +971,184 @@ public class JoystickPreviewScreen extends BaseAppState
     }
 
     /**
-     * Adds all the GUI elements to the screen.
+     * Adds all the GUI elements to the screen, and brings the tab bar in line
+     * with the gamepads known to the input manager.
      */
     private void updateGamepad()
     {
-        int mostButtons = 0;
-        Joystick joy;
-        int l = this.getApplication().getInputManager().getJoysticks().length;
+        Joystick[] joysticks =
+                this.getApplication().getInputManager().getJoysticks();
+        boolean found;
+        if (joysticks == null)
+        {
+            /*
+             * Joystick support is turned off in the application settings.
+             */
+            joysticks = new Joystick[0];
+        }
 
         /*
-         * Removes any existing gamepads.
+         * The view is only created once, and is reused for whichever gamepad
+         * is being viewed.
          */
-        if (this.gamepadCont != null)
+        if (this.gamepadView == null)
         {
-            for (Node cont : this.gamepadCont)
+            this.gamepadCont = new Node();
+            if (this.gamepadAtlas == null)
             {
-                if (cont != null)
-                {
-                    cont.removeFromParent();
-                }
+                this.gamepadAtlas = this.resources.getGamepadAtlas();
             }
+            this.gamepadView = new GamepadView(this,
+                    this.getApplication().getAssetManager(),
+                    this.gamepadAtlas, this.resources.getHighlightMaterial());
+            this.gamepadView.stickInterval = this.stickInterval;
+            this.gamepadView.setLocalTranslation(-128, -384, 0);
+            this.gamepadCont.attachChild(this.gamepadView);
         }
 
-        /*
-         * Removes the labels, just in case something changed and the
-         * previous ones are incompatible.
-         */
-        if (this.labels != null)
+        for (int i = this.tabs.size() - 1; i >= 0; i--)
         {
-            for (BitmapText[] cont : this.labels)
+            found = false;
+            for (Joystick joy : joysticks)
             {
-                for (BitmapText cont2 : cont)
+                if (joy == this.tabs.get(i))
                 {
-                    if (cont2 != null)
-                    {
-                        cont2.removeFromParent();
-                    }
+                    found = true;
+                    break;
                 }
             }
+            if (!found)
+            {
+                this.removeTab(i);
+            }
         }
-        /*
-         * Initialize the array of labels and gamepads.
-         */
-        for (int i = 0; i < l; i++)
-        {
-            joy = this.getApplication().getInputManager().getJoysticks()[i];
-            mostButtons = Math.max(joy.getAxisCount() + joy.getButtonCount(),
-                    mostButtons);
-        }
-        this.labels = new BitmapText[l][mostButtons * 2 + 3];
-        this.gamepadCont = new Node[this.getApplication().getInputManager()
-                .getJoysticks().length];
-        this.gamepadView =
-                new GamepadView[this.getApplication().getInputManager()
-                        .getJoysticks().length];
-
-        for (int i = 0; i < l; i++)
-        {
-            this.gamepadCont[i] = new Node();
-            this.gamepadView[i] = new GamepadView(this,
-                    this.getApplication().getAssetManager());
-            this.gamepadView[i].setLocalTranslation(-128, -384, 0);
-            this.gamepadCont[i].attachChild(this.gamepadView[i]);
-            if (i == 0)
+        for (Joystick joy : joysticks)
+        {
+            if (joy != null)
             {
-                this.gui.attachChild(this.gamepadCont[i]);
+                this.addTab(joy);
             }
         }
-
-        this.addButtons();
+        if (this.viewedJoystick == null && !this.tabs.isEmpty())
+        {
+            this.setViewedJoystick(this.tabs.get(0));
+        }
     }
 
     /**
-     * Adds the tab buttons used to switch between which gamepad is currently
-     * being viewed.
+     * Switches the view to display a different gamepad. The view is filled
+     * in from the latest state recorded for that gamepad.
+     *
+     * @param joy - The gamepad to view, or null to hide the view.
      */
-    private void addButtons()
+    private void setViewedJoystick(Joystick joy)
     {
-        int i, l;
+        int joyId;
+        float value;
+        this.viewedJoystick = joy;
+        this.gamepadView.reset();
+        if (joy == null)
+        {
+            this.clearLabels();
+            this.gamepadCont.removeFromParent();
+            return;
+        }
+        joyId = joy.getJoyId();
+        this.setLabels(joy);
+        for (JoystickAxis axis : joy.getAxes())
+        {
+            value = this.state.getAxisValue(joyId, axis.getAxisId());
+            if (value != 0)
+            {
+                this.gamepadView.setAxisValue(axis, value);
+            }
+        }
+        for (JoystickButton button : joy.getButtons())
+        {
+            if (this.state.isButtonDown(joyId, button.getButtonId()))
+            {
+                this.gamepadView.setButtonValue(button, true);
+            }
+        }
+        this.gui.attachChild(this.gamepadCont);
+    }
 
-        /*
-         * Clears out any old tab buttons.
-         */
-        if (this.gamepadHeaders != null)
+    /**
+     * Adds a tab button used to switch to a gamepad, unless the gamepad
+     * already has one. A gamepad that replaced another at the same index
+     * takes over its tab.
+     *
+     * @param joy - The gamepad to add.
+     */
+    private void addTab(Joystick joy)
+    {
+        int joyId = joy.getJoyId();
+        int index = 0;
+        boolean viewed = false;
+        Node header;
+        for (int i = 0, l = this.tabs.size(); i < l; i++)
         {
-            for (i = 0, l = this.gamepadHeaders.length; i < l; i++)
+            if (this.tabs.get(i).getJoyId() == joyId)
             {
-                this.gamepadHeaders[i].removeFromParent();
+                if (this.tabs.get(i) == joy)
+                {
+                    return;
+                }
+                viewed = this.tabs.get(i) == this.viewedJoystick;
+                this.removeTab(i);
+                break;
             }
         }
+        while (index < this.tabs.size() &&
+                this.tabs.get(index).getJoyId() < joyId)
+        {
+            index++;
+        }
 
-        l = this.gamepadCont.length;
-        this.gamepadHeaders = new Node[l];
-        for (i = 0, l = this.gamepadCont.length; i < l; i++)
+        if (joyId < this.headerPool.length && this.headerPool[joyId] != null)
+        {
+            header = this.headerPool[joyId];
+            this.headerPool[joyId] = null;
+        }
+        else
         {
-            this.gamepadHeaders[i] = GUIUtils.createButton(
-                    this.getApplication().getAssetManager(), this.guiFont,
+            header = GUIUtils.createButton(this.resources,
                     this.getApplication().getContext().getTouchInput() != null,
-                    "gamepad" + i, "Gamepad " +
-                            this.getApplication().getInputManager()
-                                    .getJoysticks()[i].getJoyId());
-            this.gui.attachChild(this.gamepadHeaders[i]);
+                    "gamepad" + joyId, "Gamepad " + joyId);
+        }
+        this.tabs.add(index, joy);
+        this.gamepadHeaders.add(index, header);
+        this.gui.attachChild(header);
+        if (viewed || this.viewedJoystick == null)
+        {
+            this.setViewedJoystick(joy);
+        }
+    }
+
+    /**
+     * Removes a gamepad from the tab bar. If it was being viewed, the first
+     * remaining gamepad is viewed instead.
+     *
+     * @param index - The position of the gamepad in the tab bar.
+     */
+    private void removeTab(int index)
+    {
+        Joystick joy = this.tabs.remove(index);
+        Node header = this.gamepadHeaders.remove(index);
+        int joyId = joy.getJoyId();
+        header.removeFromParent();
+        if (joyId >= 0)
+        {
+            if (joyId >= this.headerPool.length)
+            {
+                this.headerPool = Arrays.copyOf(this.headerPool, joyId + 1);
+            }
+            this.headerPool[joyId] = header;
+        }
+        if (joy == this.viewedJoystick)
+        {
+            this.setViewedJoystick(
+                    this.tabs.isEmpty() ? null : this.tabs.get(0));
         }
     }
 
@@ -738,9 +1189,335 @@ public class JoystickPreviewScreen extends BaseAppState
         this.getApplication().getInputManager()
                 .removeJoystickConnectionListener(this);
         this.getApplication().getInputManager().removeListener(this);
+        this.events.clear();
+        this.coalescer.clear();
     }
 
-    /**
+    @Override
+    public void update(float tpf)
+    {
+        super.update(tpf);
+        if (!this.pendingConnections.isEmpty())
+        {
+            this.connectionSettleTimer += tpf;
+            if (this.connectionSettleTimer >= this.connectionSettleTime)
+            {
+                this.applyConnections();
+            }
+        }
+        if (this.coalesceAxes)
+        {
+            this.events.drain(this.coalescer);
+            this.coalescer.flush();
+        }
+        else
+        {
+            this.events.drain(this.eventHandler);
+        }
+        this.refreshLabels(tpf);
+    }
+
+    /**
+     * Displays the latest values of labels whose values changed, once the
+     * label refresh interval has passed. No more than the label budget are
+     * refreshed each frame. If there are more than that, the rest are
+     * refreshed over the following frames, starting from where this frame
+     * stopped.
+     *
+     * @param tpf - Time per frame.
+     */
+    private void refreshLabels(float tpf)
+    {
+        int budget = this.labelBudget;
+        int length, index;
+        this.labelTimer = Math.min(this.labelTimer + tpf, this.labelInterval);
+        if (this.dirtyLabelCount == 0 || this.labels == null ||
+                this.labelTimer < this.labelInterval)
+        {
+            return;
+        }
+        length = this.labels.length;
+        index = this.labelCursor;
+        for (int i = 0; i < length && budget > 0; i++)
+        {
+            if (index >= length)
+            {
+                index = 0;
+            }
+            if (this.labelDirty[index])
+            {
+                this.labelDirty[index] = false;
+                this.dirtyLabelCount--;
+                this.refreshLabel(index);
+                budget--;
+            }
+            index++;
+        }
+        this.labelCursor = index;
+        if (this.dirtyLabelCount == 0)
+        {
+            this.labelTimer = 0;
+        }
+    }
+
+    /**
+     * Displays the latest value of a single value label.
+     *
+     * @param index - The index of the label.
+     */
+    private void refreshLabel(int index)
+    {
+        int joyId = this.labelJoystick.getJoyId();
+        int firstButtonIndex = 2 * this.labelJoystick.getAxisCount() + 1;
+        if (index < firstButtonIndex)
+        {
+            ((NumericReadout) this.labels[index]).setValue(
+                    this.state.getAxisValue(joyId, (index - 2) / 2));
+        }
+        else
+        {
+            ((NumericReadout) this.labels[index]).setValue(
+                    this.state.isButtonDown(joyId,
+                            (index - firstButtonIndex - 2) / 2));
+        }
+    }
+
+    /**
+     * Notes that the value shown by a label changed, so that it is refreshed
+     * on schedule.
+     *
+     * @param index - The index of the label.
+     * @return False if there is no value label at that index, such as for an
+     * axis or button ID that is larger than the number of axes or buttons.
+     */
+    private boolean markLabel(int index)
+    {
+        if (index < 0 || index >= this.labels.length ||
+                !(this.labels[index] instanceof NumericReadout))
+        {
+            return false;
+        }
+        if (!this.labelDirty[index])
+        {
+            this.labelDirty[index] = true;
+            this.dirtyLabelCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Sets how often the axis and button value labels are refreshed. Values
+     * that change more often than this only show their latest value. This
+     * is 15 times per second by default.
+     *
+     * @param hertz - The number of refreshes per second, or 0 to refresh
+     * every frame.
+     */
+    public void setLabelRefreshRate(float hertz)
+    {
+        this.labelInterval = hertz <= 0 ? 0 : 1F / hertz;
+    }
+
+    /**
+     * Obtains how often the axis and button value labels are refreshed.
+     *
+     * @return The number of refreshes per second, or 0 if they are refreshed
+     * every frame.
+     */
+    public float getLabelRefreshRate()
+    {
+        return this.labelInterval <= 0 ? 0 : 1F / this.labelInterval;
+    }
+
+    /**
+     * Sets the most value labels that may be refreshed in a single frame.
+     * This keeps the time spent on labels bounded however many of them
+     * change at once. Labels left over are refreshed on the following
+     * frames, taking turns so that none of them falls behind.
+     *
+     * @param labels - The number of labels per frame.
+     */
+    public void setLabelUpdateBudget(int labels)
+    {
+        this.labelBudget = Math.max(1, labels);
+    }
+
+    /**
+     * Obtains the most value labels that may be refreshed in a single frame.
+     *
+     * @return The number of labels per frame.
+     * @see #setLabelUpdateBudget(int)
+     */
+    public int getLabelUpdateBudget()
+    {
+        return this.labelBudget;
+    }
+
+    /**
+     * Sets how often the analog stick sprites are moved. By default, they
+     * are moved every frame.
+     *
+     * @param hertz - The number of moves per second, or 0 to move them every
+     * frame.
+     */
+    public void setStickRefreshRate(float hertz)
+    {
+        this.stickInterval = hertz <= 0 ? 0 : 1F / hertz;
+        if (this.gamepadView != null)
+        {
+            this.gamepadView.stickInterval = this.stickInterval;
+        }
+    }
+
+    /**
+     * Obtains how often the analog stick sprites are moved.
+     *
+     * @return The number of moves per second, or 0 if they are moved every
+     * frame.
+     */
+    public float getStickRefreshRate()
+    {
+        return this.stickInterval <= 0 ? 0 : 1F / this.stickInterval;
+    }
+
+    /**
+     * Applies all the connection changes that came in since the last time,
+     * and lays out the screen once for all of them.
+     */
+    private void applyConnections()
+    {
+        int index;
+        for (Map.Entry<Joystick, Boolean> change : this.pendingConnections
+                .entrySet())
+        {
+            if (change.getValue())
+            {
+                this.addTab(change.getKey());
+            }
+            else
+            {
+                index = this.tabs.indexOf(change.getKey());
+                if (index >= 0)
+                {
+                    this.removeTab(index);
+                }
+            }
+        }
+        this.pendingConnections.clear();
+        this.connectionSettleTimer = 0;
+        this.resize();
+    }
+
+    /**
+     * Sets how long the screen waits for joystick connections to settle
+     * before updating the tab bar. The wait starts with the first change,
+     * and every connection and disconnection within it is applied at once,
+     * so a hub full of gamepads being plugged in only updates the screen
+     * once. This is a quarter of a second by default.
+     *
+     * @param seconds - The time to wait, or 0 to apply changes on the next
+     * frame.
+     */
+    public void setConnectionSettleTime(float seconds)
+    {
+        this.connectionSettleTime = Math.max(0, seconds);
+    }
+
+    /**
+     * Obtains how long the screen waits for joystick connections to settle
+     * before updating the tab bar.
+     *
+     * @return The time to wait, in seconds.
+     * @see #setConnectionSettleTime(float)
+     */
+    public float getConnectionSettleTime()
+    {
+        return this.connectionSettleTime;
+    }
+
+    /**
+     * Sets whether axis events are coalesced. When enabled, only the newest
+     * value of each axis is displayed each frame, instead of going through
+     * every intermediate value. This is enabled by default.
+     *
+     * @param coalesceAxes - Whether or not to coalesce axis events.
+     */
+    public void setCoalesceAxisEvents(boolean coalesceAxes)
+    {
+        if (!coalesceAxes)
+        {
+            this.coalescer.flush();
+        }
+        this.coalesceAxes = coalesceAxes;
+    }
+
+    /**
+     * Checks whether axis events are coalesced.
+     *
+     * @return True if only the newest value of each axis is displayed each
+     * frame.
+     * @see #setCoalesceAxisEvents(boolean)
+     */
+    public boolean isCoalesceAxisEvents()
+    {
+        return this.coalesceAxes;
+    }
+
+    /**
+     * Obtains the store that this screen records the joystick state to.
+     *
+     * @return The joystick state store.
+     */
+    public JoystickStateStore getStateStore()
+    {
+        return this.state;
+    }
+
+    /**
+     * Sets the art used to draw the gamepad. This must be called before the
+     * screen is attached. By default, the
+     * {@link GuiResources#getGamepadAtlas() default art} is used.
+     *
+     * @param gamepadAtlas - The gamepad art.
+     */
+    public void setGamepadAtlas(GamepadAtlas gamepadAtlas)
+    {
+        this.gamepadAtlas = gamepadAtlas;
+    }
+
+    /**
+     * Sets a monitor to report display changes to, so that the time it takes
+     * for input to show up on screen can be measured.
+     *
+     * @param latencyMonitor - The monitor to use, or null to stop reporting.
+     */
+    public void setLatencyMonitor(LatencyMonitor latencyMonitor)
+    {
+        this.latencyMonitor = latencyMonitor;
+    }
+
+    /**
+     * Obtains the monitor that display changes are reported to.
+     *
+     * @return The latency monitor, or null if there isn't one.
+     */
+    public LatencyMonitor getLatencyMonitor()
+    {
+        return this.latencyMonitor;
+    }
+
+    /**
+     * Obtains the number of axis events that were skipped because a newer
+     * value for the same axis arrived within the same frame.
+     *
+     * @return The number of collapsed events since this screen was created.
+     */
+    public long getCoalescedEventCount()
+    {
+        return this.coalescer.getCollapsedCount();
+    }
+
+    /**
      * Updates the values of the gamepad labels as buttons and axis are
      * manipulated.
      *
@@ -748,164 +1525,226 @@ public class JoystickPreviewScreen extends BaseAppState
      */
     private void setLabels(Joystick joy)
     {
+        int keyIndex;
+        BitmapText buttonKey;
         int offset =
                 this.getApplication().getContext().getTouchInput() != null ?
                 10 :
                 0;
+        String key = this.getLayoutKey(joy);
         /*
          * Removes the old labels.
          */
-        if (labels != null)
+        this.clearLabels();
+        this.labelJoystick = joy;
+        if (this.labelWidth != (int) this.getScreenSize().x)
         {
-            for (BitmapText label : this.labels[joy.getJoyId()])
-            {
-                if (label != null)
-                {
-                    label.removeFromParent();
-                }
-            }
+            this.labelCache.clear();
+            this.labelWidth = (int) this.getScreenSize().x;
         }
-        //		this.labels = new Label[joy.getJoyId()][(joy.getAxisCount() +
-        //		joy.getButtonCount()) * 2 + 1];
+        this.labels = this.labelCache.get(key);
         if (this.labels != null)
         {
+            this.prepareLabelDirty();
+            this.reuseLabels(joy);
+            return;
+        }
+        this.labels = new Spatial[
+                (joy.getAxisCount() + joy.getButtonCount()) * 2 + 3];
+        this.labelCache.put(key, this.labels);
+        this.prepareLabelDirty();
+        /*
+         * The name of the gamepad.
+         */
+//        this.labels[0] = this.guiFont.createLabel(
+//                "Gamepad " + joy.getJoyId() + ": " + joy.getName());
+        this.labels[0] = this.guiFont.createLabel(joy.getName());
+        this.labels[0].setLocalTranslation(20, -25 - offset, 0);
+        this.gamepadCont.attachChild(this.labels[0]);
+        /*
+         * The key for the axis. Each of the axis rows will display the
+         * index of the axis, its given name, its logical ID after
+         * joystick remapping has occurred, and the axis index again. The
+         * first axis takes the slot after the name, so the key goes in the
+         * spare slot at the end.
+         * TODO - Whenever I add the " Gamepad X: " part to the previous
+         *  label, this one displays all funky. Also, the lag gets really
+         *  bad.
+         */
+        keyIndex = this.labels.length - 1;
+        this.labels[keyIndex] = this.guiFont
+                .createLabel("Axis Index: Axis Name (logical ID, axis ID)");
+        this.labels[keyIndex].setLocalTranslation(20, -50 - offset, 0);
+        this.gamepadCont.attachChild(this.labels[keyIndex]);
+        /*
+         * Loop through all the axes.
+         */
+        for (int i = 0; i < joy.getAxisCount(); i++)
+        {
+            JoystickAxis axis = joy.getAxes().get(i);
             /*
-             * The name of the gamepad.
-             */
-//            this.labels[joy.getJoyId()][0] = this.guiFont.createLabel(
-//                    "Gamepad " + joy.getJoyId() + ": " + joy.getName());
-            this.labels[joy.getJoyId()][0] =
-                    this.guiFont.createLabel(joy.getName());
-            this.labels[joy.getJoyId()][0].setLocalTranslation(20,
-                    -25 - offset,
-                    0);
-            this.gamepadCont[joy.getJoyId()]
-                    .attachChild(this.labels[joy.getJoyId()][0]);
-            /*
-             * The key for the axis. Each of the axis rows will display the
-             * index of the axis, its given name, its logical ID after
-             * joystick remapping has occurred, and the axis index again.
-             * TODO - Whenever I add the " Gamepad X: " part to the previous
-             *  label, this one displays all funky. Also, the lag gets really
-             *  bad.
+             * The name and information of the axis.
              */
-            this.labels[joy.getJoyId()][1] = this.guiFont
-                    .createLabel("Axis Index: Axis Name (logical ID, axis ID)");
-            this.labels[joy.getJoyId()][1].setLocalTranslation(20,
-                    -50 - offset,
-                    0);
-            this.gamepadCont[joy.getJoyId()]
-                    .attachChild(this.labels[joy.getJoyId()][1]);
+            BitmapText label = this.guiFont.createLabel(
+                    (i) + ": " + axis.getName() + " (" +
+                            axis.getLogicalId() + ", " +
+                            axis.getAxisId() + "): ");
+            label.setLocalTranslation(20, -25 * (i + 3) - offset, 0);
+            this.labels[i * 2 + 1] = label;
+
             /*
-             * Loop through all the axes.
+             * The current value of the axis.
              */
-            for (int i = 0; i < joy.getAxisCount(); i++)
-            {
-                JoystickAxis axis = joy.getAxes().get(i);
-                try
-                {
-                    /*
-                     * The name and information of the axis.
-                     */
-                    BitmapText label = this.guiFont.createLabel(
-                            (i) + ": " + axis.getName() + " (" +
-                                    axis.getLogicalId() + ", " +
-                                    axis.getAxisId() + "): ");
-                    label.setLocalTranslation(20, -25 * (i + 3) - offset, 0);
-                    this.labels[joy.getJoyId()][i * 2 + 1] = label;
-
-                    /*
-                     * The current value of the axis.
-                     */
-                    BitmapText label2 = this.guiFont.createLabel("0.0");
-                    label2.setLocalTranslation(label.getLocalTranslation()
-                            .add(label.getLineWidth(), 0, 0));
-                    this.labels[joy.getJoyId()][i * 2 + 2] = label2;
-
-                    this.gamepadCont[joy.getJoyId()].attachChild(label);
-                    this.gamepadCont[joy.getJoyId()].attachChild(label2);
-                }
-                catch (ArrayIndexOutOfBoundsException aie)
-                {
-                    logger.error(
-                            "Couldn't find index for axis (" + axis.getName() +
-                                    ", " + axis.getLogicalId() + ", " +
-                                    axis.getAxisId() + ")", aie);
-//                    throw new RuntimeException(
-//                            "Couldn't find index for button " + i + " (" +
-//                            axis.getName() + ", " +
-//                            axis.getLogicalId() + ", " +
-//                            axis.getAxisId() + ")", aie);
-                }
-            }
+            NumericReadout label2 =
+                    new NumericReadout(this.guiFont, AXIS_READOUT_WIDTH);
+            label2.setValue(0);
+            label2.setLocalTranslation(label.getLocalTranslation()
+                    .add(label.getLineWidth(), 0, 0));
+            this.labels[i * 2 + 2] = label2;
+
+            this.gamepadCont.attachChild(label);
+            this.gamepadCont.attachChild(label2);
+        }
 
-            int firstButtonIndex = 2 * joy.getAxisCount() + 1;
+        int firstButtonIndex = 2 * joy.getAxisCount() + 1;
+        /*
+         * The key for the buttons. Each of the button rows will display the
+         * index of the button offset by the number of axes we had, its
+         * given name, its logical ID after
+         * joystick remapping has occurred, and the actual button index.
+         */
+        buttonKey = this.guiFont.createLabel(
+                "Button Index: Button Name (logical ID, button ID)");
+        buttonKey.setLocalTranslation(
+                this.getScreenSize().x - buttonKey.getLineWidth(), -50 - offset,
+                0);
+        this.labels[firstButtonIndex] = buttonKey;
+        this.gamepadCont.attachChild(buttonKey);
+
+        /*
+         * Loop through all the buttons.
+         */
+        for (int i = 0; i < joy.getButtonCount(); i++)
+        {
+            JoystickButton button = joy.getButtons().get(i);
             /*
-             * The key for the buttons. Each of the button rows will display the
-             * index of the button offset by the number of axes we had, its
-             * given name, its logical ID after
-             * joystick remapping has occurred, and the actual button index.
+             * The current value of the button. We create this first
+             since the name will be placed in relation to this, due
+             to it being right-justified.
              */
-            this.labels[joy.getJoyId()][firstButtonIndex] = this.guiFont
-                    .createLabel(
-                            "Button Index: Button Name (logical ID, button " +
-                                    "ID)");
-            this.labels[joy.getJoyId()][firstButtonIndex].setLocalTranslation(
-                    this.getScreenSize().x -
-                            this.labels[joy.getJoyId()][firstButtonIndex]
-                                    .getLineWidth(), -50 - offset, 0);
-            this.gamepadCont[joy.getJoyId()]
-                    .attachChild(this.labels[joy.getJoyId()][firstButtonIndex]);
+            NumericReadout label2 =
+                    new NumericReadout(this.guiFont, BUTTON_READOUT_WIDTH);
+            label2.setRightAligned(true);
+            label2.setValue(false);
+            label2.setLocalTranslation(
+                    this.getScreenSize().x - label2.getLineWidth(),
+                    -25 * (i + 3) - offset, 0);
 
             /*
-             * Loop through all the buttons.
+             * The name and information for the button.
              */
-            for (int i = 0; i < joy.getButtonCount(); i++)
+            BitmapText label = this.guiFont.createLabel(
+                    (i + joy.getAxisCount()) + ": " + button.getName() +
+                            " (" + button.getLogicalId() + ", " +
+                            button.getButtonId() + "): ");
+            label.setLocalTranslation(label2.getLocalTranslation()
+                    .add(-label.getLineWidth(), 0, 0));
+
+            this.labels[2 * (i + joy.getAxisCount()) + 2] = label;
+            this.labels[2 * (i + joy.getAxisCount()) + 3] = label2;
+
+            this.gamepadCont.attachChild(label);
+            this.gamepadCont.attachChild(label2);
+        }
+    }
+
+    /**
+     * Makes sure there is a dirty flag for every label, and clears them.
+     */
+    private void prepareLabelDirty()
+    {
+        if (this.labelDirty.length < this.labels.length)
+        {
+            this.labelDirty = new boolean[this.labels.length];
+        }
+        else
+        {
+            Arrays.fill(this.labelDirty, false);
+        }
+        this.dirtyLabelCount = 0;
+        this.labelCursor = 0;
+    }
+
+    /**
+     * Attaches a cached set of labels, and resets their values.
+     *
+     * @param joy - The gamepad the labels are for.
+     */
+    private void reuseLabels(Joystick joy)
+    {
+        int axisCount = joy.getAxisCount();
+        for (Spatial label : this.labels)
+        {
+            if (label != null)
             {
-                JoystickButton button = joy.getButtons().get(i);
-                try
-                {
-                    /*
-                     * The current value of the button. We create this first
-                     since the name will be placed in relation to this, due
-                     to it being right-justified.
-                     */
-                    BitmapText label2 = this.guiFont.createLabel("false");
-                    label2.setLocalTranslation(
-                            this.getScreenSize().x - label2.getLineWidth(),
-                            -25 * (i + 3) - offset, 0);
-
-                    /*
-                     * The name and information for the button.
-                     */
-                    BitmapText label = this.guiFont.createLabel(
-                            (i + joy.getAxisCount()) + ": " + button.getName() +
-                                    " (" + button.getLogicalId() + ", " +
-                                    button.getButtonId() + "): ");
-                    label.setLocalTranslation(label2.getLocalTranslation()
-                            .add(-label.getLineWidth(), 0, 0));
-
-                    this.labels[joy.getJoyId()][2 * (i + joy.getAxisCount()) +
-                            2] = label;
-                    this.labels[joy.getJoyId()][2 * (i + joy.getAxisCount()) +
-                            3] = label2;
-
-                    this.gamepadCont[joy.getJoyId()].attachChild(label);
-                    this.gamepadCont[joy.getJoyId()].attachChild(label2);
-                }
-                catch (ArrayIndexOutOfBoundsException aie)
+                this.gamepadCont.attachChild(label);
+            }
+        }
+        for (int i = 0; i < axisCount; i++)
+        {
+            ((NumericReadout) this.labels[i * 2 + 2]).setValue(0);
+        }
+        for (int i = 0, l = joy.getButtonCount(); i < l; i++)
+        {
+            ((NumericReadout) this.labels[2 * (i + axisCount) + 3])
+                    .setValue(false);
+        }
+    }
+
+    /**
+     * Describes the name and layout of a gamepad. Gamepads with the same
+     * description can share labels.
+     *
+     * @param joy - The gamepad to describe.
+     * @return The description.
+     */
+    private String getLayoutKey(Joystick joy)
+    {
+        StringBuilder key = new StringBuilder(joy.getName());
+        for (JoystickAxis axis : joy.getAxes())
+        {
+            key.append('\n').append(axis.getAxisId()).append(':')
+                    .append(axis.getName()).append(':')
+                    .append(axis.getLogicalId());
+        }
+        key.append('\n');
+        for (JoystickButton button : joy.getButtons())
+        {
+            key.append('\n').append(button.getButtonId()).append(':')
+                    .append(button.getName()).append(':')
+                    .append(button.getLogicalId());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Removes the labels of the gamepad being viewed.
+     */
+    private void clearLabels()
+    {
+        if (this.labels != null)
+        {
+            for (Spatial label : this.labels)
+            {
+                if (label != null)
                 {
-                    logger.error("Couldn't find index for button (" +
-                            button.getName() + ", " + button.getLogicalId() +
-                            ", " + button.getButtonId() + ")", aie);
-//                    throw new RuntimeException(
-//                            "Couldn't find index for button " + i + " (" +
-//                            button.getName() + ", " +
-//                            button.getLogicalId() + ", " +
-//                            button.getButtonId() + ")", aie);
+                    label.removeFromParent();
                 }
             }
         }
+        this.labels = null;
+        this.labelJoystick = null;
+        this.dirtyLabelCount = 0;
     }
 
     /**
@@ -927,68 +1766,121 @@ public class JoystickPreviewScreen extends BaseAppState
     protected void resize(int width, int height)
     {
         this.gui.setLocalTranslation(0, this.getScreenSize().y, 0);
-        if (this.gamepadHeaders != null)
+        Node button;
+        for (int i = 0, l = this.gamepadHeaders.size(); i < l; i++)
         {
-            Node button;
-            for (int i = 0, l = this.gamepadHeaders.length; i < l; i++)
-            {
-                button = this.gamepadHeaders[i];
-                button.setLocalTranslation((this.getApplication()
-                                                    .getContext()
-                                                    .getTouchInput() != null ?
-                                            192 :
-                                            128) * i, 0, 0);
-            }
+            button = this.gamepadHeaders.get(i);
+            button.setLocalTranslation((this.getApplication()
+                                                .getContext()
+                                                .getTouchInput() != null ?
+                                        192 :
+                                        128) * i, 0, 0);
         }
         if (this.gamepadView != null)
         {
-            for (GamepadView view : this.gamepadView)
-            {
-                view.setLocalTranslation(width / 2F - 256F, -512F, 0);
-            }
+            this.gamepadView.setLocalTranslation(width / 2F - 256F, -512F, 0);
         }
         this.refLabel.setLocalTranslation(
                 (width - this.refLabel.getLineWidth()) / 2F, 0, 0);
     }
 
+    /**
+     * Queues the axis event so that it can be displayed on the next update.
+     * Events consumed by an earlier listener, such as a
+     * {@link NoisyAxisFilter}, are ignored.
+     *
+     * @param evt - Input event data.
+     */
     @Override
     public void onJoyAxisEvent(JoyAxisEvent evt)
+    {
+        if (!evt.isConsumed())
+        {
+            this.events.offerAxis(evt.getJoyIndex(), evt.getAxisIndex(),
+                    evt.getValue(), evt.getRawValue(), System.nanoTime(),
+                    evt.getTime());
+        }
+    }
+
+    /**
+     * Queues the button event so that it can be displayed on the next update.
+     *
+     * @param evt - Input event data.
+     */
+    @Override
+    public void onJoyButtonEvent(JoyButtonEvent evt)
+    {
+        if (!evt.isConsumed())
+        {
+            this.events.offerButton(evt.getJoyIndex(), evt.getButtonIndex(),
+                    evt.isPressed(), System.nanoTime(), evt.getTime());
+        }
+    }
+
+    /**
+     * Displays a new axis value.
+     *
+     * @param axis - The axis that changed.
+     * @param value - The new value of the axis.
+     * @param rawValue - The value of the axis as reported by the device.
+     * @param time - When the event was received.
+     * @param eventTime - When the input backend says the event happened, or
+     * 0 if it didn't say.
+     */
+    private void applyAxisValue(JoystickAxis axis, float value,
+                                float rawValue, long time, long eventTime)
     {
         //		setViewedJoystick(evt.getAxis().getJoystick());
-//        this.gamepadView[evt.getJoyIndex()]
-//                .setAxisValue(evt.getAxis(), evt.getValue());
-        Float last = this.lastValues.remove(evt.getAxis());
-        float value = evt.getValue();
+        int joyId = axis.getJoystick().getJoyId();
 
         // Check the axis dead zone.  InputManager normally does this
         // by default but not for raw events like we get here.
         float effectiveDeadZone = Math.max(this.getApplication().
-                getInputManager().getAxisDeadZone(), evt.
-                getAxis().getDeadZone());
-        if (Math.abs(value) < effectiveDeadZone)
+                getInputManager().getAxisDeadZone(), axis.getDeadZone());
+        if (!this.state.setAxisValue(joyId, axis.getAxisId(), value, rawValue,
+                effectiveDeadZone))
         {
-            if (last == null)
-            {
-                // Just skip the event
-                return;
-            }
-            // Else set the value to 0
-            lastValues.remove(evt.getAxis());
-            value = 0;
+            // The axis was already resting, so just skip the event
+            return;
         }
-        this.gamepadView[evt.getJoyIndex()].setAxisValue(evt.getAxis(), value);
-        if (value != 0)
+        InputTrace.getShared().traceAxis(axis,
+                this.state.getAxisValue(joyId, axis.getAxisId()));
+        if (axis.getJoystick() == this.viewedJoystick)
         {
-            lastValues.put(evt.getAxis(), value);
+            this.gamepadView.setAxisValue(axis,
+                    this.state.getAxisValue(joyId, axis.getAxisId()));
+            if (this.latencyMonitor != null)
+            {
+                this.latencyMonitor.record(joyId, time, eventTime);
+            }
         }
     }
 
-    @Override
-    public void onJoyButtonEvent(JoyButtonEvent evt)
+    /**
+     * Displays a new button state.
+     *
+     * @param button - The button that changed.
+     * @param pressed - Whether or not the button is pressed.
+     * @param time - When the event was received.
+     * @param eventTime - When the input backend says the event happened, or
+     * 0 if it didn't say.
+     */
+    private void applyButtonValue(JoystickButton button, boolean pressed,
+                                  long time, long eventTime)
     {
         //		setViewedJoystick(evt.getButton().getJoystick());
-        this.gamepadView[evt.getJoyIndex()]
-                .setButtonValue(evt.getButton(), evt.isPressed());
+        int joyId = button.getJoystick().getJoyId();
+        boolean changed = this.state.setButtonValue(joyId,
+                button.getButtonId(), pressed);
+        InputTrace.getShared().traceButton(button, pressed);
+        if (button.getJoystick() == this.viewedJoystick)
+        {
+            this.gamepadView.setButtonValue(button, pressed);
+            if (changed && this.latencyMonitor != null)
+            {
+                this.latencyMonitor.record(joyId, time, eventTime);
+            }
+        }
     }
 
     @Override
@@ -1016,15 +1908,14 @@ public class JoystickPreviewScreen extends BaseAppState
                 if (buttonId.startsWith("gamepad"))
                 {
                     gamepad = Integer.parseInt(buttonId.substring(7));
-                    for (int i = 0, l = this.gamepadCont.length; i < l; i++)
+                    for (Joystick joy : this.tabs)
                     {
-                        if (i == gamepad)
+                        if (joy.getJoyId() == gamepad &&
+                                joy != this.viewedJoystick)
                         {
-                            this.gui.attachChild(this.gamepadCont[i]);
-                        }
-                        else
-                        {
-                            this.gamepadCont[i].removeFromParent();
+                            this.setViewedJoystick(joy);
+                            this.resize();
+                            break;
                         }
                     }
                 }
@@ -1033,43 +1924,14 @@ public class JoystickPreviewScreen extends BaseAppState
     }
 
     /**
-     * Displays which button is which as the user hovers over the button. TODO -
-     * Doesn't trigger.
+     * Highlights the tab button under the cursor.
      *
      * @param evt - Input event data.
      */
     @Override
     public void onMouseMotionEvent(MouseMotionEvent evt)
     {
-//        ButtonView button = null;
-//        CollisionResults results = this.checkMouse(evt.getX(), evt.getY());
-//        if (results.size() > 0)
-//        {
-//            for (CollisionResult result : results)
-//            {
-//                if (result.getGeometry().getUserData("view") != null)
-//                {
-//                    if (result.getGeometry()
-//                            .getUserData("view") instanceof ButtonView)
-//                    {
-//                        button = result.getGeometry().getUserData("view");
-//                        break;
-//                    }
-//                }
-//            }
-//        }
-//        if (button != null)
-//        {
-//            this.refLabel.setText(button.getName().substring(8));
-//            this.resize();
-//        }
-//        else
-//        {
-//            if (this.refLabel.getText().length() > 0)
-//            {
-//                this.refLabel.setText("");
-//            }
-//        }
+        GUIUtils.handleHover(this.gui, evt.getX(), evt.getY());
     }
 
     /**
@@ -1092,23 +1954,33 @@ public class JoystickPreviewScreen extends BaseAppState
     {
     }
 
+    /**
+     * Queues the new joystick to be added to the tab bar once connections
+     * settle.
+     *
+     * @param joystick - The joystick that was connected.
+     */
     @Override
     public void onConnected(Joystick joystick)
     {
-        this.updateGamepad();
-        this.resize();
+        this.state.reset(joystick.getJoyId());
+        this.pendingConnections.put(joystick, true);
     }
 
+    /**
+     * Queues the joystick to be removed from the tab bar once connections
+     * settle.
+     *
+     * @param joystick - The joystick that was disconnected.
+     */
     @Override
     public void onDisconnected(Joystick joystick)
     {
         /*
-         * TODO - This callback will fire before the joystick is actually
-         *  removed. This is helpful at times, but it does mean we will have a
-         *  blank slot because this code still thinks we have the one that was
-         *  removed.
+         * This callback fires before the joystick is removed from the input
+         * manager, so we go by our own list of tabs instead.
          */
-        this.updateGamepad();
-        this.resize();
+        this.state.reset(joystick.getJoyId());
+        this.pendingConnections.put(joystick, false);
     }
 }
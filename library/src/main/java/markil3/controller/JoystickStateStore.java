@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+
+import java.util.Arrays;
+
+/**
+ * Holds the latest known state of every joystick axis and button. Axes are
+ * stored in a dense float table per joystick, indexed by
+ * {@link JoystickAxis#getAxisId()}, and buttons in a bitset per joystick,
+ * indexed by {@link JoystickButton#getButtonId()}, so that reading and
+ * writing the state never allocates.
+ * <p>The screens in this library write to the {@link #getShared() shared
+ * store} as they process input, and games can read from it at any time. The
+ * store is not thread-safe, and should only be used from the render
+ * thread.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class JoystickStateStore
+{
+    private static final JoystickStateStore SHARED = new JoystickStateStore();
+
+    private float[][] axes = new float[0][];
+    private float[][] rawAxes = new float[0][];
+    private long[][] buttons = new long[0][];
+
+    /**
+     * Obtains the store used by the screens by default.
+     *
+     * @return The shared store.
+     */
+    public static JoystickStateStore getShared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Records a new axis value, applying a dead zone to it.
+     *
+     * @param joyId - The index of the joystick.
+     * @param axisId - The ID of the axis.
+     * @param value - The new value of the axis after remapping.
+     * @param rawValue - The new value of the axis as reported by the device.
+     * @param deadZone - Values closer to zero than this will be stored as
+     * zero.
+     * @return False if the axis was already at rest and remains within the
+     * dead zone, meaning the change is not worth displaying. True otherwise.
+     */
+    public boolean setAxisValue(int joyId, int axisId, float value,
+                                float rawValue, float deadZone)
+    {
+        float last;
+        if (joyId < 0 || axisId < 0)
+        {
+            return false;
+        }
+        this.ensureAxis(joyId, axisId);
+        if (Math.abs(value) < deadZone)
+        {
+            value = 0;
+        }
+        last = this.axes[joyId][axisId];
+        this.axes[joyId][axisId] = value;
+        this.rawAxes[joyId][axisId] = rawValue;
+        return value != 0 || last != 0;
+    }
+
+    /**
+     * Obtains the last value recorded for an axis, with the dead zone
+     * applied.
+     *
+     * @param joyId - The index of the joystick.
+     * @param axisId - The ID of the axis.
+     * @return The axis value, or zero if nothing was recorded for it.
+     */
+    public float getAxisValue(int joyId, int axisId)
+    {
+        if (joyId < 0 || joyId >= this.axes.length || axisId < 0 ||
+                axisId >= this.axes[joyId].length)
+        {
+            return 0;
+        }
+        return this.axes[joyId][axisId];
+    }
+
+    /**
+     * Obtains the last value recorded for an axis, with the dead zone
+     * applied.
+     *
+     * @param axis - The axis to check.
+     * @return The axis value, or zero if nothing was recorded for it.
+     */
+    public float getAxisValue(JoystickAxis axis)
+    {
+        return this.getAxisValue(axis.getJoystick().getJoyId(),
+                axis.getAxisId());
+    }
+
+    /**
+     * Obtains the last value the device reported for an axis, without any
+     * remapping or dead zone.
+     *
+     * @param joyId - The index of the joystick.
+     * @param axisId - The ID of the axis.
+     * @return The raw axis value, or zero if nothing was recorded for it.
+     */
+    public float getRawAxisValue(int joyId, int axisId)
+    {
+        if (joyId < 0 || joyId >= this.rawAxes.length || axisId < 0 ||
+                axisId >= this.rawAxes[joyId].length)
+        {
+            return 0;
+        }
+        return this.rawAxes[joyId][axisId];
+    }
+
+    /**
+     * Records a new button state.
+     *
+     * @param joyId - The index of the joystick.
+     * @param buttonId - The ID of the button.
+     * @param pressed - Whether or not the button is pressed.
+     * @return True if the state of the button changed.
+     */
+    public boolean setButtonValue(int joyId, int buttonId, boolean pressed)
+    {
+        long bit;
+        long[] bits;
+        boolean wasPressed;
+        if (joyId < 0 || buttonId < 0)
+        {
+            return false;
+        }
+        this.ensureButton(joyId, buttonId);
+        bits = this.buttons[joyId];
+        bit = 1L << (buttonId & 63);
+        wasPressed = (bits[buttonId >>> 6] & bit) != 0;
+        if (pressed)
+        {
+            bits[buttonId >>> 6] |= bit;
+        }
+        else
+        {
+            bits[buttonId >>> 6] &= ~bit;
+        }
+        return pressed != wasPressed;
+    }
+
+    /**
+     * Checks whether a button was last recorded as pressed.
+     *
+     * @param joyId - The index of the joystick.
+     * @param buttonId - The ID of the button.
+     * @return True if the button is pressed, false if it is released or
+     * nothing was recorded for it.
+     */
+    public boolean isButtonDown(int joyId, int buttonId)
+    {
+        if (joyId < 0 || joyId >= this.buttons.length || buttonId < 0 ||
+                (buttonId >>> 6) >= this.buttons[joyId].length)
+        {
+            return false;
+        }
+        return (this.buttons[joyId][buttonId >>> 6] &
+                (1L << (buttonId & 63))) != 0;
+    }
+
+    /**
+     * Checks whether a button was last recorded as pressed.
+     *
+     * @param button - The button to check.
+     * @return True if the button is pressed, false if it is released or
+     * nothing was recorded for it.
+     */
+    public boolean isButtonDown(JoystickButton button)
+    {
+        return this.isButtonDown(button.getJoystick().getJoyId(),
+                button.getButtonId());
+    }
+
+    /**
+     * Resets every axis and button of a joystick to its resting state. This
+     * is useful when the joystick at that index was disconnected or replaced.
+     *
+     * @param joyId - The index of the joystick.
+     */
+    public void reset(int joyId)
+    {
+        if (joyId >= 0 && joyId < this.axes.length)
+        {
+            Arrays.fill(this.axes[joyId], 0);
+            Arrays.fill(this.rawAxes[joyId], 0);
+        }
+        if (joyId >= 0 && joyId < this.buttons.length)
+        {
+            Arrays.fill(this.buttons[joyId], 0);
+        }
+    }
+
+    private void ensureAxis(int joyId, int axisId)
+    {
+        int count = this.axes.length;
+        if (joyId >= count)
+        {
+            this.axes = Arrays.copyOf(this.axes, joyId + 1);
+            this.rawAxes = Arrays.copyOf(this.rawAxes, joyId + 1);
+            for (int i = count; i <= joyId; i++)
+            {
+                this.axes[i] = new float[0];
+                this.rawAxes[i] = new float[0];
+            }
+        }
+        count = this.axes[joyId].length;
+        if (axisId >= count)
+        {
+            count = Math.max(axisId + 1, 8);
+            this.axes[joyId] = Arrays.copyOf(this.axes[joyId], count);
+            this.rawAxes[joyId] = Arrays.copyOf(this.rawAxes[joyId], count);
+        }
+    }
+
+    private void ensureButton(int joyId, int buttonId)
+    {
+        int count = this.buttons.length;
+        if (joyId >= count)
+        {
+            this.buttons = Arrays.copyOf(this.buttons, joyId + 1);
+            for (int i = count; i <= joyId; i++)
+            {
+                this.buttons[i] = new long[1];
+            }
+        }
+        if ((buttonId >>> 6) >= this.buttons[joyId].length)
+        {
+            this.buttons[joyId] =
+                    Arrays.copyOf(this.buttons[joyId], (buttonId >>> 6) + 1);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.font.BitmapText;
+
+import java.util.Arrays;
+
+/**
+ * Measures how long it takes for joystick input to show up on screen. A
+ * screen such as {@link JoystickPreviewScreen} {@link #record(int, long,
+ * long) reports} each event that changed its display, along with the time
+ * the event was received and the time the input backend gave it, and the
+ * monitor works out the latency once the frame with the change has been
+ * rendered.
+ * <p>The latency is split in two. The application latency runs from when
+ * the event reached the screen until the frame showing it was rendered. The
+ * backend latency runs from the event's own timestamp until it reached the
+ * screen, and is what differs between input backends such as LWJGL 2 and
+ * LWJGL 3. Each backend stamps events with its own clock, so the offset
+ * between that clock and {@link System#nanoTime()} is estimated for each
+ * joystick as the smallest gap seen between the two. The backend latency is
+ * therefore measured from the fastest delivery seen, which shows how much
+ * the backend adds through polling and queueing, but not the fixed delay
+ * that every event has. Backends that don't stamp events only get the
+ * application latency.</p>
+ * <p>Latencies are kept in histograms for each joystick, which can be
+ * queried for percentiles at any time, and optionally shown in an overlay in
+ * the top-right corner of the screen. The measurement ends before the frame
+ * is swapped to the display, so vsync and the display itself add to the
+ * delay as well.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class LatencyMonitor extends BaseAppState
+{
+    /**
+     * How often the overlay text is refreshed, in seconds.
+     */
+    private static final float OVERLAY_INTERVAL = 0.5F;
+
+    /**
+     * A histogram of latencies, in microseconds. Values below 16 microseconds
+     * get a bucket each, and each power of two above that is split into 8
+     * buckets, so every value is recorded within 12.5% of its actual size.
+     */
+    private static class Histogram
+    {
+        private static final int SUB_BUCKETS = 8;
+        private static final int LINEAR = 16;
+        private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+        final long[] counts = new long[BUCKETS];
+        long total;
+        long sum;
+        long max;
+
+        void record(long micros)
+        {
+            this.counts[index(Math.max(0, micros))]++;
+            this.total++;
+            this.sum += micros;
+            this.max = Math.max(this.max, micros);
+        }
+
+        void clear()
+        {
+            Arrays.fill(this.counts, 0);
+            this.total = 0;
+            this.sum = 0;
+            this.max = 0;
+        }
+
+        /**
+         * Finds the value below which a portion of the latencies fall.
+         *
+         * @param percentile - The portion, from 0 to 100.
+         * @return The latency, in microseconds.
+         */
+        long percentile(float percentile)
+        {
+            long target, seen = 0;
+            if (this.total == 0)
+            {
+                return 0;
+            }
+            target = Math.max(1,
+                    (long) Math.ceil(this.total * percentile / 100D));
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                seen += this.counts[i];
+                if (seen >= target)
+                {
+                    return Math.min(upperBound(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        private static int index(long micros)
+        {
+            int exponent;
+            if (micros < LINEAR)
+            {
+                return (int) micros;
+            }
+            exponent = 63 - Long.numberOfLeadingZeros(micros);
+            return LINEAR + (exponent - 4) * SUB_BUCKETS +
+                    (int) ((micros >>> (exponent - 3)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int index)
+        {
+            int exponent, sub;
+            if (index < LINEAR)
+            {
+                return index;
+            }
+            exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+            sub = (index - LINEAR) % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1L) << (exponent - 3)) - 1;
+        }
+    }
+
+    /**
+     * The measurements for a single joystick.
+     */
+    private static class Measurements
+    {
+        final Histogram application = new Histogram();
+        final Histogram backend = new Histogram();
+        /**
+         * The smallest gap seen between when an event was received and the
+         * time the backend gave it, in nanoseconds.
+         */
+        long clockOffset = Long.MAX_VALUE;
+
+        void clear()
+        {
+            this.application.clear();
+            this.backend.clear();
+            this.clockOffset = Long.MAX_VALUE;
+        }
+    }
+
+    private Measurements[] measurements = new Measurements[0];
+
+    /*
+     * Changes made this frame, waiting for the frame to be rendered.
+     */
+    private int[] pendingJoysticks = new int[256];
+    private long[] pendingTimes = new long[256];
+    private long[] pendingEventTimes = new long[256];
+    private int pendingCount;
+
+    private GuiResources resources;
+    private boolean overlayVisible = true;
+    private BitmapText overlay;
+    private float overlayTimer;
+    private final StringBuilder overlayText = new StringBuilder();
+
+    /**
+     * Notes that an event changed what is displayed this frame. This should
+     * only be called from the render thread.
+     *
+     * @param joyId - The index of the joystick the event came from.
+     * @param receivedTime - When the event was received, from
+     * {@link System#nanoTime()}.
+     * @param eventTime - The time the input backend gave the event, from
+     * {@link com.jme3.input.event.InputEvent#getTime()}, or 0 if it gave
+     * none.
+     */
+    public void record(int joyId, long receivedTime, long eventTime)
+    {
+        if (joyId < 0 || !this.isEnabled())
+        {
+            return;
+        }
+        if (this.pendingCount == this.pendingTimes.length)
+        {
+            this.pendingJoysticks = Arrays.copyOf(this.pendingJoysticks,
+                    this.pendingCount * 2);
+            this.pendingTimes = Arrays.copyOf(this.pendingTimes,
+                    this.pendingCount * 2);
+            this.pendingEventTimes = Arrays.copyOf(this.pendingEventTimes,
+                    this.pendingCount * 2);
+        }
+        this.pendingJoysticks[this.pendingCount] = joyId;
+        this.pendingTimes[this.pendingCount] = receivedTime;
+        this.pendingEventTimes[this.pendingCount] = eventTime;
+        this.pendingCount++;
+    }
+
+    /**
+     * Obtains a percentile of the application latencies measured for a
+     * joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @param percentile - The percentile, from 0 to 100. For instance, 99
+     * gives the latency that 99% of the changes were displayed within.
+     * @return The latency in milliseconds, or 0 if nothing was measured.
+     */
+    public float getPercentile(int joyId, float percentile)
+    {
+        return percentile(this.getHistogram(joyId, false), percentile);
+    }
+
+    /**
+     * Obtains the average application latency measured for a joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @return The latency in milliseconds, or 0 if nothing was measured.
+     */
+    public float getMeanLatency(int joyId)
+    {
+        return mean(this.getHistogram(joyId, false));
+    }
+
+    /**
+     * Obtains the longest application latency measured for a joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @return The latency in milliseconds, or 0 if nothing was measured.
+     */
+    public float getMaxLatency(int joyId)
+    {
+        Histogram histogram = this.getHistogram(joyId, false);
+        return histogram == null ? 0 : histogram.max / 1000F;
+    }
+
+    /**
+     * Obtains how many changes were measured for a joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @return The number of measurements.
+     */
+    public long getSampleCount(int joyId)
+    {
+        Histogram histogram = this.getHistogram(joyId, false);
+        return histogram == null ? 0 : histogram.total;
+    }
+
+    /**
+     * Obtains a percentile of the backend latencies measured for a joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @param percentile - The percentile, from 0 to 100.
+     * @return The latency beyond the fastest delivery seen, in milliseconds,
+     * or 0 if nothing was measured.
+     */
+    public float getBackendPercentile(int joyId, float percentile)
+    {
+        return percentile(this.getHistogram(joyId, true), percentile);
+    }
+
+    /**
+     * Obtains the average backend latency measured for a joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @return The latency beyond the fastest delivery seen, in milliseconds,
+     * or 0 if nothing was measured.
+     */
+    public float getBackendMeanLatency(int joyId)
+    {
+        return mean(this.getHistogram(joyId, true));
+    }
+
+    /**
+     * Obtains the longest backend latency measured for a joystick.
+     *
+     * @param joyId - The index of the joystick.
+     * @return The latency beyond the fastest delivery seen, in milliseconds,
+     * or 0 if nothing was measured.
+     */
+    public float getBackendMaxLatency(int joyId)
+    {
+        Histogram histogram = this.getHistogram(joyId, true);
+        return histogram == null ? 0 : histogram.max / 1000F;
+    }
+
+    /**
+     * Obtains how many changes from a joystick had a timestamp from the
+     * backend.
+     *
+     * @param joyId - The index of the joystick.
+     * @return The number of backend measurements.
+     */
+    public long getBackendSampleCount(int joyId)
+    {
+        Histogram histogram = this.getHistogram(joyId, true);
+        return histogram == null ? 0 : histogram.total;
+    }
+
+    /**
+     * Discards all measurements.
+     */
+    public void reset()
+    {
+        for (Measurements joystick : this.measurements)
+        {
+            if (joystick != null)
+            {
+                joystick.clear();
+            }
+        }
+        this.pendingCount = 0;
+    }
+
+    /**
+     * Shows or hides the overlay. It is shown by default.
+     *
+     * @param visible - Whether or not to show the overlay.
+     */
+    public void setOverlayVisible(boolean visible)
+    {
+        this.overlayVisible = visible;
+        if (this.overlay != null && this.isEnabled())
+        {
+            this.attachOverlay();
+        }
+    }
+
+    /**
+     * Checks whether the overlay is shown.
+     *
+     * @return True if the overlay is shown.
+     */
+    public boolean isOverlayVisible()
+    {
+        return this.overlayVisible;
+    }
+
+    private Histogram getHistogram(int joyId, boolean backend)
+    {
+        Measurements joystick;
+        if (joyId < 0 || joyId >= this.measurements.length)
+        {
+            return null;
+        }
+        joystick = this.measurements[joyId];
+        if (joystick == null)
+        {
+            return null;
+        }
+        return backend ? joystick.backend : joystick.application;
+    }
+
+    private static float percentile(Histogram histogram, float percentile)
+    {
+        return histogram == null ? 0 :
+               histogram.percentile(percentile) / 1000F;
+    }
+
+    private static float mean(Histogram histogram)
+    {
+        return histogram == null || histogram.total == 0 ? 0 :
+               histogram.sum / (float) histogram.total / 1000F;
+    }
+
+    @Override
+    protected void initialize(Application app)
+    {
+        this.resources = GuiResources.acquire(app.getAssetManager());
+        this.overlay = this.resources.getFont().createLabel("");
+    }
+
+    @Override
+    protected void cleanup(Application app)
+    {
+        this.overlay.removeFromParent();
+        this.resources.release();
+        this.resources = null;
+    }
+
+    @Override
+    protected void onEnable()
+    {
+        this.attachOverlay();
+    }
+
+    @Override
+    protected void onDisable()
+    {
+        this.overlay.removeFromParent();
+        this.pendingCount = 0;
+    }
+
+    private void attachOverlay()
+    {
+        if (this.overlayVisible)
+        {
+            ((SimpleApplication) this.getApplication()).getGuiNode()
+                    .attachChild(this.overlay);
+            this.updateOverlay();
+        }
+        else
+        {
+            this.overlay.removeFromParent();
+        }
+    }
+
+    @Override
+    public void update(float tpf)
+    {
+        super.update(tpf);
+        this.overlayTimer += tpf;
+        if (this.overlayVisible && this.overlayTimer >= OVERLAY_INTERVAL)
+        {
+            this.overlayTimer = 0;
+            this.updateOverlay();
+        }
+    }
+
+    /**
+     * Measures the changes made this frame, now that it has been rendered.
+     */
+    @Override
+    public void postRender()
+    {
+        long now = System.nanoTime();
+        long offset;
+        int joyId;
+        Measurements joystick;
+        super.postRender();
+        for (int i = 0; i < this.pendingCount; i++)
+        {
+            joyId = this.pendingJoysticks[i];
+            if (joyId >= this.measurements.length)
+            {
+                this.measurements = Arrays.copyOf(this.measurements,
+                        joyId + 1);
+            }
+            joystick = this.measurements[joyId];
+            if (joystick == null)
+            {
+                joystick = this.measurements[joyId] = new Measurements();
+            }
+            joystick.application
+                    .record((now - this.pendingTimes[i]) / 1000L);
+            if (this.pendingEventTimes[i] != 0)
+            {
+                offset = this.pendingTimes[i] - this.pendingEventTimes[i];
+                joystick.clockOffset = Math.min(joystick.clockOffset, offset);
+                joystick.backend
+                        .record((offset - joystick.clockOffset) / 1000L);
+            }
+        }
+        this.pendingCount = 0;
+    }
+
+    private void updateOverlay()
+    {
+        Measurements joystick;
+        this.overlayText.setLength(0);
+        this.overlayText.append("Input latency (ms)");
+        for (int i = 0; i < this.measurements.length; i++)
+        {
+            joystick = this.measurements[i];
+            if (joystick != null && joystick.application.total > 0)
+            {
+                this.overlayText.append("\nGamepad ").append(i)
+                        .append(": p50 ").append(this.getPercentile(i, 50))
+                        .append(" p95 ").append(this.getPercentile(i, 95))
+                        .append(" p99 ").append(this.getPercentile(i, 99))
+                        .append(" max ").append(this.getMaxLatency(i))
+                        .append(" (").append(joystick.application.total)
+                        .append(")");
+                if (joystick.backend.total > 0)
+                {
+                    this.overlayText.append("\n  Backend: p50 ")
+                            .append(this.getBackendPercentile(i, 50))
+                            .append(" p95 ")
+                            .append(this.getBackendPercentile(i, 95))
+                            .append(" p99 ")
+                            .append(this.getBackendPercentile(i, 99))
+                            .append(" max ")
+                            .append(this.getBackendMaxLatency(i));
+                }
+            }
+        }
+        this.overlay.setText(this.overlayText);
+        this.overlay.setLocalTranslation(
+                this.getApplication().getCamera().getWidth() -
+                        this.overlay.getLineWidth() - 10,
+                this.getApplication().getCamera().getHeight() - 10, 0);
+    }
+}
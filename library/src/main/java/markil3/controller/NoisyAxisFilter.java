@@ -0,0 +1,454 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.RawInputListener;
+import com.jme3.input.event.JoyAxisEvent;
+import com.jme3.input.event.JoyButtonEvent;
+import com.jme3.input.event.KeyInputEvent;
+import com.jme3.input.event.MouseButtonEvent;
+import com.jme3.input.event.MouseMotionEvent;
+import com.jme3.input.event.TouchEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Detects axes that send a constant stream of events without actually
+ * moving, and stops their events from reaching the rest of the application.
+ * Some joysticks report phantom axes like this (such as a second "Z Axis"),
+ * which flood the input system and confuse the calibration screen.
+ * <p>Each axis is watched over a series of windows. A window in which an
+ * axis's value changes faster than the {@link #setRateThreshold(float) rate
+ * threshold} while barely varying counts as a strike, and an axis with enough
+ * strikes in a row is marked as noisy. Events that repeat the previous value
+ * are not counted, so an axis resting in place is never marked, even on
+ * backends that report every axis every frame. From then on its events
+ * are {@link JoyAxisEvent#setConsumed() consumed}, until it sends a window
+ * with real movement in it.</p>
+ * <p>Since consumed events are only skipped by listeners added after this
+ * one, the filter should be attached before any other state that listens for
+ * joystick input. The screens in this library also ignore consumed events
+ * that are sent to them directly. The axes found can be saved with
+ * {@link #writeMappings(Properties)} so that they are ignored by
+ * {@link com.jme3.input.JoystickCompatibilityMappings} from then on.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class NoisyAxisFilter extends BaseAppState implements RawInputListener
+{
+    private static final org.slf4j.Logger logger =
+            org.slf4j.LoggerFactory.getLogger(NoisyAxisFilter.class);
+
+    private long window = 1_000_000_000L;
+    private float rateThreshold = 100F;
+    private float varianceThreshold = 1e-4F;
+    private int strikes = 2;
+
+    /*
+     * Per joystick, per axis statistics for the current window. The mean and
+     * variance are kept with Welford's method so that a window never needs
+     * to hold on to its samples. Only values that differ from the one before
+     * them are counted.
+     */
+    private long[][] windowStarts = new long[0][];
+    private float[][] lastValues = new float[0][];
+    private int[][] counts = new int[0][];
+    private double[][] means = new double[0][];
+    private double[][] squares = new double[0][];
+    private int[][] strikeCounts = new int[0][];
+    private JoystickAxis[][] noisy = new JoystickAxis[0][];
+
+    private long suppressed;
+
+    /**
+     * Sets how long each window lasts.
+     *
+     * @param seconds - The length of a window, in seconds.
+     */
+    public void setWindow(float seconds)
+    {
+        this.window = (long) (Math.max(0.01F, seconds) * 1_000_000_000D);
+    }
+
+    /**
+     * Obtains how long each window lasts.
+     *
+     * @return The length of a window, in seconds.
+     */
+    public float getWindow()
+    {
+        return this.window / 1_000_000_000F;
+    }
+
+    /**
+     * Sets how many times per second the value of an axis must change for a
+     * window to be considered a flood.
+     *
+     * @param eventsPerSecond - The rate of changes.
+     */
+    public void setRateThreshold(float eventsPerSecond)
+    {
+        this.rateThreshold = Math.max(0, eventsPerSecond);
+    }
+
+    /**
+     * Obtains how many times per second the value of an axis must change for
+     * a window to be considered a flood.
+     *
+     * @return The rate of changes.
+     */
+    public float getRateThreshold()
+    {
+        return this.rateThreshold;
+    }
+
+    /**
+     * Sets how much an axis value may vary within a window before it counts
+     * as real movement.
+     *
+     * @param variance - The variance of the axis values.
+     */
+    public void setVarianceThreshold(float variance)
+    {
+        this.varianceThreshold = Math.max(0, variance);
+    }
+
+    /**
+     * Obtains how much an axis value may vary within a window before it
+     * counts as real movement.
+     *
+     * @return The variance of the axis values.
+     */
+    public float getVarianceThreshold()
+    {
+        return this.varianceThreshold;
+    }
+
+    /**
+     * Sets how many flooded windows in a row it takes to mark an axis as
+     * noisy.
+     *
+     * @param strikes - The number of windows.
+     */
+    public void setStrikes(int strikes)
+    {
+        this.strikes = Math.max(1, strikes);
+    }
+
+    /**
+     * Obtains how many flooded windows in a row it takes to mark an axis as
+     * noisy.
+     *
+     * @return The number of windows.
+     */
+    public int getStrikes()
+    {
+        return this.strikes;
+    }
+
+    /**
+     * Checks whether an axis is currently marked as noisy.
+     *
+     * @param joyId - The index of the joystick.
+     * @param axisId - The ID of the axis.
+     * @return True if events from the axis are being suppressed.
+     */
+    public boolean isNoisy(int joyId, int axisId)
+    {
+        return joyId >= 0 && joyId < this.noisy.length && axisId >= 0 &&
+                axisId < this.noisy[joyId].length &&
+                this.noisy[joyId][axisId] != null;
+    }
+
+    /**
+     * Checks whether an axis is currently marked as noisy.
+     *
+     * @param axis - The axis to check.
+     * @return True if events from the axis are being suppressed.
+     */
+    public boolean isNoisy(JoystickAxis axis)
+    {
+        return this.isNoisy(axis.getJoystick().getJoyId(), axis.getAxisId());
+    }
+
+    /**
+     * Obtains every axis currently marked as noisy.
+     *
+     * @return A new list of the noisy axes.
+     */
+    public List<JoystickAxis> getNoisyAxes()
+    {
+        List<JoystickAxis> axes = new ArrayList<>();
+        for (JoystickAxis[] joyAxes : this.noisy)
+        {
+            for (JoystickAxis axis : joyAxes)
+            {
+                if (axis != null)
+                {
+                    axes.add(axis);
+                }
+            }
+        }
+        return axes;
+    }
+
+    /**
+     * Obtains the number of events that were suppressed so far.
+     *
+     * @return The number of consumed events.
+     */
+    public long getSuppressedCount()
+    {
+        return this.suppressed;
+    }
+
+    /**
+     * Adds a mapping to "null" for each noisy axis, in the format used by the
+     * calibration file. Loading these through
+     * {@link com.jme3.input.JoystickCompatibilityMappings} makes the engine
+     * ignore the axes.
+     *
+     * @param props - The properties to add the mappings to.
+     */
+    public void writeMappings(Properties props)
+    {
+        for (JoystickAxis axis : this.getNoisyAxes())
+        {
+            props.put("axis." + axis.getJoystick().getName() + "." +
+                    axis.getName(), "null");
+        }
+    }
+
+    /**
+     * Forgets everything known about a joystick. This is useful when the
+     * joystick at that index was disconnected or replaced.
+     *
+     * @param joyId - The index of the joystick.
+     */
+    public void reset(int joyId)
+    {
+        if (joyId >= 0 && joyId < this.counts.length)
+        {
+            Arrays.fill(this.windowStarts[joyId], 0);
+            Arrays.fill(this.lastValues[joyId], Float.NaN);
+            Arrays.fill(this.counts[joyId], 0);
+            Arrays.fill(this.means[joyId], 0);
+            Arrays.fill(this.squares[joyId], 0);
+            Arrays.fill(this.strikeCounts[joyId], 0);
+            Arrays.fill(this.noisy[joyId], null);
+        }
+    }
+
+    @Override
+    protected void initialize(Application app)
+    {
+    }
+
+    @Override
+    protected void cleanup(Application app)
+    {
+    }
+
+    @Override
+    protected void onEnable()
+    {
+        this.getApplication().getInputManager().addRawInputListener(this);
+    }
+
+    @Override
+    protected void onDisable()
+    {
+        this.getApplication().getInputManager().removeRawInputListener(this);
+    }
+
+    @Override
+    public void onJoyAxisEvent(JoyAxisEvent evt)
+    {
+        this.onJoyAxisEvent(evt, System.nanoTime());
+    }
+
+    /**
+     * Watches an axis event.
+     *
+     * @param evt - The event.
+     * @param now - The time the event arrived, in nanoseconds.
+     */
+    void onJoyAxisEvent(JoyAxisEvent evt, long now)
+    {
+        int joyId = evt.getJoyIndex();
+        int axisId = evt.getAxisIndex();
+        int count;
+        float value;
+        double delta;
+        if (joyId < 0 || axisId < 0)
+        {
+            return;
+        }
+        this.ensureAxis(joyId, axisId);
+        if (this.counts[joyId][axisId] > 0 &&
+                now - this.windowStarts[joyId][axisId] >= this.window)
+        {
+            this.endWindow(evt.getAxis(), joyId, axisId, now);
+        }
+        if (this.counts[joyId][axisId] == 0)
+        {
+            this.windowStarts[joyId][axisId] = now;
+        }
+
+        value = evt.getRawValue();
+        if (value != this.lastValues[joyId][axisId])
+        {
+            this.lastValues[joyId][axisId] = value;
+            count = ++this.counts[joyId][axisId];
+            delta = value - this.means[joyId][axisId];
+            this.means[joyId][axisId] += delta / count;
+            this.squares[joyId][axisId] +=
+                    delta * (value - this.means[joyId][axisId]);
+        }
+
+        if (this.noisy[joyId][axisId] != null)
+        {
+            evt.setConsumed();
+            this.suppressed++;
+        }
+    }
+
+    /**
+     * Judges a finished window and starts the next one.
+     *
+     * @param axis - The axis the window belongs to.
+     * @param joyId - The index of the joystick.
+     * @param axisId - The ID of the axis.
+     * @param now - The time the window ended.
+     */
+    private void endWindow(JoystickAxis axis, int joyId, int axisId, long now)
+    {
+        int count = this.counts[joyId][axisId];
+        double seconds =
+                (now - this.windowStarts[joyId][axisId]) / 1_000_000_000D;
+        double rate = count / seconds;
+        double variance = this.squares[joyId][axisId] / count;
+        if (variance > this.varianceThreshold)
+        {
+            this.strikeCounts[joyId][axisId] = 0;
+            if (this.noisy[joyId][axisId] != null)
+            {
+                logger.info(axis.getJoystick().getName() + "\n\tAxis:" +
+                        axis.getName() + " (" + axisId + ") is moving again");
+                this.noisy[joyId][axisId] = null;
+            }
+        }
+        else if (rate >= this.rateThreshold)
+        {
+            if (++this.strikeCounts[joyId][axisId] >= this.strikes &&
+                    this.noisy[joyId][axisId] == null)
+            {
+                logger.info(axis.getJoystick().getName() + "\n\tAxis:" +
+                        axis.getName() + " (" + axisId + ") is noisy, " +
+                        "changing " + Math.round(rate) + " times/s");
+                this.noisy[joyId][axisId] = axis;
+            }
+        }
+        else
+        {
+            this.strikeCounts[joyId][axisId] = 0;
+        }
+        this.counts[joyId][axisId] = 0;
+        this.means[joyId][axisId] = 0;
+        this.squares[joyId][axisId] = 0;
+    }
+
+    private void ensureAxis(int joyId, int axisId)
+    {
+        int count = this.counts.length;
+        if (joyId >= count)
+        {
+            this.windowStarts = Arrays.copyOf(this.windowStarts, joyId + 1);
+            this.lastValues = Arrays.copyOf(this.lastValues, joyId + 1);
+            this.counts = Arrays.copyOf(this.counts, joyId + 1);
+            this.means = Arrays.copyOf(this.means, joyId + 1);
+            this.squares = Arrays.copyOf(this.squares, joyId + 1);
+            this.strikeCounts = Arrays.copyOf(this.strikeCounts, joyId + 1);
+            this.noisy = Arrays.copyOf(this.noisy, joyId + 1);
+            for (int i = count; i <= joyId; i++)
+            {
+                this.windowStarts[i] = new long[0];
+                this.lastValues[i] = new float[0];
+                this.counts[i] = new int[0];
+                this.means[i] = new double[0];
+                this.squares[i] = new double[0];
+                this.strikeCounts[i] = new int[0];
+                this.noisy[i] = new JoystickAxis[0];
+            }
+        }
+        count = this.counts[joyId].length;
+        if (axisId >= count)
+        {
+            count = Math.max(axisId + 1, 8);
+            this.windowStarts[joyId] =
+                    Arrays.copyOf(this.windowStarts[joyId], count);
+            this.lastValues[joyId] =
+                    Arrays.copyOf(this.lastValues[joyId], count);
+            /*
+             * The first event of an axis always counts as a change.
+             */
+            Arrays.fill(this.lastValues[joyId], this.counts[joyId].length,
+                    count, Float.NaN);
+            this.counts[joyId] = Arrays.copyOf(this.counts[joyId], count);
+            this.means[joyId] = Arrays.copyOf(this.means[joyId], count);
+            this.squares[joyId] = Arrays.copyOf(this.squares[joyId], count);
+            this.strikeCounts[joyId] =
+                    Arrays.copyOf(this.strikeCounts[joyId], count);
+            this.noisy[joyId] = Arrays.copyOf(this.noisy[joyId], count);
+        }
+    }
+
+    @Override
+    public void onJoyButtonEvent(JoyButtonEvent evt)
+    {
+    }
+
+    @Override
+    public void beginInput()
+    {
+    }
+
+    @Override
+    public void endInput()
+    {
+    }
+
+    @Override
+    public void onMouseMotionEvent(MouseMotionEvent evt)
+    {
+    }
+
+    @Override
+    public void onMouseButtonEvent(MouseButtonEvent evt)
+    {
+    }
+
+    @Override
+    public void onKeyEvent(KeyInputEvent evt)
+    {
+    }
+
+    @Override
+    public void onTouchEvent(TouchEvent evt)
+    {
+    }
+}
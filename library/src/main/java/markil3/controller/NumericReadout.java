@@ -0,0 +1,396 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.font.BitmapCharacter;
+import com.jme3.font.BitmapCharacterSet;
+import com.jme3.font.BitmapFont;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A fixed-width line of text for values that change constantly, such as the
+ * axis and button values in {@link JoystickPreviewScreen}.
+ * <p>Unlike a {@link com.jme3.font.BitmapText}, which builds a new string and
+ * rebuilds its whole mesh every time its text changes, a readout formats its
+ * value into a reused character buffer and only rewrites the quads of the
+ * characters that actually changed. Each character takes up a cell of the
+ * same width, so a change never moves the other characters. Once created, a
+ * readout does not allocate anything.</p>
+ * <p>All characters are drawn from the font page of the digit "0", and so
+ * should come from the same page.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class NumericReadout extends Geometry
+{
+    /**
+     * The characters that a cell must have room for.
+     */
+    private static final String CELL_CHARS = "0123456789-.#NaNtruefalse";
+    private static final char[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final char[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final char[] NAN = {'N', 'a', 'N'};
+
+    private final BitmapCharacterSet charSet;
+    private final int page;
+    private final float cellWidth;
+
+    /**
+     * The characters currently in the mesh.
+     */
+    private final char[] shown;
+    /**
+     * The characters being formatted.
+     */
+    private final char[] buffer;
+
+    private final FloatBuffer positions;
+    private final FloatBuffer texCoords;
+    private final FloatBuffer colors;
+
+    private boolean rightAligned;
+    private int decimals = 4;
+    private long scale = 10_000L;
+
+    /**
+     * Creates a readout.
+     *
+     * @param font - The font to draw the readout with.
+     * @param width - The number of characters the readout has room for.
+     */
+    public NumericReadout(BitmapFont font, int width)
+    {
+        super("readout", new Mesh());
+        ShortBuffer indices = BufferUtils.createShortBuffer(width * 6);
+        BitmapCharacter character;
+        float advance = 0;
+        this.charSet = font.getCharSet();
+        this.page = this.charSet.getCharacter('0').getPage();
+        for (int i = 0; i < CELL_CHARS.length(); i++)
+        {
+            character = this.charSet.getCharacter(CELL_CHARS.charAt(i));
+            if (character != null)
+            {
+                advance = Math.max(advance, character.getXAdvance());
+            }
+        }
+        this.cellWidth = advance;
+        this.shown = new char[width];
+        this.buffer = new char[width];
+
+        this.positions = BufferUtils.createFloatBuffer(width * 4 * 3);
+        this.texCoords = BufferUtils.createFloatBuffer(width * 4 * 2);
+        this.colors = BufferUtils.createFloatBuffer(width * 4 * 4);
+        for (int i = 0; i < width; i++)
+        {
+            indices.put((short) (i * 4)).put((short) (i * 4 + 1))
+                    .put((short) (i * 4 + 2)).put((short) (i * 4))
+                    .put((short) (i * 4 + 2)).put((short) (i * 4 + 3));
+            this.shown[i] = ' ';
+        }
+        indices.flip();
+        this.mesh.setBuffer(VertexBuffer.Type.Position, 3, this.positions);
+        this.mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, this.texCoords);
+        this.mesh.setBuffer(VertexBuffer.Type.Color, 4, this.colors);
+        this.mesh.setBuffer(VertexBuffer.Type.Index, 3, indices);
+        /*
+         * The characters never leave their cells, so the bounds can be set
+         * once rather than recalculated on every change.
+         */
+        this.mesh.setBound(new BoundingBox(
+                new Vector3f(0, -this.charSet.getLineHeight(), 0),
+                new Vector3f(this.getLineWidth(), 0, 0)));
+        this.updateModelBound();
+        this.setMaterial(font.getPage(this.page));
+        this.setColor(ColorRGBA.White);
+    }
+
+    /**
+     * Sets whether values are lined up against the right edge of the readout
+     * rather than the left.
+     *
+     * @param rightAligned - True to align values to the right.
+     */
+    public void setRightAligned(boolean rightAligned)
+    {
+        this.rightAligned = rightAligned;
+    }
+
+    /**
+     * Checks whether values are lined up against the right edge of the
+     * readout.
+     *
+     * @return True if values are aligned to the right.
+     */
+    public boolean isRightAligned()
+    {
+        return this.rightAligned;
+    }
+
+    /**
+     * Sets how many digits are shown after the decimal point.
+     *
+     * @param decimals - The number of decimal places, from 0 to 9.
+     */
+    public void setDecimals(int decimals)
+    {
+        this.decimals = Math.max(0, Math.min(9, decimals));
+        this.scale = 1;
+        for (int i = 0; i < this.decimals; i++)
+        {
+            this.scale *= 10;
+        }
+    }
+
+    /**
+     * Obtains how many digits are shown after the decimal point.
+     *
+     * @return The number of decimal places.
+     */
+    public int getDecimals()
+    {
+        return this.decimals;
+    }
+
+    /**
+     * Obtains the width of the readout.
+     *
+     * @return The width of all the cells together.
+     */
+    public float getLineWidth()
+    {
+        return this.cellWidth * this.shown.length;
+    }
+
+    /**
+     * Obtains the characters currently shown, including blank cells.
+     *
+     * @return The text of the readout.
+     */
+    String getText()
+    {
+        return new String(this.shown);
+    }
+
+    /**
+     * Obtains the height of a line of text in the readout's font.
+     *
+     * @return The line height.
+     */
+    public float getLineHeight()
+    {
+        return this.charSet.getLineHeight();
+    }
+
+    /**
+     * Sets the color of the text.
+     *
+     * @param color - The new color.
+     */
+    public void setColor(ColorRGBA color)
+    {
+        this.colors.clear();
+        for (int i = 0, l = this.shown.length * 4; i < l; i++)
+        {
+            this.colors.put(color.r).put(color.g).put(color.b).put(color.a);
+        }
+        this.colors.clear();
+        this.mesh.getBuffer(VertexBuffer.Type.Color).setUpdateNeeded();
+    }
+
+    /**
+     * Displays a number, rounded to the {@link #setDecimals(int) number of
+     * decimal places}. Numbers that do not fit are shown as "#" characters.
+     *
+     * @param value - The number to display.
+     */
+    public void setValue(float value)
+    {
+        int length;
+        if (Float.isNaN(value))
+        {
+            this.show(NAN, NAN.length);
+            return;
+        }
+        length = this.format(value);
+        if (length < 0)
+        {
+            for (int i = 0; i < this.buffer.length; i++)
+            {
+                this.buffer[i] = '#';
+            }
+            length = this.buffer.length;
+        }
+        this.show(this.buffer, length);
+    }
+
+    /**
+     * Displays "true" or "false".
+     *
+     * @param value - The value to display.
+     */
+    public void setValue(boolean value)
+    {
+        char[] text = value ? TRUE : FALSE;
+        this.show(text, text.length);
+    }
+
+    /**
+     * Displays a piece of text, cut off at the width of the readout.
+     *
+     * @param text - The text to display.
+     */
+    public void setText(CharSequence text)
+    {
+        int length = Math.min(text.length(), this.buffer.length);
+        for (int i = 0; i < length; i++)
+        {
+            this.buffer[i] = text.charAt(i);
+        }
+        this.show(this.buffer, length);
+    }
+
+    /**
+     * Formats a number into the character buffer.
+     *
+     * @param value - The number to format.
+     * @return The number of characters used, or -1 if the number doesn't fit.
+     */
+    private int format(float value)
+    {
+        double magnitude = Math.abs((double) value);
+        long fixed, whole, fraction;
+        int length, wholeDigits = 1, position;
+        if (Double.isInfinite(magnitude) ||
+                magnitude * this.scale >= Long.MAX_VALUE)
+        {
+            return -1;
+        }
+        fixed = Math.round(magnitude * this.scale);
+        whole = fixed / this.scale;
+        fraction = fixed % this.scale;
+        for (long w = whole; w >= 10; w /= 10)
+        {
+            wholeDigits++;
+        }
+        length = (value < 0 && fixed != 0 ? 1 : 0) + wholeDigits +
+                (this.decimals > 0 ? this.decimals + 1 : 0);
+        if (length > this.buffer.length)
+        {
+            return -1;
+        }
+
+        position = length;
+        for (int i = 0; i < this.decimals; i++)
+        {
+            this.buffer[--position] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        if (this.decimals > 0)
+        {
+            this.buffer[--position] = '.';
+        }
+        for (int i = 0; i < wholeDigits; i++)
+        {
+            this.buffer[--position] = (char) ('0' + whole % 10);
+            whole /= 10;
+        }
+        if (position > 0)
+        {
+            this.buffer[0] = '-';
+        }
+        return length;
+    }
+
+    /**
+     * Lines up text in the readout, and rewrites the cells that changed.
+     *
+     * @param text - The characters to show.
+     * @param length - The number of characters to show.
+     */
+    private void show(char[] text, int length)
+    {
+        int width = this.shown.length;
+        int start = this.rightAligned ? width - length : 0;
+        boolean changed = false;
+        char c;
+        for (int i = 0; i < width; i++)
+        {
+            c = i >= start && i < start + length ? text[i - start] : ' ';
+            if (c != this.shown[i])
+            {
+                this.shown[i] = c;
+                this.writeCell(i, c);
+                changed = true;
+            }
+        }
+        if (changed)
+        {
+            this.mesh.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+            this.mesh.getBuffer(VertexBuffer.Type.TexCoord).setUpdateNeeded();
+        }
+    }
+
+    /**
+     * Writes the quad of a single cell.
+     *
+     * @param cell - The index of the cell.
+     * @param c - The character to display in it.
+     */
+    private void writeCell(int cell, char c)
+    {
+        BitmapCharacter character = c == ' ' ? null :
+                                    this.charSet.getCharacter(c);
+        float x0, y0, x1, y1, u0, v0, u1, v1;
+        if (character == null || character.getPage() != this.page)
+        {
+            /*
+             * Blank cells collapse their quad to nothing.
+             */
+            x0 = x1 = y0 = y1 = 0;
+            u0 = u1 = v0 = v1 = 0;
+        }
+        else
+        {
+            x0 = cell * this.cellWidth + character.getXOffset();
+            y0 = -character.getYOffset();
+            x1 = x0 + character.getWidth();
+            y1 = y0 - character.getHeight();
+            u0 = character.getX() / (float) this.charSet.getWidth();
+            u1 = (character.getX() + character.getWidth()) /
+                    (float) this.charSet.getWidth();
+            v0 = 1F - character.getY() / (float) this.charSet.getHeight();
+            v1 = 1F - (character.getY() + character.getHeight()) /
+                    (float) this.charSet.getHeight();
+        }
+        this.positions.position(cell * 12);
+        this.positions.put(x0).put(y1).put(0)
+                .put(x1).put(y1).put(0)
+                .put(x1).put(y0).put(0)
+                .put(x0).put(y0).put(0);
+        this.positions.clear();
+        this.texCoords.position(cell * 8);
+        this.texCoords.put(u0).put(v1)
+                .put(u1).put(v1)
+                .put(u1).put(v0)
+                .put(u0).put(v0);
+        this.texCoords.clear();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.Application;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.input.InputManager;
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+import com.jme3.input.RawInputListener;
+import com.jme3.input.event.JoyAxisEvent;
+import com.jme3.input.event.JoyButtonEvent;
+import com.jme3.math.FastMath;
+import com.jme3.util.SafeArrayList;
+
+/**
+ * Produces a steady stream of joystick events from a set of
+ * {@link VirtualJoystick virtual joysticks}, for load testing the screens
+ * without any hardware attached. Each joystick sweeps its sticks back and
+ * forth and cycles through pressing its buttons, at a configurable number of
+ * events per second.
+ * <p>When attached to an application, the virtual joysticks replace the ones
+ * known to the input manager (so that the screens can look them up) until the
+ * generator is detached. The events themselves are delivered straight to the
+ * {@link #addTarget(RawInputListener) targets}, since the input manager only
+ * accepts events from its own input devices. The generator can also be used
+ * without an application by calling {@link #generate(float)} directly.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class VirtualInputGenerator extends BaseAppState
+{
+    /**
+     * How many axis events are sent between each button event.
+     */
+    private static final int BUTTON_INTERVAL = 16;
+    /**
+     * How many times per second the sticks sweep back and forth.
+     */
+    private static final float SWEEP_RATE = 0.5F;
+
+    private final VirtualJoystick[] joysticks;
+    private final SafeArrayList<RawInputListener> targets =
+            new SafeArrayList<>(RawInputListener.class);
+
+    private float rate;
+    private float pending;
+    private float time;
+    private long counter;
+    private long generated;
+
+    private Joystick[] previousJoysticks;
+
+    /**
+     * Creates a generator for a number of virtual gamepads.
+     *
+     * @param controllers - The number of gamepads to simulate.
+     * @param rate - The number of events each gamepad sends per second.
+     */
+    public VirtualInputGenerator(int controllers, float rate)
+    {
+        this(null, controllers, rate);
+    }
+
+    /**
+     * Creates a generator for a number of virtual gamepads.
+     *
+     * @param inputManager - The input manager the gamepads belong to. This
+     * may be null.
+     * @param controllers - The number of gamepads to simulate.
+     * @param rate - The number of events each gamepad sends per second.
+     */
+    public VirtualInputGenerator(InputManager inputManager, int controllers,
+                                 float rate)
+    {
+        this.joysticks = new VirtualJoystick[controllers];
+        for (int i = 0; i < controllers; i++)
+        {
+            this.joysticks[i] = VirtualJoystick.createGamepad(inputManager, i,
+                    "Virtual Gamepad " + i);
+        }
+        this.setRate(rate);
+    }
+
+    /**
+     * Obtains the simulated joysticks.
+     *
+     * @return The virtual joysticks, indexed by their joystick ID.
+     */
+    public Joystick[] getJoysticks()
+    {
+        return this.joysticks.clone();
+    }
+
+    /**
+     * Sets how many events each gamepad sends per second.
+     *
+     * @param rate - The number of events per second.
+     */
+    public void setRate(float rate)
+    {
+        this.rate = Math.max(0, rate);
+    }
+
+    /**
+     * Obtains how many events each gamepad sends per second.
+     *
+     * @return The number of events per second.
+     */
+    public float getRate()
+    {
+        return this.rate;
+    }
+
+    /**
+     * Adds a listener to send the events to. The screens in this library are
+     * all valid targets.
+     *
+     * @param target - The listener to add.
+     */
+    public void addTarget(RawInputListener target)
+    {
+        this.targets.add(target);
+    }
+
+    /**
+     * Stops sending events to a listener.
+     *
+     * @param target - The listener to remove.
+     */
+    public void removeTarget(RawInputListener target)
+    {
+        this.targets.remove(target);
+    }
+
+    /**
+     * Obtains the total number of events sent so far.
+     *
+     * @return The number of events generated.
+     */
+    public long getGeneratedCount()
+    {
+        return this.generated;
+    }
+
+    @Override
+    protected void initialize(Application app)
+    {
+        InputManager inputManager = app.getInputManager();
+        this.previousJoysticks = inputManager.getJoysticks();
+        inputManager.setJoysticks(this.joysticks.clone());
+        for (Joystick joy : this.joysticks)
+        {
+            inputManager.fireJoystickConnectedEvent(joy);
+        }
+    }
+
+    @Override
+    protected void cleanup(Application app)
+    {
+        InputManager inputManager = app.getInputManager();
+        for (Joystick joy : this.joysticks)
+        {
+            inputManager.fireJoystickDisconnectedEvent(joy);
+        }
+        inputManager.setJoysticks(this.previousJoysticks);
+        this.previousJoysticks = null;
+    }
+
+    @Override
+    protected void onEnable()
+    {
+    }
+
+    @Override
+    protected void onDisable()
+    {
+    }
+
+    @Override
+    public void update(float tpf)
+    {
+        super.update(tpf);
+        this.generate(tpf);
+    }
+
+    /**
+     * Sends the events that would have been produced over a period of time.
+     *
+     * @param tpf - The amount of time that passed, in seconds.
+     * @return The number of events sent.
+     */
+    public int generate(float tpf)
+    {
+        RawInputListener[] listeners = this.targets.getArray();
+        int count;
+        int sent = 0;
+        this.pending += this.rate * tpf;
+        count = (int) this.pending;
+        this.pending -= count;
+        if (count == 0 || this.joysticks.length == 0)
+        {
+            this.time += tpf;
+            return 0;
+        }
+        for (RawInputListener listener : listeners)
+        {
+            listener.beginInput();
+        }
+        for (int i = 0; i < count; i++)
+        {
+            /*
+             * Spreads the events evenly over the frame so the stick values
+             * look like a real sweep.
+             */
+            float eventTime = this.time + tpf * i / count;
+            for (VirtualJoystick joy : this.joysticks)
+            {
+                this.sendEvent(joy, eventTime, listeners);
+                sent++;
+            }
+            this.counter++;
+        }
+        for (RawInputListener listener : listeners)
+        {
+            listener.endInput();
+        }
+        this.time += tpf;
+        this.generated += sent;
+        return sent;
+    }
+
+    private void sendEvent(VirtualJoystick joy, float eventTime,
+                           RawInputListener[] listeners)
+    {
+        long now = System.nanoTime();
+        int buttonCount = joy.getButtonCount();
+        int axisCount = joy.getAxisCount();
+        if (buttonCount > 0 && this.counter % BUTTON_INTERVAL == 0)
+        {
+            long press = this.counter / BUTTON_INTERVAL;
+            JoystickButton button = joy.getButtons()
+                    .get((int) ((press / 2) % buttonCount));
+            JoyButtonEvent evt = new JoyButtonEvent(button, press % 2 == 0);
+            evt.setTime(now);
+            for (RawInputListener listener : listeners)
+            {
+                listener.onJoyButtonEvent(evt);
+            }
+        }
+        else if (axisCount > 0)
+        {
+            JoystickAxis axis =
+                    joy.getAxes().get((int) (this.counter % axisCount));
+            float phase = (eventTime * SWEEP_RATE + joy.getJoyId() * 0.125F +
+                    axis.getAxisId() * 0.25F) * FastMath.TWO_PI;
+            float value = FastMath.sin(phase);
+            if (!axis.isAnalog())
+            {
+                value = Math.round(value);
+            }
+            JoyAxisEvent evt = new JoyAxisEvent(axis, value, value);
+            evt.setTime(now);
+            for (RawInputListener listener : listeners)
+            {
+                listener.onJoyAxisEvent(evt);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.AbstractJoystick;
+import com.jme3.input.DefaultJoystickAxis;
+import com.jme3.input.DefaultJoystickButton;
+import com.jme3.input.InputManager;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+import com.jme3.input.JoystickCompatibilityMappings;
+
+/**
+ * A joystick that isn't backed by any hardware. This can stand in for real
+ * controllers when testing the screens on machines that don't have any, such
+ * as build servers. Events for it can be produced with
+ * {@link VirtualInputGenerator}.
+ * <p>Component names are passed through {@link JoystickCompatibilityMappings}
+ * like they would be for a real device, so custom mappings apply to virtual
+ * joysticks as well.</p>
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class VirtualJoystick extends AbstractJoystick
+{
+    /**
+     * Creates a joystick with no axes or buttons.
+     *
+     * @param inputManager - The input manager the joystick belongs to. This
+     * may be null if the joystick will not be registered with one.
+     * @param joyId - The index of the joystick.
+     * @param name - The name of the joystick.
+     */
+    public VirtualJoystick(InputManager inputManager, int joyId, String name)
+    {
+        super(inputManager, null, joyId, name);
+    }
+
+    /**
+     * Creates a joystick laid out like a typical dual-stick gamepad, with
+     * analog sticks, a hat switch and twelve buttons.
+     *
+     * @param inputManager - The input manager the joystick belongs to. This
+     * may be null if the joystick will not be registered with one.
+     * @param joyId - The index of the joystick.
+     * @param name - The name of the joystick.
+     * @return The new joystick.
+     */
+    public static VirtualJoystick createGamepad(InputManager inputManager,
+                                                int joyId, String name)
+    {
+        VirtualJoystick joy = new VirtualJoystick(inputManager, joyId, name);
+        joy.addAxis(JoystickAxis.X_AXIS, true);
+        joy.addAxis(JoystickAxis.Y_AXIS, true);
+        joy.addAxis(JoystickAxis.Z_AXIS, true);
+        joy.addAxis(JoystickAxis.Z_ROTATION, true);
+        joy.addAxis(JoystickAxis.POV_X, false);
+        joy.addAxis(JoystickAxis.POV_Y, false);
+        for (int i = 0; i < 12; i++)
+        {
+            joy.addButton(Integer.toString(i));
+        }
+        return joy;
+    }
+
+    /**
+     * Adds an axis to the joystick. Its ID will be the number of axes added
+     * before it.
+     *
+     * @param name - The name the device reports for the axis.
+     * @param analog - Whether or not the axis is analog.
+     * @return The new axis.
+     */
+    public JoystickAxis addAxis(String name, boolean analog)
+    {
+        return this.addAxis(this.getAxisCount(), name, analog);
+    }
+
+    /**
+     * Adds an axis with a particular ID to the joystick, such as one recreated
+     * from a recording of a device whose axis IDs have gaps.
+     *
+     * @param axisId - The ID of the axis. This should not be shared with any
+     * other axis of the joystick.
+     * @param name - The name the device reports for the axis.
+     * @param analog - Whether or not the axis is analog.
+     * @return The new axis.
+     */
+    public JoystickAxis addAxis(int axisId, String name, boolean analog)
+    {
+        JoystickAxis axis = new DefaultJoystickAxis(this.getInputManager(),
+                this, axisId, name,
+                JoystickCompatibilityMappings.remapAxis(this.getName(), name),
+                analog, false, 0F);
+        this.addAxis(axis);
+        return axis;
+    }
+
+    /**
+     * Adds a button to the joystick. Its ID will be the number of buttons
+     * added before it.
+     *
+     * @param name - The name the device reports for the button.
+     * @return The new button.
+     */
+    public JoystickButton addButton(String name)
+    {
+        return this.addButton(this.getButtonCount(), name);
+    }
+
+    /**
+     * Adds a button with a particular ID to the joystick.
+     *
+     * @param buttonId - The ID of the button. This should not be shared with
+     * any other button of the joystick.
+     * @param name - The name the device reports for the button.
+     * @return The new button.
+     */
+    public JoystickButton addButton(int buttonId, String name)
+    {
+        JoystickButton button = new DefaultJoystickButton(
+                this.getInputManager(), this, buttonId, name,
+                JoystickCompatibilityMappings.remapButton(this.getName(),
+                        name));
+        this.addButton(button);
+        return button;
+    }
+
+    /**
+     * Virtual joysticks can't rumble, so this does nothing.
+     *
+     * @param amount - The rumble strength.
+     */
+    @Override
+    public void rumble(float amount)
+    {
+    }
+
+    @Override
+    public JoystickAxis getXAxis()
+    {
+        return this.getAxis(JoystickAxis.X_AXIS);
+    }
+
+    @Override
+    public JoystickAxis getYAxis()
+    {
+        return this.getAxis(JoystickAxis.Y_AXIS);
+    }
+
+    @Override
+    public JoystickAxis getPovXAxis()
+    {
+        return this.getAxis(JoystickAxis.POV_X);
+    }
+
+    @Override
+    public JoystickAxis getPovYAxis()
+    {
+        return this.getAxis(JoystickAxis.POV_Y);
+    }
+}
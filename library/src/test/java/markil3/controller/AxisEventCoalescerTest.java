@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the coalescer only passes on the latest value of each axis.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class AxisEventCoalescerTest
+{
+    private JoystickEventBufferTest.Recorder recorder;
+    private AxisEventCoalescer coalescer;
+
+    @Before
+    public void setUp()
+    {
+        this.recorder = new JoystickEventBufferTest.Recorder();
+        this.coalescer = new AxisEventCoalescer(this.recorder);
+    }
+
+    @Test
+    public void keepsLatestValuePerAxis()
+    {
+        this.coalescer.onAxis(0, 2, 0.1F, 0.1F, 1, 0);
+        this.coalescer.onAxis(1, 0, 0.5F, 0.5F, 2, 0);
+        this.coalescer.onAxis(0, 2, 0.3F, 0.2F, 3, 0);
+        this.coalescer.onAxis(0, 2, 0.4F, 0.4F, 4, 40);
+        assertTrue(this.recorder.events.isEmpty());
+
+        assertEquals(2, this.coalescer.flush());
+        assertEquals(2, this.recorder.events.size());
+        /*
+         * Axes are passed on in the order they first changed.
+         */
+        assertEquals("axis 0:2=0.4/0.4@4~40", this.recorder.events.get(0));
+        assertEquals("axis 1:0=0.5/0.5@2", this.recorder.events.get(1));
+        assertEquals(2, this.coalescer.getCollapsedCount());
+    }
+
+    @Test
+    public void flushStartsOver()
+    {
+        this.coalescer.onAxis(0, 0, 1F, 1F, 1, 0);
+        this.coalescer.flush();
+        assertEquals(0, this.coalescer.flush());
+        this.coalescer.onAxis(0, 0, -1F, -1F, 2, 0);
+        assertEquals(1, this.coalescer.flush());
+        assertEquals("axis 0:0=-1.0/-1.0@2", this.recorder.events.get(1));
+        assertEquals(0, this.coalescer.getCollapsedCount());
+    }
+
+    @Test
+    public void buttonsPassStraightThrough()
+    {
+        this.coalescer.onAxis(0, 0, 1F, 1F, 1, 0);
+        this.coalescer.onButton(0, 4, true, 2, 0);
+        assertEquals(1, this.recorder.events.size());
+        assertEquals("button 0:4=true@2", this.recorder.events.get(0));
+    }
+
+    @Test
+    public void clearForgetsPendingAxes()
+    {
+        this.coalescer.onAxis(3, 7, 1F, 1F, 1, 0);
+        this.coalescer.clear();
+        assertEquals(0, this.coalescer.flush());
+        this.coalescer.onAxis(3, 7, 0.5F, 0.5F, 2, 0);
+        assertEquals(1, this.coalescer.flush());
+    }
+
+    @Test
+    public void ignoresNegativeIds()
+    {
+        this.coalescer.onAxis(-1, 0, 1F, 1F, 1, 0);
+        this.coalescer.onAxis(0, -1, 1F, 1F, 1, 0);
+        assertEquals(0, this.coalescer.flush());
+    }
+}
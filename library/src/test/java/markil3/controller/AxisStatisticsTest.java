@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the running statistics against values worked out directly.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class AxisStatisticsTest
+{
+    private static final float BIN_WIDTH = 2F / AxisStatistics.DEFAULT_BINS;
+
+    @Test
+    public void emptyStatistics()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getMean(), 0F);
+        assertEquals(0, stats.getVariance(), 0F);
+        assertTrue(Float.isNaN(stats.getMin()));
+        assertTrue(Float.isNaN(stats.getMax()));
+        assertTrue(Float.isNaN(stats.getPercentile(0.5F)));
+        assertEquals(0, stats.getSpread(0, 0.99F), 0F);
+    }
+
+    @Test
+    public void matchesDirectCalculation()
+    {
+        Random random = new Random(42);
+        AxisStatistics stats = new AxisStatistics();
+        float[] values = new float[10_000];
+        double sum = 0, squares = 0, mean;
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = (float) (random.nextGaussian() * 0.1 + 0.2);
+            stats.add(values[i]);
+            sum += values[i];
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        mean = sum / values.length;
+        for (float value : values)
+        {
+            squares += (value - mean) * (value - mean);
+        }
+
+        assertEquals(values.length, stats.getCount());
+        assertEquals(mean, stats.getMean(), 1e-6);
+        assertEquals(squares / (values.length - 1), stats.getVariance(), 1e-6);
+        assertEquals(Math.sqrt(squares / (values.length - 1)),
+                stats.getStandardDeviation(), 1e-5);
+        assertEquals(min, stats.getMin(), 0F);
+        assertEquals(max, stats.getMax(), 0F);
+        /*
+         * The median of a normal distribution is its mean.
+         */
+        assertEquals(0.2F, stats.getPercentile(0.5F), 0.01F);
+    }
+
+    @Test
+    public void ignoresNaN()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        stats.add(0.5F);
+        stats.add(Float.NaN);
+        assertEquals(1, stats.getCount());
+        assertEquals(0.5F, stats.getMean(), 0F);
+    }
+
+    @Test
+    public void percentilesStayWithinValues()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        for (int i = 0; i < 100; i++)
+        {
+            stats.add(-1F);
+        }
+        assertEquals(-1F, stats.getPercentile(0F), 0F);
+        assertEquals(-1F, stats.getPercentile(1F), 0F);
+
+        stats.reset();
+        for (int i = 1; i <= 100; i++)
+        {
+            stats.add(i / 100F);
+        }
+        assertEquals(0.5F, stats.getPercentile(0.5F), BIN_WIDTH);
+        assertEquals(0.99F, stats.getPercentile(0.99F), BIN_WIDTH);
+        assertEquals(1F, stats.getPercentile(1F), BIN_WIDTH);
+        assertEquals(0.01F, stats.getPercentile(0F), BIN_WIDTH);
+    }
+
+    @Test
+    public void outOfRangeValuesLandInOuterBins()
+    {
+        AxisStatistics stats = new AxisStatistics(4);
+        stats.add(-5F);
+        stats.add(5F);
+        assertEquals(1, stats.getHistogram(0));
+        assertEquals(1, stats.getHistogram(3));
+        assertEquals(-5F, stats.getMin(), 0F);
+        assertEquals(5F, stats.getMax(), 0F);
+    }
+
+    @Test
+    public void spreadIgnoresOccasionalMovement()
+    {
+        Random random = new Random(7);
+        AxisStatistics stats = new AxisStatistics();
+        float spread;
+        for (int i = 0; i < 1000; i++)
+        {
+            stats.add((random.nextFloat() - 0.5F) * 0.02F);
+        }
+        /*
+         * A handful of values from the stick being bumped.
+         */
+        for (int i = 0; i < 5; i++)
+        {
+            stats.add(0.9F);
+        }
+        /*
+         * The spread reaches the outer edge of the outermost bin, and the
+         * center may sit on the edge between two bins, so it can come out up
+         * to two bins wide, but never too narrow.
+         */
+        spread = stats.getSpread(0, 0.99F);
+        assertTrue(spread >= 0.0099F);
+        assertTrue(spread <= 0.01F + 2 * BIN_WIDTH);
+        assertEquals(0.9F, stats.getSpread(0, 1F), 0.0001F);
+    }
+
+    @Test
+    public void modeIsExactForRepeatedValues()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        assertTrue(Float.isNaN(stats.getMode()));
+        stats.add(-1F);
+        assertEquals(-1F, stats.getMode(), 0F);
+        for (int i = 0; i < 10; i++)
+        {
+            stats.add(0.0123F);
+        }
+        assertEquals(0.0123F, stats.getMode(), 0.00001F);
+    }
+
+    @Test
+    public void modeIgnoresMovement()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        for (int i = 0; i < 100; i++)
+        {
+            stats.add(0.02F);
+        }
+        /*
+         * A stick pushed over and let go, reported by a backend that only
+         * sends changes.
+         */
+        for (int i = 1; i <= 50; i++)
+        {
+            stats.add(i / 50F);
+            stats.add(-i / 50F);
+        }
+        assertEquals(0.02F, stats.getMode(), 0.001F);
+        assertTrue(Math.abs(stats.getMean() - 0.02F) > 0.005F);
+    }
+
+    @Test
+    public void spreadLeavesOutValuesBeyondLimit()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        for (int i = 0; i < 10; i++)
+        {
+            stats.add(0F);
+            stats.add(0.9F);
+        }
+        assertEquals(0.9F, stats.getSpread(0, 0.99F), 0.0001F);
+        assertEquals(BIN_WIDTH, stats.getSpread(0, 0.99F, 0.5F), 0.0001F);
+        assertEquals(0.5F, stats.getSpread(0, 1F, 0.5F), 0.5F);
+        assertEquals(0F, stats.getSpread(-0.5F, 1F, 0.1F), 0F);
+    }
+
+    @Test
+    public void resetClearsEverything()
+    {
+        AxisStatistics stats = new AxisStatistics();
+        stats.add(0.5F);
+        stats.add(-0.5F);
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertTrue(Float.isNaN(stats.getMin()));
+        assertTrue(Float.isNaN(stats.getMode()));
+        for (int i = 0; i < stats.getBinCount(); i++)
+        {
+            assertEquals(0, stats.getHistogram(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoBins()
+    {
+        new AxisStatistics(0);
+    }
+}
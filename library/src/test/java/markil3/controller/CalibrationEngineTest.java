@@ -0,0 +1,482 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.JoystickAxis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a calibration through the engine without any screen.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class CalibrationEngineTest
+{
+    private static final String[] AXES = {"Axis 0", "Axis 1", "Axis 2"};
+    private static final String[] BUTTONS = {"Btn 0", "Btn 1", "Btn 2",
+            "Btn 3"};
+
+    /**
+     * Writes down what the engine tells its listener.
+     */
+    private static class Recorder implements CalibrationEngine.Listener
+    {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void calibrationStarted(CalibrationEngine engine)
+        {
+            this.events.add("started");
+        }
+
+        @Override
+        public void promptStarted(CalibrationEngine engine, String logicalId,
+                                  boolean axis, boolean positive)
+        {
+            this.events.add("prompt " + (axis ? "axis " +
+                    (positive ? "+" : "-") : "button ") + logicalId);
+        }
+
+        @Override
+        public void promptEnded(CalibrationEngine engine, String logicalId,
+                                boolean axis, boolean positive)
+        {
+            this.events.add("end " + logicalId);
+        }
+
+        @Override
+        public void elementFocused(CalibrationEngine engine, String name,
+                                   boolean axis, float value)
+        {
+            this.events.add("focus " + name + "=" + value);
+        }
+
+        @Override
+        public void focusLost(CalibrationEngine engine)
+        {
+            this.events.add("lost");
+        }
+
+        @Override
+        public void calibrationFinished(CalibrationEngine engine)
+        {
+            this.events.add("finished");
+        }
+
+        List<String> prompts()
+        {
+            List<String> prompts = new ArrayList<>();
+            for (String event : this.events)
+            {
+                if (event.startsWith("prompt "))
+                {
+                    prompts.add(event.substring(7));
+                }
+            }
+            return prompts;
+        }
+
+        String last()
+        {
+            return this.events.get(this.events.size() - 1);
+        }
+    }
+
+    private CalibrationEngine engine;
+    private Recorder recorder;
+
+    @Before
+    public void setUp()
+    {
+        this.engine = new CalibrationEngine("Pad", AXES, BUTTONS);
+        this.recorder = new Recorder();
+        this.engine.setListener(this.recorder);
+    }
+
+    /**
+     * Sends resting values for every axis, then starts the calibration.
+     */
+    private void start()
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            for (int axis = 0; axis < AXES.length; axis++)
+            {
+                this.engine.onAxis(axis, 0F);
+            }
+        }
+        this.engine.onButton(0, true);
+        this.engine.onButton(0, false);
+    }
+
+    /**
+     * Holds an axis at a value until the prompt is answered, then lets go.
+     */
+    private void holdAxis(int axisId, float value)
+    {
+        this.engine.onAxis(axisId, value);
+        while (this.engine.isHolding())
+        {
+            this.engine.update(0.1F);
+            if (this.engine.isHolding())
+            {
+                this.engine.onAxis(axisId, value);
+            }
+        }
+        this.engine.onAxis(axisId, 0F);
+    }
+
+    private void holdButton(int buttonId)
+    {
+        this.engine.onButton(buttonId, true);
+        this.engine.update(0.6F);
+        this.engine.update(0.6F);
+        this.engine.onButton(buttonId, false);
+    }
+
+    private void skipButtons()
+    {
+        while (this.engine.getStage() == CalibrationEngine.Stage.BUTTONS)
+        {
+            this.engine.skip();
+        }
+    }
+
+    @Test
+    public void waitsForButtonRelease()
+    {
+        this.engine.onAxis(0, 0.9F);
+        this.engine.onButton(1, true);
+        assertEquals(CalibrationEngine.Stage.WAITING, this.engine.getStage());
+        assertTrue(this.recorder.events.isEmpty());
+
+        this.engine.onButton(1, false);
+        assertEquals(CalibrationEngine.Stage.BUTTONS, this.engine.getStage());
+        assertEquals("started", this.recorder.events.get(0));
+        assertEquals("prompt button " + JoystickPreviewScreen.ACTION_TOP,
+                this.recorder.events.get(1));
+    }
+
+    @Test
+    public void promptsInOrder()
+    {
+        this.start();
+        while (this.engine.getStage() != CalibrationEngine.Stage.FINISHED)
+        {
+            this.engine.skip();
+        }
+        assertEquals(Arrays.asList(
+                "button " + JoystickPreviewScreen.ACTION_TOP,
+                "button " + JoystickPreviewScreen.ACTION_RIGHT,
+                "button " + JoystickPreviewScreen.ACTION_BOTTOM,
+                "button " + JoystickPreviewScreen.ACTION_LEFT,
+                "button " + JoystickPreviewScreen.L1,
+                "button " + JoystickPreviewScreen.R1,
+                "button " + JoystickPreviewScreen.L2,
+                "button " + JoystickPreviewScreen.R2,
+                "button " + JoystickPreviewScreen.SELECT,
+                "button " + JoystickPreviewScreen.START,
+                "button " + JoystickPreviewScreen.L3,
+                "button " + JoystickPreviewScreen.R3,
+                "axis -" + JoystickAxis.X_AXIS,
+                "axis +" + JoystickAxis.X_AXIS,
+                "axis -" + JoystickAxis.Y_AXIS,
+                "axis +" + JoystickAxis.Y_AXIS,
+                "axis -" + JoystickAxis.Z_AXIS,
+                "axis +" + JoystickAxis.Z_AXIS,
+                "axis -" + JoystickAxis.Z_ROTATION,
+                "axis +" + JoystickAxis.Z_ROTATION,
+                "axis -" + JoystickAxis.POV_X,
+                "axis +" + JoystickAxis.POV_X,
+                "axis -" + JoystickAxis.POV_Y,
+                "axis +" + JoystickAxis.POV_Y), this.recorder.prompts());
+        assertEquals("finished", this.recorder.last());
+
+        /*
+         * Nothing happens once the calibration is over.
+         */
+        this.engine.skip();
+        this.engine.onButton(2, true);
+        assertEquals("finished", this.recorder.last());
+    }
+
+    @Test
+    public void skipLeavesPromptUnmapped()
+    {
+        this.start();
+        this.engine.skip();
+        assertEquals("end " + JoystickPreviewScreen.ACTION_TOP,
+                this.recorder.events.get(2));
+        assertEquals(-1,
+                this.engine.getMappedButton(JoystickPreviewScreen.ACTION_TOP));
+        assertEquals("prompt button " + JoystickPreviewScreen.ACTION_RIGHT,
+                this.recorder.last());
+    }
+
+    @Test
+    public void buttonMustBeHeldForHoldTime()
+    {
+        this.start();
+        this.engine.onButton(3, true);
+        assertTrue(this.engine.isHolding());
+        assertEquals("focus Btn 3=1.0", this.recorder.last());
+
+        this.engine.update(0.6F);
+        assertEquals(0.4F, this.engine.getHoldTimeLeft(), 0.0001F);
+        assertEquals(-1,
+                this.engine.getMappedButton(JoystickPreviewScreen.ACTION_TOP));
+
+        this.engine.update(0.6F);
+        assertFalse(this.engine.isHolding());
+        assertEquals(3,
+                this.engine.getMappedButton(JoystickPreviewScreen.ACTION_TOP));
+        assertEquals("prompt button " + JoystickPreviewScreen.ACTION_RIGHT,
+                this.recorder.last());
+    }
+
+    @Test
+    public void holdTimeCanBeChanged()
+    {
+        this.engine.setHoldTime(0.25F);
+        this.start();
+        this.engine.onButton(2, true);
+        this.engine.update(0.3F);
+        assertEquals(2,
+                this.engine.getMappedButton(JoystickPreviewScreen.ACTION_TOP));
+    }
+
+    @Test
+    public void releasingEarlyLosesFocus()
+    {
+        this.start();
+        this.engine.onButton(3, true);
+        this.engine.update(0.5F);
+        this.engine.onButton(3, false);
+        assertEquals("lost", this.recorder.last());
+        assertFalse(this.engine.isHolding());
+        assertEquals(0, this.engine.getHoldTimeLeft(), 0F);
+
+        this.engine.update(1F);
+        assertEquals(-1,
+                this.engine.getMappedButton(JoystickPreviewScreen.ACTION_TOP));
+    }
+
+    @Test
+    public void buttonsPressedAtRestAreIgnored()
+    {
+        /*
+         * Button 2 reports being pressed while the controller is idle.
+         */
+        this.engine.onButton(2, true);
+        this.engine.onButton(0, false);
+        this.engine.onButton(2, true);
+        assertFalse(this.engine.isHolding());
+    }
+
+    @Test
+    public void axisFocusNeedsThreshold()
+    {
+        this.start();
+        this.skipButtons();
+        this.engine.onAxis(1, 0.3F);
+        assertFalse(this.engine.isHolding());
+        this.engine.onAxis(1, -0.8F);
+        assertTrue(this.engine.isHolding());
+        assertEquals("focus Axis 1=-0.8", this.recorder.last());
+
+        /*
+         * Flipping the axis over starts the hold again.
+         */
+        this.engine.update(0.5F);
+        this.engine.onAxis(1, 0.8F);
+        assertEquals(1F, this.engine.getHoldTimeLeft(), 0F);
+
+        this.engine.onAxis(1, 0.1F);
+        assertEquals("lost", this.recorder.last());
+    }
+
+    @Test
+    public void mapsAxesWithRange()
+    {
+        this.start();
+        this.skipButtons();
+        this.holdAxis(2, -1F);
+        assertEquals(2, this.engine.getMappedAxis(JoystickAxis.X_AXIS));
+        assertEquals("prompt axis +" + JoystickAxis.X_AXIS,
+                this.recorder.last());
+        this.holdAxis(2, 0.8F);
+        /*
+         * The shorter direction decides the scale.
+         */
+        assertEquals(1.25F, this.engine.getScale(JoystickAxis.X_AXIS), 0.01F);
+        assertEquals(0F, this.engine.getCenter(2), 0F);
+        assertEquals(-1, this.engine.getMappedButton(JoystickAxis.X_AXIS));
+    }
+
+    @Test
+    public void movementBeforeStartDoesNotMoveCenter()
+    {
+        for (int i = 0; i < 1000; i++)
+        {
+            this.engine.onAxis(1, 0.01F * ((i % 3) - 1));
+        }
+        /*
+         * The stick is flicked all the way and let go while waiting, with the
+         * backend only reporting changes.
+         */
+        for (int i = 1; i <= 10; i++)
+        {
+            this.engine.onAxis(1, i / 10F);
+        }
+        for (int i = 9; i >= 0; i--)
+        {
+            this.engine.onAxis(1, i / 10F);
+        }
+        this.engine.onButton(0, false);
+        this.skipButtons();
+        this.holdAxis(1, -1F);
+        this.holdAxis(1, 1F);
+
+        assertEquals(0F, this.engine.getCenter(1), 0.01F);
+        assertEquals(1F, this.engine.getScale(JoystickAxis.X_AXIS), 0.02F);
+        assertTrue(this.engine.getDeadZone(JoystickAxis.X_AXIS) < 0.05F);
+    }
+
+    @Test
+    public void singleRestingValueIsEnough()
+    {
+        Properties props = new Properties();
+        /*
+         * A backend that only reports changes sends a trigger's resting value
+         * once.
+         */
+        this.engine.onAxis(0, -1F);
+        this.engine.onButton(0, false);
+        this.skipButtons();
+        this.holdAxis(0, 1F);
+
+        assertEquals(-1F, this.engine.getCenter(0), 0F);
+        assertEquals(0F, this.engine.getDeadZone(JoystickAxis.X_AXIS), 0F);
+        /*
+         * Pressing the trigger answered the negative prompt, so it comes out
+         * inverted, reaching -1 when pressed all the way.
+         */
+        assertEquals(-0.5F, this.engine.getScale(JoystickAxis.X_AXIS), 0F);
+        this.engine.writeProperties(props, false);
+        assertEquals(JoystickAxis.X_AXIS + "[1.0,0.0]",
+                props.getProperty("axis.Pad.Axis 0"));
+    }
+
+    @Test
+    public void axisWithoutRestingValuesIsCentered()
+    {
+        this.engine.onButton(0, false);
+        this.skipButtons();
+        this.holdAxis(2, -1F);
+        assertEquals(0F, this.engine.getCenter(2), 0F);
+        assertEquals(0F, this.engine.getDeadZone(JoystickAxis.X_AXIS), 0F);
+        assertEquals(1F, this.engine.getScale(JoystickAxis.X_AXIS), 0.01F);
+    }
+
+    @Test
+    public void writesMappedElements()
+    {
+        Properties props = new Properties();
+        this.start();
+        this.holdButton(3);
+        this.skipButtons();
+        this.holdAxis(1, -1F);
+        this.holdAxis(1, 1F);
+
+        this.engine.writeProperties(props, false);
+        assertEquals(2, props.size());
+        assertEquals(JoystickPreviewScreen.ACTION_TOP,
+                props.getProperty("button.Pad.Btn 3"));
+        assertEquals(JoystickAxis.X_AXIS + "[-1.0,1.0]",
+                props.getProperty("axis.Pad.Axis 1"));
+
+        props.clear();
+        this.engine.writeProperties(props, true);
+        assertEquals(AXES.length + BUTTONS.length, props.size());
+        assertEquals("null", props.getProperty("axis.Pad.Axis 0"));
+        assertEquals("null", props.getProperty("button.Pad.Btn 0"));
+        assertEquals(JoystickAxis.X_AXIS + "[-1.0,1.0]",
+                props.getProperty("axis.Pad.Axis 1"));
+    }
+
+    @Test
+    public void elementsMappedToThemselvesAreLeftOut()
+    {
+        Properties props = new Properties();
+        CalibrationEngine engine = new CalibrationEngine("Pad",
+                new String[0],
+                new String[]{JoystickPreviewScreen.ACTION_TOP});
+        engine.onButton(0, false);
+        engine.onButton(0, true);
+        engine.update(1.1F);
+        assertEquals(0, engine.getMappedButton(
+                JoystickPreviewScreen.ACTION_TOP));
+
+        engine.writeProperties(props, false);
+        assertTrue(props.isEmpty());
+        engine.writeProperties(props, true);
+        assertEquals(JoystickPreviewScreen.ACTION_TOP,
+                props.getProperty("button.Pad." +
+                        JoystickPreviewScreen.ACTION_TOP));
+    }
+
+    @Test
+    public void mergesMappingsOfIdenticalControllers()
+    {
+        assertEquals("x[-1.5,0.5]", CalibrationEngine.mergeMappings(
+                Arrays.asList("x[-1.0,1.0]", "null", "x[-2.0,0.0]")));
+        assertEquals("x[-1.0,1.0]", CalibrationEngine.mergeMappings(
+                Arrays.asList("null", "x", "x[-1.0,1.0]")));
+        assertEquals("0", CalibrationEngine.mergeMappings(
+                Arrays.asList("null", "0", "0")));
+        assertEquals("null", CalibrationEngine.mergeMappings(
+                Arrays.asList("null", "null")));
+        /*
+         * A range that can't be read is left out of the average.
+         */
+        assertEquals("x[0.0,2.0]", CalibrationEngine.mergeMappings(
+                Arrays.asList("x[0.0,2.0]", "x[a,b]")));
+    }
+
+    @Test
+    public void differentLogicalIdsCannotBeMerged()
+    {
+        assertNull(CalibrationEngine.mergeMappings(
+                Arrays.asList("x[-1.0,1.0]", "y[-1.0,1.0]")));
+        assertNull(CalibrationEngine.mergeMappings(
+                Arrays.asList("null", "0", "1")));
+    }
+
+    @Test
+    public void promptTexts()
+    {
+        assertEquals("Start", CalibrationEngine.getPromptText(
+                JoystickPreviewScreen.START, false));
+        assertEquals("D-Pad (Vertical)", CalibrationEngine.getPromptText(
+                JoystickAxis.POV_Y, true));
+        assertNull(CalibrationEngine.getPromptText(JoystickAxis.POV_Y,
+                false));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that saving a calibration keeps what the file already held, and
+ * never replaces a file it couldn't read.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class CalibrationWriterTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Properties calibration(String key, String value)
+    {
+        Properties props = new Properties();
+        props.setProperty(key, value);
+        return props;
+    }
+
+    private static Properties load(File file) throws IOException
+    {
+        Properties props = new Properties();
+        try (FileInputStream input = new FileInputStream(file))
+        {
+            props.load(input);
+        }
+        return props;
+    }
+
+    @Test
+    public void createsNewFile() throws IOException
+    {
+        File file = new File(this.folder.getRoot(), "mapping.properties");
+        Properties written = CalibrationWriter.write(file,
+                calibration("button.Pad.0", "1"));
+        assertEquals("1", written.getProperty("button.Pad.0"));
+        assertEquals(written, load(file));
+        assertEquals(1, this.folder.getRoot().list().length);
+    }
+
+    @Test
+    public void keepsExistingEntries() throws IOException
+    {
+        File file = this.folder.newFile();
+        CalibrationWriter.write(file, calibration("button.Old.0", "2"));
+        CalibrationWriter.write(file, calibration("axis.Pad.x", "y"));
+        CalibrationWriter.write(file, calibration("axis.Pad.x", "x"));
+
+        Properties props = load(file);
+        assertEquals(2, props.size());
+        assertEquals("2", props.getProperty("button.Old.0"));
+        assertEquals("x", props.getProperty("axis.Pad.x"));
+    }
+
+    @Test
+    public void unreadableFileIsLeftAlone() throws IOException
+    {
+        File file = this.folder.newFile();
+        byte[] contents = "button.Old.0=2\nbroken=\\uZZZZ\n"
+                .getBytes(StandardCharsets.ISO_8859_1);
+        Files.write(file.toPath(), contents);
+        try
+        {
+            CalibrationWriter.write(file, calibration("axis.Pad.x", "x"));
+            fail("Overwrote a file that couldn't be read");
+        }
+        catch (IOException e)
+        {
+            assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+            assertEquals(1, this.folder.getRoot().list().length);
+        }
+    }
+}
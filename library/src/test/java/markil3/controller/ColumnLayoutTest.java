@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Quad;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks where a column layout puts its children, and that it leaves alone
+ * the ones that didn't need to move.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class ColumnLayoutTest
+{
+    private BitmapFont font;
+    private Node container;
+    private ColumnLayout layout;
+
+    @Before
+    public void setUp()
+    {
+        this.font = TestFonts.create();
+        this.container = new Node();
+        this.layout = new ColumnLayout(this.container);
+    }
+
+    private BitmapText label(String text)
+    {
+        BitmapText label = new BitmapText(this.font);
+        label.setText(text);
+        this.container.attachChild(label);
+        return label;
+    }
+
+    /**
+     * Creates a stand-in for a button made by
+     * {@link GUIUtils#createButton(GuiResources, boolean, String, String)}.
+     */
+    private Node button(float width, float height)
+    {
+        Node button = new Node();
+        button.setUserData(GUIUtils.BUTTON_ID, "test");
+        button.attachChild(new Geometry("background", new Quad(width,
+                height)));
+        this.container.attachChild(button);
+        return button;
+    }
+
+    /**
+     * Obtains the width of a line of text in the test font. The last
+     * character counts by its own width rather than its advance.
+     */
+    private static float width(String text)
+    {
+        return TestFonts.ADVANCE * (text.length() - 1) + 8;
+    }
+
+    private static void assertAt(float x, float y, Spatial child)
+    {
+        Vector3f position = child.getLocalTranslation();
+        assertEquals(x, position.x, 0.0001F);
+        assertEquals(y, position.y, 0.0001F);
+        assertEquals(0, position.z, 0.0001F);
+    }
+
+    @Test
+    public void linesUpChildren()
+    {
+        BitmapText title = this.label("Title");
+        Node button = this.button(60, 25);
+        BitmapText footer = this.label("Hi");
+        float height = this.layout.layout();
+
+        assertAt(-width("Title") / 2, 0, title);
+        assertAt(-30, -TestFonts.LINE_HEIGHT - 10, button);
+        assertAt(-width("Hi") / 2, -TestFonts.LINE_HEIGHT - 35, footer);
+        assertEquals(2 * TestFonts.LINE_HEIGHT + 35, height, 0F);
+    }
+
+    @Test
+    public void unchangedColumnIsNotMoved()
+    {
+        BitmapText title = this.label("Title");
+        float height = this.layout.layout();
+        title.setLocalTranslation(5, 5, 5);
+
+        assertEquals(height, this.layout.layout(), 0F);
+        assertEquals(new Vector3f(5, 5, 5), title.getLocalTranslation());
+
+        this.layout.invalidate();
+        this.layout.layout();
+        assertAt(-width("Title") / 2, 0, title);
+    }
+
+    @Test
+    public void onlyChildrenFromChangeDownMove()
+    {
+        BitmapText title = this.label("Title");
+        BitmapText middle = this.label("Middle");
+        BitmapText footer = this.label("Footer");
+        this.layout.layout();
+        title.setLocalTranslation(5, 5, 5);
+
+        middle.setText("Longer middle");
+        this.layout.layout();
+        assertEquals(new Vector3f(5, 5, 5), title.getLocalTranslation());
+        assertAt(-width("Longer middle") / 2, -TestFonts.LINE_HEIGHT,
+                middle);
+        assertAt(-width("Footer") / 2, -2 * TestFonts.LINE_HEIGHT, footer);
+    }
+
+    @Test
+    public void removingChildMovesRestUp()
+    {
+        this.label("Title");
+        Node button = this.button(40, 30);
+        BitmapText footer = this.label("Footer");
+        this.layout.layout();
+
+        this.container.detachChild(button);
+        assertEquals(2 * TestFonts.LINE_HEIGHT, this.layout.layout(), 0F);
+        assertAt(-width("Footer") / 2, -TestFonts.LINE_HEIGHT, footer);
+    }
+
+    @Test
+    public void replacedButtonIsMeasuredAgain()
+    {
+        Node button = this.button(40, 30);
+        BitmapText footer = this.label("Footer");
+        this.layout.layout();
+
+        ((Geometry) button.getChild(0)).setMesh(new Quad(80, 50));
+        assertEquals(60 + TestFonts.LINE_HEIGHT, this.layout.layout(), 0F);
+        assertAt(-40, -10, button);
+        assertAt(-width("Footer") / 2, -60, footer);
+    }
+}
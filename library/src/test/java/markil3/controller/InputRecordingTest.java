@@ -0,0 +1,284 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.app.LegacyApplication;
+import com.jme3.input.InputManager;
+import com.jme3.input.Joystick;
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.JoystickButton;
+import com.jme3.input.RawInputListener;
+import com.jme3.input.dummy.DummyKeyInput;
+import com.jme3.input.dummy.DummyMouseInput;
+import com.jme3.input.event.JoyAxisEvent;
+import com.jme3.input.event.JoyButtonEvent;
+import com.jme3.input.event.KeyInputEvent;
+import com.jme3.input.event.MouseButtonEvent;
+import com.jme3.input.event.MouseMotionEvent;
+import com.jme3.input.event.TouchEvent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that recordings read back the way they were written.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class InputRecordingTest
+{
+    /**
+     * Writes down the joystick events sent by a replayer.
+     */
+    private static class Target implements RawInputListener
+    {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void beginInput()
+        {
+        }
+
+        @Override
+        public void endInput()
+        {
+        }
+
+        @Override
+        public void onJoyAxisEvent(JoyAxisEvent evt)
+        {
+            this.events.add("axis " + evt.getJoyIndex() + ":" +
+                    evt.getAxisIndex() + "=" + evt.getValue());
+        }
+
+        @Override
+        public void onJoyButtonEvent(JoyButtonEvent evt)
+        {
+            this.events.add("button " + evt.getJoyIndex() + ":" +
+                    evt.getButtonIndex() + "=" + evt.isPressed());
+        }
+
+        @Override
+        public void onMouseMotionEvent(MouseMotionEvent evt)
+        {
+        }
+
+        @Override
+        public void onMouseButtonEvent(MouseButtonEvent evt)
+        {
+        }
+
+        @Override
+        public void onKeyEvent(KeyInputEvent evt)
+        {
+        }
+
+        @Override
+        public void onTouchEvent(TouchEvent evt)
+        {
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Creates a joystick whose axis and button IDs have gaps in them, like
+     * those of some real devices.
+     *
+     * @return The joystick.
+     */
+    private static VirtualJoystick createSparseJoystick()
+    {
+        VirtualJoystick joy = new VirtualJoystick(null, 2, "Sparse Pad");
+        joy.addAxis(0, JoystickAxis.X_AXIS, true);
+        joy.addAxis(3, JoystickAxis.Y_AXIS, true);
+        joy.addAxis(7, JoystickAxis.POV_X, false);
+        joy.addButton(2, "A");
+        joy.addButton(5, "B");
+        return joy;
+    }
+
+    private static byte[] record() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VirtualJoystick joy = createSparseJoystick();
+        InputRecording.Writer writer = new InputRecording.Writer(out, 0);
+        writer.describe(joy, 1000);
+        writer.axis(2, 3, 0.5F, 0.25F, 1500);
+        writer.axis(2, 7, -1F, -1F, 2500);
+        writer.button(2, 5, true, 4000);
+        writer.button(2, 5, false, 4100);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void roundTripKeepsRecordedIds() throws IOException
+    {
+        InputRecording.Reader reader = new InputRecording.Reader(
+                ByteBuffer.wrap(record()), null);
+        List<JoystickAxis> axes;
+        List<JoystickButton> buttons;
+
+        assertTrue(reader.next());
+        assertEquals(InputRecording.TAG_JOYSTICK, reader.tag);
+        assertEquals(2, reader.joystick.getJoyId());
+        assertEquals("Sparse Pad", reader.joystick.getName());
+        axes = reader.joystick.getAxes();
+        assertEquals(3, axes.size());
+        assertEquals(0, axes.get(0).getAxisId());
+        assertEquals(3, axes.get(1).getAxisId());
+        assertEquals(7, axes.get(2).getAxisId());
+        assertEquals(JoystickAxis.Y_AXIS, axes.get(1).getName());
+        assertTrue(axes.get(1).isAnalog());
+        assertFalse(axes.get(2).isAnalog());
+        buttons = reader.joystick.getButtons();
+        assertEquals(2, buttons.size());
+        assertEquals(2, buttons.get(0).getButtonId());
+        assertEquals(5, buttons.get(1).getButtonId());
+        assertEquals("B", buttons.get(1).getName());
+        assertNotNull(JoystickEventBuffer.getAxis(reader.joystick, 7));
+        assertNotNull(JoystickEventBuffer.getButton(reader.joystick, 5));
+
+        assertTrue(reader.next());
+        assertEquals(InputRecording.TAG_AXIS | InputRecording.FLAG_RAW,
+                reader.tag);
+        assertEquals(500, reader.time);
+        assertEquals(3, reader.id);
+        assertEquals(0.5F, reader.value, 0F);
+        assertEquals(0.25F, reader.rawValue, 0F);
+
+        assertTrue(reader.next());
+        assertEquals(InputRecording.TAG_AXIS, reader.tag);
+        assertEquals(1500, reader.time);
+        assertEquals(7, reader.id);
+        assertEquals(-1F, reader.rawValue, 0F);
+
+        assertTrue(reader.next());
+        assertEquals(InputRecording.TAG_BUTTON_DOWN, reader.tag);
+        assertEquals(5, reader.id);
+        assertTrue(reader.next());
+        assertEquals(InputRecording.TAG_BUTTON_UP, reader.tag);
+        assertEquals(3100, reader.time);
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void replayLeavesNoGapsBetweenJoysticks() throws IOException
+    {
+        File file = this.folder.newFile();
+        LegacyApplication app = new LegacyApplication()
+        {
+            {
+                this.inputManager = new InputManager(new DummyMouseInput(),
+                        new DummyKeyInput(), null, null);
+            }
+        };
+        InputReplayer replayer = new InputReplayer(file);
+        Target target = new Target();
+        Joystick[] joysticks;
+        Files.write(file.toPath(), record());
+        replayer.addTarget(target);
+        replayer.setSpeed(0);
+        replayer.initialize(app.getStateManager(), app);
+        replayer.update(0.1F);
+
+        /*
+         * The recorded joystick has ID 2, but the input manager must not be
+         * handed empty slots for IDs 0 and 1.
+         */
+        joysticks = app.getInputManager().getJoysticks();
+        assertEquals(1, joysticks.length);
+        assertEquals(2, joysticks[0].getJoyId());
+        assertTrue(replayer.isFinished());
+        assertEquals(Arrays.asList("axis 2:3=0.5", "axis 2:7=-1.0",
+                "button 2:5=true", "button 2:5=false"), target.events);
+    }
+
+    @Test
+    public void recorderKeepsSpacingWithinFrame()
+    {
+        InputRecorder recorder = new InputRecorder(null);
+        /*
+         * Three events 4 ms apart, delivered together at the end of a frame.
+         */
+        assertEquals(20_000_000L, recorder.stamp(1_000_000, 20_000_000));
+        assertEquals(24_000_000L, recorder.stamp(5_000_000, 20_000_100));
+        assertEquals(28_000_000L, recorder.stamp(9_000_000, 20_000_200));
+        /*
+         * Events the backend didn't stamp fall back to when they arrived, but
+         * never go back in time.
+         */
+        assertEquals(28_000_000L, recorder.stamp(0, 27_000_000));
+        assertEquals(40_000_000L, recorder.stamp(0, 40_000_000));
+    }
+
+    @Test
+    public void truncatedRecordingReportsIOException() throws IOException
+    {
+        byte[] data = record();
+        /*
+         * Cutting the recording anywhere after the header must either end
+         * cleanly on a record boundary or fail with an IOException, never
+         * with a runtime exception.
+         */
+        for (int length = InputRecording.MAGIC.length + 1;
+             length < data.length; length++)
+        {
+            InputRecording.Reader reader = new InputRecording.Reader(
+                    ByteBuffer.wrap(Arrays.copyOf(data, length)), null);
+            try
+            {
+                while (reader.next())
+                {
+                }
+            }
+            catch (IOException e)
+            {
+                /*
+                 * Expected for cuts within a record.
+                 */
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void recordCutShortThrows() throws IOException
+    {
+        byte[] data = record();
+        InputRecording.Reader reader = new InputRecording.Reader(
+                ByteBuffer.wrap(Arrays.copyOf(data, data.length - 1)), null);
+        while (reader.next())
+        {
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException
+    {
+        new InputRecording.Reader(ByteBuffer.wrap(new byte[]{'J', 'M', 'C',
+                'X', InputRecording.VERSION}), null);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.Joystick;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the event buffer hands events over in order and without losing
+ * any it accepted.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class JoystickEventBufferTest
+{
+    /**
+     * Writes down every event it receives.
+     */
+    static class Recorder implements JoystickEventBuffer.Handler
+    {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onAxis(int joyId, int axisId, float value, float rawValue,
+                           long time, long eventTime)
+        {
+            this.events.add("axis " + joyId + ":" + axisId + "=" + value +
+                    "/" + rawValue + "@" + time + stamp(eventTime));
+        }
+
+        @Override
+        public void onButton(int joyId, int buttonId, boolean pressed,
+                             long time, long eventTime)
+        {
+            this.events.add("button " + joyId + ":" + buttonId + "=" +
+                    pressed + "@" + time + stamp(eventTime));
+        }
+
+        private static String stamp(long eventTime)
+        {
+            return eventTime == 0 ? "" : "~" + eventTime;
+        }
+    }
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo()
+    {
+        assertEquals(8, new JoystickEventBuffer(5).capacity());
+        assertEquals(8, new JoystickEventBuffer(8).capacity());
+        assertEquals(JoystickEventBuffer.DEFAULT_CAPACITY,
+                new JoystickEventBuffer().capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity()
+    {
+        new JoystickEventBuffer(0);
+    }
+
+    @Test
+    public void drainsInOrder()
+    {
+        JoystickEventBuffer buffer = new JoystickEventBuffer(8);
+        Recorder recorder = new Recorder();
+        assertTrue(buffer.offerAxis(0, 1, 0.5F, 0.25F, 10, 7));
+        assertTrue(buffer.offerButton(1, 3, true, 11, 8));
+        assertTrue(buffer.offerAxis(0, 1, -1F, -1F, 12, 0));
+        assertEquals(3, buffer.size());
+
+        assertEquals(3, buffer.drain(recorder));
+        assertEquals(0, buffer.size());
+        assertEquals("axis 0:1=0.5/0.25@10~7", recorder.events.get(0));
+        assertEquals("button 1:3=true@11~8", recorder.events.get(1));
+        assertEquals("axis 0:1=-1.0/-1.0@12", recorder.events.get(2));
+    }
+
+    @Test
+    public void drainStopsAtMax()
+    {
+        JoystickEventBuffer buffer = new JoystickEventBuffer(8);
+        Recorder recorder = new Recorder();
+        for (int i = 0; i < 5; i++)
+        {
+            buffer.offerButton(0, i, true, i, 0);
+        }
+        assertEquals(2, buffer.drain(recorder, 2));
+        assertEquals(3, buffer.size());
+        assertEquals(3, buffer.drain(recorder));
+        assertEquals("button 0:2=true@2", recorder.events.get(2));
+    }
+
+    @Test
+    public void fullBufferDropsNewEvents()
+    {
+        JoystickEventBuffer buffer = new JoystickEventBuffer(4);
+        Recorder recorder = new Recorder();
+        for (int i = 0; i < 4; i++)
+        {
+            assertTrue(buffer.offerAxis(0, 0, i, i, i, 0));
+        }
+        assertFalse(buffer.offerAxis(0, 0, 4, 4, 4, 0));
+        assertFalse(buffer.offerButton(0, 0, false, 5, 0));
+        assertEquals(2, buffer.getDroppedCount());
+
+        buffer.drain(recorder);
+        assertEquals("axis 0:0=3.0/3.0@3", recorder.events.get(3));
+        assertTrue(buffer.offerAxis(0, 0, 6, 6, 6, 0));
+    }
+
+    @Test
+    public void clearDiscardsQueuedEvents()
+    {
+        JoystickEventBuffer buffer = new JoystickEventBuffer(4);
+        Recorder recorder = new Recorder();
+        buffer.offerButton(0, 0, true, 0, 0);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.drain(recorder));
+    }
+
+    @Test
+    public void handsOverEveryEventBetweenThreads()
+            throws InterruptedException
+    {
+        final int total = 200_000;
+        final JoystickEventBuffer buffer = new JoystickEventBuffer(64);
+        final long[] next = {0};
+        final boolean[] ordered = {true};
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++)
+            {
+                while (!buffer.offerAxis(0, 0, i, i, i, 0))
+                {
+                    Thread.yield();
+                }
+            }
+        });
+        JoystickEventBuffer.Handler consumer =
+                new JoystickEventBuffer.Handler()
+                {
+                    @Override
+                    public void onAxis(int joyId, int axisId, float value,
+                                       float rawValue, long time,
+                                       long eventTime)
+                    {
+                        if (time != next[0]++)
+                        {
+                            ordered[0] = false;
+                        }
+                    }
+
+                    @Override
+                    public void onButton(int joyId, int buttonId,
+                                         boolean pressed, long time,
+                                         long eventTime)
+                    {
+                        ordered[0] = false;
+                    }
+                };
+        producer.start();
+        while (next[0] < total)
+        {
+            if (buffer.drain(consumer) == 0)
+            {
+                Thread.yield();
+            }
+        }
+        producer.join();
+        assertTrue(ordered[0]);
+        assertEquals(total, next[0]);
+    }
+
+    @Test
+    public void looksUpJoysticksById()
+    {
+        VirtualJoystick first = new VirtualJoystick(null, 3, "First");
+        VirtualJoystick second = new VirtualJoystick(null, 0, "Second");
+        VirtualJoystick third = new VirtualJoystick(null, 5, "Third");
+        /*
+         * A compacted array, as LWJGL 3 reports after a controller in an
+         * earlier slot was unplugged.
+         */
+        Joystick[] joysticks = {first, second, third};
+
+        assertSame(first, JoystickEventBuffer.getJoystick(joysticks, 3));
+        assertSame(second, JoystickEventBuffer.getJoystick(joysticks, 0));
+        assertSame(third, JoystickEventBuffer.getJoystick(joysticks, 5));
+        assertNull(JoystickEventBuffer.getJoystick(joysticks, 1));
+        assertNull(JoystickEventBuffer.getJoystick(joysticks, 2));
+    }
+
+    @Test
+    public void looksUpElementsById()
+    {
+        VirtualJoystick joy = new VirtualJoystick(null, 1, "Sparse");
+        joy.addAxis(4, "x", true);
+        joy.addAxis(0, "y", true);
+        joy.addButton(9, "A");
+        Joystick[] joysticks = {null, joy};
+
+        assertSame(joy, JoystickEventBuffer.getJoystick(joysticks, 1));
+        assertNull(JoystickEventBuffer.getJoystick(joysticks, 0));
+        assertNull(JoystickEventBuffer.getJoystick(joysticks, 2));
+        assertNull(JoystickEventBuffer.getJoystick(null, 0));
+        assertNull(JoystickEventBuffer.getJoystick(joysticks, -1));
+
+        assertEquals("x", JoystickEventBuffer.getAxis(joy, 4).getName());
+        assertEquals("y", JoystickEventBuffer.getAxis(joy, 0).getName());
+        assertNull(JoystickEventBuffer.getAxis(joy, 1));
+        assertEquals("A", JoystickEventBuffer.getButton(joy, 9).getName());
+        assertNull(JoystickEventBuffer.getButton(joy, 0));
+    }
+}
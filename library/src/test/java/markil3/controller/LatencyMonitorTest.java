@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the backend latency is measured against the clock offset
+ * estimated for each joystick.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class LatencyMonitorTest
+{
+    private LatencyMonitor monitor;
+
+    @Before
+    public void setUp()
+    {
+        this.monitor = new LatencyMonitor();
+    }
+
+    @Test
+    public void backendLatencyIsMeasuredFromFastestDelivery()
+    {
+        /*
+         * The backend's clock is 9 ms behind, then an event takes 2 ms
+         * longer, then one arrives 0.5 ms faster than the first.
+         */
+        this.monitor.record(0, 10_000_000, 1_000_000);
+        this.monitor.record(0, 20_000_000, 9_000_000);
+        this.monitor.record(0, 30_000_000, 21_500_000);
+        this.monitor.record(0, 40_000_000, 0);
+        this.monitor.postRender();
+
+        assertEquals(4, this.monitor.getSampleCount(0));
+        assertEquals(3, this.monitor.getBackendSampleCount(0));
+        assertEquals(2F, this.monitor.getBackendMaxLatency(0), 0F);
+        assertEquals(2F / 3F, this.monitor.getBackendMeanLatency(0), 0.001F);
+
+        /*
+         * The faster delivery is remembered in later frames.
+         */
+        this.monitor.record(0, 50_000_000, 41_000_000);
+        this.monitor.postRender();
+        assertEquals(2.5F / 4F, this.monitor.getBackendMeanLatency(0),
+                0.001F);
+    }
+
+    @Test
+    public void eachJoystickHasItsOwnClock()
+    {
+        this.monitor.record(0, 10_000_000, 1_000_000);
+        this.monitor.record(1, 10_000_000, 10_000_000);
+        this.monitor.record(1, 20_000_000, 19_000_000);
+        this.monitor.postRender();
+
+        assertEquals(0F, this.monitor.getBackendMaxLatency(0), 0F);
+        assertEquals(1F, this.monitor.getBackendMaxLatency(1), 0F);
+        assertEquals(0, this.monitor.getBackendSampleCount(2));
+    }
+
+    @Test
+    public void resetForgetsClockOffset()
+    {
+        this.monitor.record(0, 10_000_000, 5_000_000);
+        this.monitor.postRender();
+        this.monitor.reset();
+        assertEquals(0, this.monitor.getSampleCount(0));
+
+        this.monitor.record(0, 20_000_000, 10_000_000);
+        this.monitor.postRender();
+        assertEquals(0F, this.monitor.getBackendMaxLatency(0), 0F);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.input.JoystickAxis;
+import com.jme3.input.event.JoyAxisEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which axes the filter considers noisy.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class NoisyAxisFilterTest
+{
+    private static final int RATE = 144;
+    private static final long STEP = 1_000_000_000L / RATE;
+
+    private NoisyAxisFilter filter;
+    private JoystickAxis axis;
+
+    @Before
+    public void setUp()
+    {
+        VirtualJoystick joy = VirtualJoystick.createGamepad(null, 0, "Pad");
+        this.filter = new NoisyAxisFilter();
+        this.axis = joy.getAxes().get(2);
+    }
+
+    /**
+     * Sends an event every frame at 144 frames per second.
+     *
+     * @param seconds - How long to send events for.
+     * @param values - The values to cycle through.
+     * @return The number of events that were consumed.
+     */
+    private int send(int seconds, float... values)
+    {
+        int consumed = 0;
+        for (int i = 0; i < seconds * RATE; i++)
+        {
+            float value = values[i % values.length];
+            JoyAxisEvent evt = new JoyAxisEvent(this.axis, value, value);
+            this.filter.onJoyAxisEvent(evt, i * STEP);
+            if (evt.isConsumed())
+            {
+                consumed++;
+            }
+        }
+        return consumed;
+    }
+
+    @Test
+    public void restingAxisIsNotNoisy()
+    {
+        assertEquals(0, this.send(5, 0F));
+        assertFalse(this.filter.isNoisy(this.axis));
+        assertEquals(0, this.filter.getSuppressedCount());
+    }
+
+    @Test
+    public void restingAwayFromCenterIsNotNoisy()
+    {
+        assertEquals(0, this.send(5, -1F));
+        assertFalse(this.filter.isNoisy(this.axis));
+    }
+
+    @Test
+    public void jitteringAxisIsNoisy()
+    {
+        this.send(5, 0F, 0.001F);
+        assertTrue(this.filter.isNoisy(this.axis));
+        assertTrue(this.filter.getSuppressedCount() > 0);
+    }
+
+    @Test
+    public void movingAxisIsNotNoisy()
+    {
+        float[] sweep = new float[RATE];
+        for (int i = 0; i < sweep.length; i++)
+        {
+            sweep[i] = (float) Math.sin(i * 2 * Math.PI / sweep.length);
+        }
+        this.send(5, sweep);
+        assertFalse(this.filter.isNoisy(this.axis));
+    }
+}
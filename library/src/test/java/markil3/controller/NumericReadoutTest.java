@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how values are formatted into a readout.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+public class NumericReadoutTest
+{
+    private NumericReadout readout;
+
+    @Before
+    public void setUp()
+    {
+        this.readout = new NumericReadout(TestFonts.create(), 8);
+    }
+
+    @Test
+    public void formatsDecimals()
+    {
+        this.readout.setValue(0.5F);
+        assertEquals("0.5000  ", this.readout.getText());
+        this.readout.setValue(-0.25F);
+        assertEquals("-0.2500 ", this.readout.getText());
+        this.readout.setValue(123.456F);
+        assertEquals("123.4560", this.readout.getText());
+    }
+
+    @Test
+    public void roundsToDecimals()
+    {
+        this.readout.setValue(0.99999F);
+        assertEquals("1.0000  ", this.readout.getText());
+        this.readout.setDecimals(2);
+        this.readout.setValue(1.005F);
+        assertEquals("1.00    ", this.readout.getText());
+        this.readout.setDecimals(0);
+        this.readout.setValue(-7.6F);
+        assertEquals("-8      ", this.readout.getText());
+    }
+
+    @Test
+    public void negativeZeroHasNoSign()
+    {
+        this.readout.setValue(-0.00001F);
+        assertEquals("0.0000  ", this.readout.getText());
+    }
+
+    @Test
+    public void overflowShowsHashes()
+    {
+        this.readout.setValue(1234.5F);
+        assertEquals("########", this.readout.getText());
+        this.readout.setValue(Float.NEGATIVE_INFINITY);
+        assertEquals("########", this.readout.getText());
+    }
+
+    @Test
+    public void showsNaNAndBooleans()
+    {
+        this.readout.setValue(Float.NaN);
+        assertEquals("NaN     ", this.readout.getText());
+        this.readout.setValue(true);
+        assertEquals("true    ", this.readout.getText());
+        this.readout.setValue(false);
+        assertEquals("false   ", this.readout.getText());
+    }
+
+    @Test
+    public void rightAlignment()
+    {
+        this.readout.setRightAligned(true);
+        this.readout.setValue(0.5F);
+        assertEquals("  0.5000", this.readout.getText());
+        this.readout.setValue(true);
+        assertEquals("    true", this.readout.getText());
+    }
+
+    @Test
+    public void textIsCutToWidth()
+    {
+        this.readout.setText("abcdefghij");
+        assertEquals("abcdefgh", this.readout.getText());
+        assertEquals(8 * TestFonts.ADVANCE, this.readout.getLineWidth(), 0F);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Markil 3. All rights reserved.
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package markil3.controller;
+
+import com.jme3.font.BitmapCharacter;
+import com.jme3.font.BitmapCharacterSet;
+import com.jme3.font.BitmapFont;
+import com.jme3.material.Material;
+import com.jme3.material.MaterialDef;
+import com.jme3.shader.VarType;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+
+/**
+ * Builds fonts for tests, so that text can be measured without an asset
+ * manager or a renderer.
+ *
+ * @author Markil 3
+ * @version 1.2
+ */
+final class TestFonts
+{
+    /**
+     * How far each character advances the text.
+     */
+    static final float ADVANCE = 10;
+    static final int LINE_HEIGHT = 20;
+
+    private TestFonts()
+    {
+    }
+
+    /**
+     * Creates a monospaced font covering printable ASCII.
+     *
+     * @return The font.
+     */
+    static BitmapFont create()
+    {
+        BitmapCharacterSet charSet = new BitmapCharacterSet();
+        BitmapFont font = new BitmapFont();
+        MaterialDef def = new MaterialDef(null, "Test Font");
+        Material page;
+        charSet.setLineHeight(LINE_HEIGHT);
+        charSet.setBase(16);
+        charSet.setRenderedSize(LINE_HEIGHT);
+        charSet.setWidth(256);
+        charSet.setHeight(256);
+        for (char c = ' '; c < 127; c++)
+        {
+            BitmapCharacter character = new BitmapCharacter();
+            character.setWidth(8);
+            character.setHeight(16);
+            character.setXAdvance((int) ADVANCE);
+            character.setX((c % 16) * 16);
+            character.setY((c / 16) * 16);
+            charSet.addCharacter(c, character);
+        }
+        font.setCharSet(charSet);
+
+        def.addMaterialParamTexture(VarType.Texture2D, "ColorMap",
+                ColorSpace.sRGB, null);
+        page = new Material(def);
+        page.setTexture("ColorMap", new Texture2D(new Image(
+                Image.Format.RGBA8, 1, 1, BufferUtils.createByteBuffer(4),
+                ColorSpace.Linear)));
+        font.setPages(new Material[]{page});
+        return font;
+    }
+}